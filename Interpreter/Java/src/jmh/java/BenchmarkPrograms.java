@@ -0,0 +1,106 @@
+import java.util.Random;
+
+/**
+ * 基准测试使用的程序形状（比特流）
+ * Program shapes used by the benchmarks (as bitstreams)
+ *
+ * 所有形状都不会停机，并且只在开头读取输入中的常数（见 INPUT），
+ * 因此任意指令预算都会被完整执行。
+ * None of the shapes halts, and constants are only read from the input at the start
+ * (see INPUT), so any instruction budget is executed in full.
+ */
+public final class BenchmarkPrograms {
+    /** 形状名称 / Shape names */
+    public static final String TIGHT_LOOP = "tightLoop";
+    public static final String IO_HEAVY = "ioHeavy";
+    public static final String SPARSE_HIGH = "sparseHigh";
+    public static final String LARGE_PROGRAM = "largeProgram";
+
+    /** 循环读取的输入：K=100，ONE=1 / Input read cyclically: K=100, ONE=1 */
+    public static final byte[] INPUT = {100, 1};
+
+    /** largeProgram 的指令数 / Number of instructions in largeProgram */
+    public static final int LARGE_SIZE = 1 << 18;
+
+    private static final int K = 1;
+    private static final int ONE = 2;
+    private static final int NEG = 3;
+    private static final int X = 4;
+    private static final int Z = 5;
+    private static final int T = 6;
+    private static final int C = 7;
+
+    private BenchmarkPrograms() {
+    }
+
+    /**
+     * 指定形状的比特流
+     * The bitstream of a shape
+     */
+    public static String bits(String shape) {
+        StringBuilder bits = new StringBuilder();
+        switch (shape) {
+            case TIGHT_LOOP:
+                // 计数循环：X 从 K 递减到 0 后重新装入 K / Counting loop: X counts down from K, then is reloaded with K
+                add(bits, K, Program.FLAG_IN, Z, 1);
+                add(bits, ONE, Program.FLAG_IN, Z, 2);
+                add(bits, K, 0, NEG, 3);
+                add(bits, NEG, 0, X, 4);
+                add(bits, ONE, 0, X, 3);
+                add(bits, Z, 0, Z, 4);
+                break;
+            case IO_HEAVY:
+                // 每三条指令回显一个字节 / Echo one byte every three instructions
+                add(bits, C, Program.FLAG_IN | Program.FLAG_OUT, C, 1);
+                add(bits, C, 0, T, 2);
+                add(bits, Z, 0, Z, 0);
+                break;
+            case SPARSE_HIGH:
+                // 64 个分散在高地址的单元，每个地址都编码为 8 个块 / 64 cells spread over high addresses, each encoded as 8 blocks
+                int one = 0x7FFFFFF0;
+                int zero = 0x7FFFFFF1;
+                add(bits, one, Program.FLAG_IN, zero, 1);
+                for (int i = 0; i < 64; i++) {
+                    add(bits, one, 0, 0x10000000 + i * 0x01234567, i + 2);
+                }
+                add(bits, zero, 0, zero, 1);
+                break;
+            case LARGE_PROGRAM:
+                // 顺序执行的大程序，地址取自 4096 个单元 / A large straight-line program over a pool of 4096 cells
+                Random random = new Random(42);
+                add(bits, K, Program.FLAG_IN, Z, 1);
+                for (int i = 1; i < LARGE_SIZE - 1; i++) {
+                    add(bits, 16 + random.nextInt(4096), 0, 16 + random.nextInt(4096), i + 1);
+                }
+                add(bits, Z, 0, Z, 1);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+        return bits.toString();
+    }
+
+    /**
+     * 把形状重复到至少包含 addresses 个地址
+     * Repeat a shape until it holds at least the given number of addresses
+     */
+    public static String repeated(String shape, int addresses) {
+        String once = bits(shape);
+        int count = Program.decode(new StringBitReader(once), false).size() * 3;
+        StringBuilder bits = new StringBuilder();
+        for (int total = 0; total < addresses; total += count) {
+            bits.append(once);
+        }
+        return bits.toString();
+    }
+
+    /**
+     * 追加一条指令；flags 中的 IN/OUT 作为 a/b 的功能位
+     * Append one instruction; IN/OUT in flags become the function bits of a/b
+     */
+    private static void add(StringBuilder bits, int a, int flags, int b, int c) {
+        ProgramGenerator.encode(bits, a, (flags & Program.FLAG_IN) != 0);
+        ProgramGenerator.encode(bits, b, (flags & Program.FLAG_OUT) != 0);
+        ProgramGenerator.encode(bits, c, false);
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * bench.Workload 的实现，位于默认包中以便直接使用解释器类
+ * Implementation of bench.Workload, in the default package so it can use the interpreter's classes directly
+ */
+public class BenchmarkSupport implements bench.Workload {
+    private final String shape;
+    private final String bits;
+
+    private String decoderInput;
+    private Path textFile;
+    private Path packedFile;
+    private String readerKind;
+    private BitReader reader;
+
+    private Memory memory;
+    private int[] addressesA;
+    private int[] addressesB;
+    private int next;
+
+    private BSOptions options;
+    private BSInterpreter interpreter;
+
+    public BenchmarkSupport(String shape) {
+        this.shape = shape;
+        this.bits = BenchmarkPrograms.bits(shape);
+    }
+
+    @Override
+    public void prepareDecoder(String reader, int addresses) throws IOException {
+        this.readerKind = reader;
+        this.decoderInput = BenchmarkPrograms.repeated(shape, addresses);
+        if (!reader.equals("string")) {
+            textFile = Files.createTempFile("bs-bench", ".bs");
+            Files.write(textFile, decoderInput.getBytes(StandardCharsets.US_ASCII));
+        }
+        if (reader.equals("packed")) {
+            packedFile = Files.createTempFile("bs-bench", ".bsp");
+            PackedProgramFile.pack(textFile, packedFile);
+        }
+    }
+
+    @Override
+    public void openReader() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+        switch (readerKind) {
+            case "string":
+                reader = new StringBitReader(decoderInput);
+                break;
+            case "mapped":
+                reader = new MappedBitReader(textFile);
+                break;
+            case "packed":
+                reader = new PackedBitReader(packedFile);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown reader: " + readerKind);
+        }
+    }
+
+    @Override
+    public long readAddresses(int count) throws IOException {
+        long checksum = 0;
+        for (int i = 0; i < count; i++) {
+            BitReader.AddressResult result = reader.readAddress();
+            checksum += result.address + (result.hasFunction ? 1 : 0);
+        }
+        return checksum;
+    }
+
+    @Override
+    public void closeDecoder() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+        if (textFile != null) {
+            Files.deleteIfExists(textFile);
+        }
+        if (packedFile != null) {
+            Files.deleteIfExists(packedFile);
+        }
+    }
+
+    @Override
+    public void prepareMemory(String memory) {
+        Program program = Program.decode(new StringBitReader(bits), false);
+        switch (memory) {
+            case "hash":
+                this.memory = new IntHashMemory();
+                break;
+            case "flat":
+                this.memory = new FlatMemory(program.renumberAddresses());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown memory: " + memory);
+        }
+        addressesA = Arrays.copyOf(program.a, program.size());
+        addressesB = Arrays.copyOf(program.b, program.size());
+        for (int address : addressesB) {
+            this.memory.write(address, 1);
+        }
+    }
+
+    @Override
+    public long read(int count) {
+        int[] a = addressesA;
+        int[] b = addressesB;
+        Memory memory = this.memory;
+        int i = next;
+        long sum = 0;
+        for (int n = 0; n < count; n++) {
+            sum += memory.read(b[i]) + memory.read(a[i]);
+            if (++i == a.length) {
+                i = 0;
+            }
+        }
+        next = i;
+        return sum;
+    }
+
+    @Override
+    public long subtract(int count) {
+        int[] a = addressesA;
+        int[] b = addressesB;
+        Memory memory = this.memory;
+        int i = next;
+        for (int n = 0; n < count; n++) {
+            memory.write(b[i], memory.read(b[i]) - memory.read(a[i]));
+            if (++i == a.length) {
+                i = 0;
+            }
+        }
+        next = i;
+        return memory.read(b[0]);
+    }
+
+    @Override
+    public void prepareExecution(String engine, long budget) {
+        options = new BSOptions();
+        options.maxInstructions = budget;
+        // 每次测量都会耗尽预算，不打印警告 / Every measurement exhausts the budget, so no warning is printed
+        options.quiet = true;
+        options.output = OutputSink.of(OutputStream.nullOutputStream(), OutputSink.FlushPolicy.FULL);
+        switch (engine) {
+            case "interpret":
+                break;
+            case "renumber":
+                options.renumber = true;
+                break;
+            case "fuse":
+                options.fuse = true;
+                break;
+            case "loops":
+                options.accelerateLoops = true;
+                break;
+            case "jit":
+                options.jit = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+
+    @Override
+    public void newInterpreter() throws IOException {
+        options.input = new CyclicInput();
+        interpreter = new BSInterpreter(bits, options);
+    }
+
+    @Override
+    public long execute() throws IOException {
+        interpreter.execute();
+        return interpreter.getInstructionCount();
+    }
+
+    /**
+     * 从头循环读取 BenchmarkPrograms.INPUT 的输入源
+     * Input source that reads BenchmarkPrograms.INPUT cyclically from the start
+     */
+    private static class CyclicInput implements InputSource {
+        private int position;
+
+        @Override
+        public int readChar() {
+            int value = BenchmarkPrograms.INPUT[position];
+            position = (position + 1) % BenchmarkPrograms.INPUT.length;
+            return value;
+        }
+
+        @Override
+        public boolean mayBlock() {
+            return false;
+        }
+    }
+}
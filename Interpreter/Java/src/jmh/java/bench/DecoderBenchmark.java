@@ -0,0 +1,57 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * BitReader.readAddress 的吞吐量（每秒解码的地址数）
+ * Throughput of BitReader.readAddress (addresses decoded per second)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DecoderBenchmark {
+    /** 每次调用解码的地址数 / Addresses decoded per invocation */
+    private static final int ADDRESSES = 1 << 16;
+
+    @Param({"tightLoop", "ioHeavy", "sparseHigh", "largeProgram"})
+    public String shape;
+
+    @Param({"string", "mapped", "packed"})
+    public String reader;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workload.create(shape);
+        workload.prepareDecoder(reader, ADDRESSES);
+    }
+
+    @Setup(Level.Invocation)
+    public void openReader() throws IOException {
+        workload.openReader();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        workload.closeDecoder();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ADDRESSES)
+    public long readAddress() throws IOException {
+        return workload.readAddresses(ADDRESSES);
+    }
+}
@@ -0,0 +1,70 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * BSInterpreter.execute() 每秒执行的指令数
+ * Instructions per second of BSInterpreter.execute()
+ *
+ * 每次调用创建新的解释器（不计时）并执行 BUDGET 条指令；辅助计数器 instructions
+ * 报告每秒指令数，循环加速跳过的指令也计入其中。
+ * Each invocation creates a fresh interpreter (not timed) and executes BUDGET instructions; the
+ * auxiliary counter instructions reports instructions per second, including those skipped by
+ * loop acceleration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExecutionBenchmark {
+    /** 每次调用的指令预算 / Instruction budget per invocation */
+    private static final long BUDGET = 1 << 20;
+
+    @Param({"tightLoop", "ioHeavy", "sparseHigh", "largeProgram"})
+    public String shape;
+
+    @Param({"interpret", "renumber", "fuse", "loops", "jit"})
+    public String engine;
+
+    private Workload workload;
+
+    /**
+     * 每秒指令数 / Instructions per second
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long instructions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            instructions = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workload.create(shape);
+        workload.prepareExecution(engine, BUDGET);
+    }
+
+    @Setup(Level.Invocation)
+    public void newInterpreter() throws IOException {
+        workload.newInterpreter();
+    }
+
+    @Benchmark
+    public void execute(Counters counters) throws IOException {
+        counters.instructions += workload.execute();
+    }
+}
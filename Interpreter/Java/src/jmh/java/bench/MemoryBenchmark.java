@@ -0,0 +1,54 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 内存读写的开销（BSInterpreter.readMem/writeMem 直接委托给 Memory），地址序列取自程序的 a/b 字段
+ * Cost of memory reads and writes (BSInterpreter.readMem/writeMem delegate straight to Memory),
+ * along the address sequence of the program's a/b fields
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MemoryBenchmark {
+    /** 每次调用的 Subleq 步数（每步访问 a 和 b）/ Subleq steps per invocation (each touches a and b) */
+    private static final int STEPS = 1 << 16;
+
+    @Param({"tightLoop", "ioHeavy", "sparseHigh", "largeProgram"})
+    public String shape;
+
+    @Param({"hash", "flat"})
+    public String memory;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workload.create(shape);
+        workload.prepareMemory(memory);
+    }
+
+    /** 两次读取 / Two reads */
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public long read() {
+        return workload.read(STEPS);
+    }
+
+    /** 两次读取和一次写入 / Two reads and one write */
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public long subtract() {
+        return workload.subtract(STEPS);
+    }
+}
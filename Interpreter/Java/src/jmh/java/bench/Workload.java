@@ -0,0 +1,65 @@
+package bench;
+
+import java.io.IOException;
+
+/**
+ * 基准测试与解释器之间的桥接接口
+ * Bridge between the benchmarks and the interpreter
+ *
+ * JMH 要求基准测试类位于具名包中，而具名包中的代码无法引用默认包中的解释器类，
+ * 所以基准测试通过这个接口调用默认包中的 BenchmarkSupport（按名称加载）。
+ * 被测量的循环都在 BenchmarkSupport 中，每次调用只经过一次接口分派。
+ * JMH requires benchmark classes to live in a named package, and code in a named package
+ * cannot refer to the interpreter's classes in the default package, so the benchmarks call
+ * BenchmarkSupport in the default package (loaded by name) through this interface. The
+ * measured loops all live in BenchmarkSupport, so each call costs a single interface dispatch.
+ */
+public interface Workload {
+    /**
+     * 为指定程序形状创建工作负载（见 BenchmarkPrograms）
+     * Create the workload for a program shape (see BenchmarkPrograms)
+     */
+    static Workload create(String shape) throws ReflectiveOperationException {
+        return (Workload) Class.forName("BenchmarkSupport").getConstructor(String.class).newInstance(shape);
+    }
+
+    /**
+     * 准备解码输入：reader 为 string、mapped（文本文件）或 packed（打包文件）
+     * Prepare the decoder input: reader is string, mapped (text file) or packed (packed file)
+     */
+    void prepareDecoder(String reader, int addresses) throws IOException;
+
+    /** 打开新的比特读取器 / Open a fresh bit reader */
+    void openReader() throws IOException;
+
+    /** 用 readAddress 解码 count 个地址，返回校验和 / Decode count addresses with readAddress, returning a checksum */
+    long readAddresses(int count) throws IOException;
+
+    /** 关闭比特读取器和临时文件 / Close the bit reader and temporary files */
+    void closeDecoder() throws IOException;
+
+    /**
+     * 准备内存访问：memory 为 hash（IntHashMemory）或 flat（重编号后的 FlatMemory）；地址序列取自程序的 a/b 字段
+     * Prepare memory accesses: memory is hash (IntHashMemory) or flat (FlatMemory after renumbering);
+     * the address sequence comes from the program's a/b fields
+     */
+    void prepareMemory(String memory);
+
+    /** 沿地址序列读取 count 次，返回读到的值之和 / Read count times along the address sequence, returning the sum */
+    long read(int count);
+
+    /** 沿地址序列执行 count 次 mem[b] = mem[b] - mem[a] / Perform mem[b] = mem[b] - mem[a] count times along the address sequence */
+    long subtract(int count);
+
+    /**
+     * 准备执行：engine 为 interpret、renumber、fuse、loops 或 jit；每次执行最多 budget 条指令
+     * Prepare execution: engine is interpret, renumber, fuse, loops or jit; each run executes at most budget instructions
+     */
+    void prepareExecution(String engine, long budget);
+
+    /** 创建新的解释器（包括重编号、编译等加载时工作）/ Create a fresh interpreter (including load-time work such as renumbering or compiling) */
+    void newInterpreter() throws IOException;
+
+    /** 调用 BSInterpreter.execute()，返回执行的指令数 / Call BSInterpreter.execute(), returning the number of instructions executed */
+    long execute() throws IOException;
+}
@@ -0,0 +1,97 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * 解释器的 JDK Flight Recorder 事件（类别 BS）；只有启用了指标（BSOptions.metrics）的解释器才会提交
+ * JDK Flight Recorder events of the interpreter (category BS); only interpreters with metrics
+ * enabled (BSOptions.metrics) commit them
+ *
+ * 没有进行中的记录时提交事件几乎没有开销。用 jcmd <pid> JFR.start 开始记录，用 jfr print --categories BS 查看。
+ * Committing costs next to nothing when no recording is running. Start a recording with
+ * jcmd <pid> JFR.start and view it with jfr print --categories BS.
+ */
+public final class BSEvents {
+    private BSEvents() {
+    }
+
+    /**
+     * 周期性的吞吐量采样（默认每秒一次），内容与 BSMetricsMXBean 相同
+     * Periodic throughput sample (every second by default) with the same contents as BSMetricsMXBean
+     */
+    @Name("bs.Throughput")
+    @Label("BS Throughput")
+    @Category("BS")
+    @Description("Instructions, memory and I/O of running interpreters")
+    @Period("1 s")
+    @StackTrace(false)
+    public static class Throughput extends Event {
+        @Label("Instructions")
+        @Description("Instructions executed since the previous sample")
+        public long instructions;
+
+        @Label("Instructions per Second")
+        public double instructionsPerSecond;
+
+        @Label("Active Interpreters")
+        public long activeInterpreters;
+
+        @Label("Memory Cells")
+        public long memoryCells;
+
+        @Label("Bytes Read")
+        @DataAmount
+        public long bytesRead;
+
+        @Label("Bytes Written")
+        @DataAmount
+        public long bytesWritten;
+
+        @Label("Input Wait")
+        @Description("Time spent waiting for input since the previous sample")
+        @Timespan
+        public long inputWait;
+    }
+
+    /**
+     * 在可能阻塞的输入源上等待一个字节的时间段（默认只记录超过 1 毫秒的等待）
+     * A span waiting for one byte from an input source that may block (by default only waits over 1 ms are recorded)
+     */
+    @Name("bs.InputWait")
+    @Label("BS Input Wait")
+    @Category("BS")
+    @Threshold("1 ms")
+    public static class InputWait extends Event {
+        @Label("End of Input")
+        public boolean eof;
+    }
+
+    /**
+     * 一次执行停止：停机、离开程序或预算耗尽
+     * One execution stopped: halted, left the program or ran out of budget
+     */
+    @Name("bs.Stop")
+    @Label("BS Execution Stopped")
+    @Category("BS")
+    @StackTrace(false)
+    public static class Stop extends Event {
+        @Label("Stop Reason")
+        public String stopReason;
+
+        @Label("Budget Exhausted")
+        public boolean budgetExhausted;
+
+        @Label("Instructions")
+        public long instructions;
+
+        @Label("Program Size")
+        public int programSize;
+    }
+}
@@ -1,8 +1,15 @@
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * BS (Bitwise Subleq) 解释器
@@ -15,146 +22,925 @@ import java.util.Map;
  * - c段功能位=1: 停机 / c function bit=1: halt
  */
 public class BSInterpreter {
-    private static class Instruction {
-        int a, b, c;
-        boolean aFunc, bFunc, cFunc;
-
-        Instruction(int a, int b, int c, boolean aFunc, boolean bFunc, boolean cFunc) {
-            this.a = a;
-            this.b = b;
-            this.c = c;
-            this.aFunc = aFunc;
-            this.bFunc = bFunc;
-            this.cFunc = cFunc;
-        }
-
-        @Override
-        public String toString() {
-            return "a=" + a + (aFunc ? "[IN]" : "") +
-                   ", b=" + b + (bFunc ? "[OUT]" : "") +
-                   ", c=" + c + (cFunc ? "[HALT]" : "");
+    /**
+     * 有时间预算时每个分片最多执行的指令数，时钟只在分片之间检查
+     * Maximum instructions per slice when a time budget is set; clocks are only checked between slices
+     */
+    private static final long TIME_SLICE = 1 << 20;
+
+    /**
+     * 执行停止的原因
+     * Why execution stopped
+     */
+    public enum StopReason {
+        /** 尚未执行或仍可继续 / Not run yet, or may continue */
+        NONE(0),
+        /** c 功能位停机 / Halted by a c function bit */
+        HALTED(0),
+        /** PC 离开了程序 / PC left the program */
+        PROGRAM_END(0),
+        /** 达到指令数上限 / Instruction limit reached */
+        INSTRUCTION_LIMIT(3),
+        /** 达到墙钟时间上限 / Wall-clock limit reached */
+        TIMEOUT(4),
+        /** 达到 CPU 时间上限 / CPU time limit reached */
+        CPU_TIME(5);
+
+        /** 命令行使用的进程退出码 / Process exit status used by the command line */
+        public final int exitCode;
+
+        StopReason(int exitCode) {
+            this.exitCode = exitCode;
         }
     }
 
-    private final List<Instruction> program;
-    private final Map<Integer, Integer> memory;
+    private final Program program;
+    private final StreamingProgram stream;
+    private final Memory memory;
     private int pc;
     private boolean halted;
-    private int instructionCount;
+    private boolean ended;
+    private long instructionCount;
+    private StopReason stopReason = StopReason.NONE;
+    private final long maxInstructions;
+    private final long timeoutMillis;
+    private final long cpuTimeMillis;
+    private final TraceBuffer trace;
+    private final int traceLast;
+    private final Path traceOut;
+    private final Profiler profiler;
+    private final int profileTop;
+    private final Path profileOut;
+    private final Path profileFolded;
+    private boolean inputEof;
     private boolean debug;
-    private final UnbufferedInput unbufferedInput;
+    private boolean blocked;
+    private long stepDeadline;
+    private final boolean quiet;
+    private final InputSource inputSource;
+    private final OutputSink output;
+    private final BSMetrics.Probe metrics;
+    private final Checkpoint.Writer checkpoints;
+    private final Checkpoint.CountingInput counted;
+    private final long programHash;
+    /** 恢复的检查点之前已写出的字节数，以及构造时输出端已写出的字节数 / Bytes written before the restored checkpoint, and bytes the sink had written at construction */
+    private long outputBase;
+    private final long outputStart;
+    private final JitCompiler jit;
+    private final JitCompiler.Runtime jitRuntime;
+    private final byte[] ops;
+    private final LoopAccelerator loops;
 
     public BSInterpreter(String bitstream) throws IOException {
         this(bitstream, false);
     }
 
     public BSInterpreter(String bitstream, boolean debug) throws IOException {
-        this.program = new ArrayList<>();
-        this.memory = new HashMap<>();
+        this(bitstream, debug, new IntHashMemory());
+    }
+
+    public BSInterpreter(String bitstream, boolean debug, Memory memory) throws IOException {
         this.pc = 0;
         this.halted = false;
         this.instructionCount = 0;
         this.debug = debug;
-        this.unbufferedInput = UnbufferedInput.getInstance();
-
-        loadProgram(bitstream);
+        this.inputSource = UnbufferedInput.getInstance();
+        this.output = OutputSink.stdout(OutputSink.FlushPolicy.NEWLINE, 0);
+        this.metrics = null;
+        this.checkpoints = null;
+        this.counted = null;
+        this.outputStart = 0;
+        this.program = Program.decode(new StringBitReader(bitstream), debug);
+        this.programHash = 0;
+        this.stream = null;
+        this.memory = memory;
+        this.jit = null;
+        this.jitRuntime = null;
+        this.ops = null;
+        this.loops = null;
+        this.maxInstructions = BSOptions.DEFAULT_MAX_INSTRUCTIONS;
+        this.timeoutMillis = BSOptions.UNLIMITED;
+        this.cpuTimeMillis = BSOptions.UNLIMITED;
+        this.trace = null;
+        this.traceLast = 0;
+        this.traceOut = null;
+        this.profiler = null;
+        this.profileTop = 0;
+        this.profileOut = null;
+        this.profileFolded = null;
+        this.quiet = false;
     }
 
-    private void loadProgram(String bitstream) throws IOException {
-        BitReader reader = new BitReader(bitstream);
+    public BSInterpreter(String bitstream, BSOptions options) throws IOException {
+        this(new StringBitReader(bitstream), options);
+    }
 
-        while (reader.hasMore()) {
-            try {
-                BitReader.AddressResult aResult = reader.readAddress();
-                if (!reader.hasMore()) {
-                    if (debug) System.err.println(Lang.get(
-                        "警告：不完整的指令（只有 a=" + aResult.address + "）",
-                        "Warning: Incomplete instruction (only a=" + aResult.address + ")"
-                    ));
-                    break;
-                }
+    /**
+     * 从任意比特来源加载程序（例如 MappedBitReader）
+     * Load the program from any bit source (e.g. a MappedBitReader)
+     */
+    public BSInterpreter(BitReader reader, BSOptions options) throws IOException {
+        this(reader, null, options);
+    }
 
-                BitReader.AddressResult bResult = reader.readAddress();
-                if (!reader.hasMore()) {
-                    if (debug) System.err.println(Lang.get(
-                        "警告：不完整的指令（a=" + aResult.address + ", b=" + bResult.address + "）",
-                        "Warning: Incomplete instruction (a=" + aResult.address + ", b=" + bResult.address + ")"
-                    ));
-                    break;
-                }
+    /**
+     * 执行已解码的程序（例如从 ProgramCache 读取的）；程序归解释器所有，可能被重编号
+     * Execute an already decoded program (e.g. one read from a ProgramCache); the interpreter
+     * takes ownership of the program and may renumber it
+     */
+    public BSInterpreter(Program program, BSOptions options) throws IOException {
+        this(null, program, options);
+    }
 
-                BitReader.AddressResult cResult = reader.readAddress();
+    private BSInterpreter(BitReader reader, Program decoded, BSOptions options) throws IOException {
+        this.pc = 0;
+        this.halted = false;
+        this.instructionCount = 0;
+        this.debug = options.debug;
+        this.maxInstructions = options.maxInstructions;
+        this.timeoutMillis = options.timeoutMillis;
+        this.cpuTimeMillis = options.cpuTimeMillis;
+        if (cpuTimeMillis != BSOptions.UNLIMITED && !ManagementFactory.getThreadMXBean().isCurrentThreadCpuTimeSupported()) {
+            throw new UnsupportedOperationException(Lang.get(
+                "此 JVM 不支持测量线程 CPU 时间",
+                "This JVM cannot measure thread CPU time"
+            ));
+        }
+        this.trace = options.traceSize > 0 ? new TraceBuffer(options.traceSize) : null;
+        this.traceLast = options.traceLast;
+        this.traceOut = options.traceOut;
+        this.profileTop = options.profileTop;
+        this.profileOut = options.profileOut;
+        this.profileFolded = options.profileFolded;
+        this.quiet = options.quiet;
+        InputSource input = options.input != null ? options.input : UnbufferedInput.getInstance();
+        this.output = options.output != null ? options.output : OutputSink.stdout(OutputSink.FlushPolicy.NEWLINE, 0);
+        this.outputStart = output.getBytesWritten();
+        // 检查点需要记录已读取的输入字节数 / Checkpoints record how many input bytes were consumed
+        this.checkpoints = options.checkpoint != null ? new Checkpoint.Writer(options.checkpoint, options.checkpointEvery) : null;
+        this.counted = checkpoints != null ? new Checkpoint.CountingInput(input) : null;
+        if (counted != null) {
+            input = counted;
+        }
+        // 指标探针包装输入源，以便统计读取字节和等待时间 / The metrics probe wraps the input source to count bytes read and time spent waiting
+        this.metrics = options.metrics ? BSMetrics.get().probe(input, output) : null;
+        this.inputSource = metrics != null ? metrics.input : input;
+
+        // 调试、轨迹和剖析需要逐条指令记录，始终解释执行 / Debug output, tracing and profiling are per instruction, so such runs are always interpreted
+        boolean interpretOnly = debug || trace != null || options.profile;
+
+        // 边解码边执行时程序尚不完整，不能重编号、编译或分析，只用稀疏内存解释执行
+        // While streaming the program is still incomplete, so it cannot be renumbered, compiled
+        // or analyzed; it is interpreted over the sparse memory. Checkpoints need the whole
+        // program for its hash, so checkpointed runs do not stream
+        if (decoded == null && options.stream && !interpretOnly && checkpoints == null) {
+            this.program = null;
+            this.programHash = 0;
+            this.stream = new StreamingProgram(reader);
+            this.memory = new IntHashMemory(options.memoryCapacity, options.memoryLoadFactor);
+            this.jit = null;
+            this.jitRuntime = null;
+            this.ops = null;
+            this.loops = null;
+            this.profiler = null;
+            return;
+        }
+        this.program = decoded != null ? decoded : load(reader, options);
+        this.stream = null;
+        this.programHash = checkpoints != null ? Checkpoint.programHash(program) : 0;
+        this.profiler = options.profile && !debug && trace == null ? new Profiler(program.size()) : null;
+
+        if (options.renumber || options.jit) {
+            int[] addressTable = program.renumberAddresses();
+            if (debug) System.err.println(Lang.get(
+                "地址重编号：" + addressTable.length + " 个不同地址",
+                "Address renumbering: " + addressTable.length + " distinct addresses"
+            ));
+            this.memory = new FlatMemory(addressTable);
+        } else {
+            this.memory = new IntHashMemory(options.memoryCapacity, options.memoryLoadFactor);
+        }
 
-                Instruction instr = new Instruction(
-                    aResult.address, bResult.address, cResult.address,
-                    aResult.hasFunction, bResult.hasFunction, cResult.hasFunction
-                );
+        if (options.jit && !interpretOnly) {
+            this.jit = new JitCompiler(program, debug);
+            this.jitRuntime = new JitCompiler.Runtime(inputSource, output);
+        } else {
+            this.jit = null;
+            this.jitRuntime = null;
+        }
 
-                if (debug) System.err.println(Lang.get(
-                    "已加载指令 " + program.size() + ": " + instr,
-                    "Loaded instruction " + program.size() + ": " + instr
-                ));
-                program.add(instr);
-            } catch (IOException e) {
-                if (debug) System.err.println(Lang.get(
-                    "加载程序时出错：" + e.getMessage(),
-                    "Error loading program: " + e.getMessage()
-                ));
-                break;
+        // 融合操作和循环加速跳过了逐条调试输出和轨迹，调试或轨迹模式下不启用
+        // Fused ops and loop acceleration skip per-instruction debug output and tracing, so not in those modes
+        boolean optimize = !interpretOnly && jit == null;
+        byte[] ops = optimize && options.fuse ? Superinstructions.analyze(program).ops : null;
+        if (optimize && options.accelerateLoops) {
+            this.loops = LoopAccelerator.analyze(program);
+            if (ops == null) {
+                ops = new byte[program.size() + 1];
             }
+            loops.markHeads(ops, Superinstructions.OP_LOOP);
+        } else {
+            this.loops = null;
         }
+        this.ops = ops;
+    }
 
-        if (debug) System.err.println(Lang.get(
-            "已加载 " + program.size() + " 条指令",
-            "Loaded " + program.size() + " instructions"
-        ));
+    /**
+     * 解码程序；足够大的打包程序在非调试模式下并行解码
+     * Decode the program; large enough packed programs are decoded in parallel outside debug mode
+     */
+    static Program load(BitReader reader, BSOptions options) throws IOException {
+        if (options.debug || options.loadThreads == 1 || !(reader instanceof PackedBitReader)) {
+            return Program.decode(reader, options.debug);
+        }
+        if (options.loadThreads == 0) {
+            return ParallelDecoder.decode((PackedBitReader) reader, ForkJoinPool.commonPool());
+        }
+        ForkJoinPool pool = new ForkJoinPool(options.loadThreads);
+        try {
+            return ParallelDecoder.decode((PackedBitReader) reader, pool);
+        } finally {
+            pool.shutdown();
+        }
     }
 
     private int readMem(int address) {
-        return memory.getOrDefault(address, 0);
+        return memory.read(address);
     }
 
     private void writeMem(int address, int value) {
-        memory.put(address, value);
+        memory.write(address, value);
     }
 
     public void execute() throws IOException {
-        while (!halted && pc >= 0 && pc < program.size()) {
-            Instruction instr = program.get(pc);
-            instructionCount++;
+        try {
+            runWithinBudget();
+            warnBudgetExhausted();
+        } finally {
+            finish();
+        }
+        reportFinished();
+    }
+
+    /**
+     * 继续执行至多 quantum 条指令（协作式调度的一个时间片）
+     * Continue for at most quantum instructions (one slice of cooperative scheduling)
+     *
+     * 返回 true 表示程序可以继续：时间片用完，或者在输入指令处因非阻塞输入源暂无数据而挂起
+     * （isBlocked()，该指令尚未执行）。返回 false 表示已经停止，停止原因与 execute() 相同；
+     * 墙钟时间上限从第一个时间片开始计算，CPU 时间上限被忽略（时间片可能在不同线程上运行）。
+     * Returns true when the program can continue: the quantum ran out, or it suspended at an
+     * input instruction because a non-blocking input source has no data yet (isBlocked(); the
+     * instruction has not been executed). Returns false once it has stopped, for the same
+     * reasons as execute(); the wall-clock limit counts from the first quantum, and the CPU time
+     * limit is ignored (quanta may run on different threads).
+     */
+    public boolean step(long quantum) throws IOException {
+        if (stopReason != StopReason.NONE) {
+            return false;
+        }
+        if (timeoutMillis != BSOptions.UNLIMITED && stepDeadline == 0) {
+            stepDeadline = System.nanoTime() + timeoutMillis * 1000000L;
+        }
+        blocked = false;
+        try {
+            long steps = maxInstructions != BSOptions.UNLIMITED ? Math.min(quantum, maxInstructions - instructionCount) : quantum;
+            if (checkpoints != null) {
+                steps = Math.min(steps, checkpoints.stepsUntilDue(instructionCount));
+            }
+            if (steps > 0) {
+                run(steps);
+            }
+            if (metrics != null) {
+                metrics.publish(instructionCount, memory.size());
+            }
+            if (halted) {
+                stopReason = StopReason.HALTED;
+            } else if (stream != null ? ended : program.flags[pc] == Program.FLAG_END) {
+                stopReason = StopReason.PROGRAM_END;
+            } else if (maxInstructions != BSOptions.UNLIMITED && instructionCount >= maxInstructions) {
+                stopReason = StopReason.INSTRUCTION_LIMIT;
+            } else if (stepDeadline != 0 && System.nanoTime() - stepDeadline >= 0) {
+                stopReason = StopReason.TIMEOUT;
+            } else {
+                if (checkpoints != null && checkpoints.due(instructionCount)) {
+                    checkpoint();
+                }
+                // 输出在时间片之间按刷新策略保留，挂起等待输入前已经刷新
+                // Output stays subject to the flush policy between quanta, and was flushed before suspending for input
+                return true;
+            }
+            warnBudgetExhausted();
+        } catch (IOException | RuntimeException | Error e) {
+            finish();
+            throw e;
+        }
+        finish();
+        reportFinished();
+        return false;
+    }
+
+    /**
+     * 上一个时间片是否因等待输入而挂起
+     * Whether the last quantum suspended waiting for input
+     */
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    /**
+     * 停止执行后的收尾：停止解码线程、刷新输出、解码轨迹
+     * Wrap up once execution stops: stop the decoder thread, flush output, decode the trace
+     */
+    private void finish() throws IOException {
+        if (metrics != null) {
+            metrics.close(stopReason, instructionCount, getProgramSize());
+        }
+        try {
+            // 执行结束后不再需要其余指令 / The remaining instructions are not needed once execution stops
+            if (stream != null) {
+                stream.cancel();
+            }
+            // 停机或停止执行时刷新输出 / Flush output on halt or when execution stops
+            output.flush();
+            // 预算耗尽时保存检查点，供 --resume 继续；并等待后台写入完成
+            // Save a checkpoint when a budget ran out, for --resume to continue from; and wait for the background write
+            if (checkpoints != null) {
+                if (stopReason.exitCode != 0) {
+                    checkpoint();
+                }
+                checkpoints.await();
+            }
+        } finally {
+            // 停机、预算耗尽或出错时解码轨迹 / Decode the trace on halt, budget exhaustion or failure
+            if (trace != null) {
+                dumpTrace();
+            }
+            if (profiler != null) {
+                dumpProfile();
+            }
+        }
+    }
+
+    private void reportFinished() {
+        if (debug) {
+            System.err.println("\n" + Lang.get(
+                "执行完成。总指令数：" + instructionCount,
+                "Execution finished. Total instructions: " + instructionCount
+            ));
+            dumpMemory();
+        }
+    }
+
+    /**
+     * 在预算内执行，并记录停止原因
+     * Execute within the budget and record why execution stopped
+     *
+     * 指令预算就是传给执行循环的步数倒计数，热循环中没有额外检查；
+     * 有时间预算时按 TIME_SLICE 分片执行，时钟只在分片之间读取。
+     * The instruction budget is the step countdown passed to the execution loops, so the hot
+     * loop has no extra check; with a time budget execution proceeds in TIME_SLICE slices and
+     * the clocks are only read between slices.
+     */
+    private void runWithinBudget() throws IOException {
+        // 指标也按时间片发布，检查点请求也在时间片之间检查 / Metrics are published per slice as well, and checkpoint requests are checked between slices
+        boolean timed = timeoutMillis != BSOptions.UNLIMITED || cpuTimeMillis != BSOptions.UNLIMITED || metrics != null
+                     || checkpoints != null;
+        long deadline = timeoutMillis != BSOptions.UNLIMITED ? System.nanoTime() + timeoutMillis * 1000000L : 0;
+        ThreadMXBean threads = cpuTimeMillis != BSOptions.UNLIMITED ? ManagementFactory.getThreadMXBean() : null;
+        long cpuDeadline = threads != null ? threads.getCurrentThreadCpuTime() + cpuTimeMillis * 1000000L : 0;
+
+        while (true) {
+            long steps = maxInstructions != BSOptions.UNLIMITED ? maxInstructions - instructionCount : Long.MAX_VALUE;
+            if (timed) {
+                steps = Math.min(steps, TIME_SLICE);
+            }
+            if (checkpoints != null) {
+                steps = Math.min(steps, checkpoints.stepsUntilDue(instructionCount));
+            }
+            if (steps > 0) {
+                run(steps);
+            }
+            if (blocked) {
+                // 只有 step() 能在输入指令处挂起；否则这里会空转重试 / Only step() can suspend at an input instruction; this would otherwise spin retrying it
+                throw new IllegalStateException(Lang.get(
+                    "execute() 不支持非阻塞输入源，请使用 step()",
+                    "execute() does not support non-blocking input sources, use step()"
+                ));
+            }
+            if (metrics != null) {
+                metrics.publish(instructionCount, memory.size());
+            }
 
-            if (debug) {
-                System.err.println("\nPC=" + pc + ", " + Lang.get("指令", "Instr") + ": " + instr);
-                System.err.println("  " + Lang.get("执行前", "Before") + ": mem[" + instr.a + "]=" + readMem(instr.a) +
-                                 ", mem[" + instr.b + "]=" + readMem(instr.b));
+            if (halted) {
+                stopReason = StopReason.HALTED;
+            } else if (stream != null ? ended : program.flags[pc] == Program.FLAG_END) {
+                stopReason = StopReason.PROGRAM_END;
+            } else if (maxInstructions != BSOptions.UNLIMITED && instructionCount >= maxInstructions) {
+                stopReason = StopReason.INSTRUCTION_LIMIT;
+            } else if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                stopReason = StopReason.TIMEOUT;
+            } else if (threads != null && threads.getCurrentThreadCpuTime() >= cpuDeadline) {
+                stopReason = StopReason.CPU_TIME;
+            } else {
+                if (checkpoints != null && checkpoints.due(instructionCount)) {
+                    checkpoint();
+                }
+                continue;
             }
+            return;
+        }
+    }
+
+    /**
+     * 保存检查点：执行线程只刷新输出并复制内存数组，编码和写文件在后台进行
+     * Save a checkpoint: the executing thread only flushes output and copies the memory arrays,
+     * while encoding and writing happen in the background
+     */
+    private void checkpoint() throws IOException {
+        // 先刷新输出，记录的输出位置才与已写出的内容一致 / Flush first so the recorded output position matches what was written out
+        output.flush();
+        checkpoints.save(new Checkpoint(programHash, pc, halted, instructionCount, counted.position,
+            outputBase + output.getBytesWritten() - outputStart, memory.copy()));
+    }
+
+    /**
+     * 从检查点恢复状态，在 execute() 或第一个 step() 之前调用
+     * Restore the state from a checkpoint; call before execute() or the first step()
+     *
+     * 输入源跳过检查点之前已读取的字节；输出从检查点的位置继续，写到文件时用
+     * OutputSink.toFile(path, policy, interval, position) 打开。
+     * The input source skips the bytes consumed before the checkpoint; output continues from
+     * the checkpoint's position, so a file should be opened with
+     * OutputSink.toFile(path, policy, interval, position).
+     *
+     * @throws IOException 检查点属于另一个程序，或输入比记录的短 / the checkpoint belongs to another program, or the input is shorter than recorded
+     */
+    public void restore(Checkpoint checkpoint) throws IOException {
+        if (stream != null) {
+            throw new IllegalStateException(Lang.get(
+                "边解码边执行时不能从检查点恢复",
+                "Cannot restore a checkpoint while streaming"
+            ));
+        }
+        if (checkpoint.programHash != Checkpoint.programHash(program) || checkpoint.pc > program.size()) {
+            throw new IOException(Lang.get("检查点不属于此程序", "The checkpoint belongs to a different program"));
+        }
 
-            executeInstruction(instr);
+        // 检查点使用原始地址，紧凑内存需要映射回下标 / Checkpoints use original addresses, which dense memory maps back to indices
+        IntHashMemory indexOf = null;
+        if (memory instanceof FlatMemory) {
+            int[] addressTable = program.renumberAddresses();
+            indexOf = new IntHashMemory(addressTable.length * 2, IntHashMemory.DEFAULT_LOAD_FACTOR);
+            for (int i = 0; i < addressTable.length; i++) {
+                indexOf.write(addressTable[i], i + 1);
+            }
+        }
+        IntHashMemory index = indexOf;
+        checkpoint.forEachCell((address, value) -> {
+            if (index == null) {
+                writeMem(address, value);
+            } else if (index.read(address) > 0) {
+                writeMem(index.read(address) - 1, value);
+            }
+        });
+
+        this.pc = checkpoint.pc;
+        this.halted = checkpoint.halted;
+        this.instructionCount = checkpoint.instructionCount;
+        for (long i = 0; i < checkpoint.inputPosition; i++) {
+            if (inputSource.readChar() < 0) {
+                throw new IOException(Lang.get("输入比检查点记录的短", "The input is shorter than recorded in the checkpoint"));
+            }
+        }
+        this.outputBase = checkpoint.outputPosition;
+        if (checkpoints != null) {
+            checkpoints.start(instructionCount);
+        }
+    }
 
-            if (instructionCount > 1000000) {
+    private void warnBudgetExhausted() {
+        if (quiet) {
+            return;
+        }
+        switch (stopReason) {
+            case INSTRUCTION_LIMIT:
+                System.err.println("\n" + Lang.get(
+                    String.format(Locale.ROOT, "警告：已执行 %,d 条指令。停止。", instructionCount),
+                    String.format(Locale.ROOT, "Warning: Executed %,d instructions. Stopping.", instructionCount)
+                ));
+                break;
+            case TIMEOUT:
+                System.err.println("\n" + Lang.get(
+                    "警告：已达到 " + timeoutMillis + " 毫秒的时间上限。停止。",
+                    "Warning: Wall-clock limit of " + timeoutMillis + " ms reached. Stopping."
+                ));
+                break;
+            case CPU_TIME:
                 System.err.println("\n" + Lang.get(
-                    "警告：已执行 1,000,000 条指令。停止。",
-                    "Warning: Executed 1,000,000 instructions. Stopping."
+                    "警告：已达到 " + cpuTimeMillis + " 毫秒的 CPU 时间上限。停止。",
+                    "Warning: CPU time limit of " + cpuTimeMillis + " ms reached. Stopping."
                 ));
                 break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 最多执行 maxSteps 条指令，停机、PC 离开程序或步数用完时返回
+     * Execute at most maxSteps instructions; returns on halt, when PC leaves the program, or when the steps run out
+     */
+    private void run(long maxSteps) throws IOException {
+        if (stream != null) {
+            interpretStreaming(maxSteps);
+        } else if (jit != null) {
+            runCompiled(maxSteps);
+        } else if (ops != null) {
+            interpretFused(maxSteps);
+        } else if (profiler != null) {
+            interpretProfiled(maxSteps);
+        } else {
+            interpret(maxSteps);
+        }
+    }
+
+    /**
+     * 带剖析计数的解释循环；与 interpret 分开，因此未剖析的执行不承担任何计数开销
+     * Interpreter loop with profile counters; kept apart from interpret so unprofiled runs pay nothing for counting
+     */
+    private void interpretProfiled(long maxSteps) throws IOException {
+        int[] a = program.a;
+        int[] b = program.b;
+        int[] c = program.c;
+        byte[] flags = program.flags;
+        long[] counts = profiler.counts();
+        long[] jumps = profiler.jumps();
+        int pc = this.pc;
+
+        try {
+            for (long step = 0; step < maxSteps && !halted; step++) {
+                int f = flags[pc];
+                if (f == Program.FLAG_END) {
+                    break;
+                }
+                instructionCount++;
+                counts[pc]++;
+                if (f == 0) {
+                    int result = readMem(b[pc]) - readMem(a[pc]);
+                    writeMem(b[pc], result);
+                    if (result <= 0) {
+                        jumps[pc]++;
+                        pc = c[pc];
+                    } else {
+                        pc++;
+                    }
+                } else {
+                    pc = executeFunctions(pc, f, a[pc], b[pc]);
+                    if (blocked) {
+                        counts[pc]--;
+                        break;
+                    }
+                }
+            }
+        } finally {
+            this.pc = pc;
+        }
+    }
+
+    private void interpret(long maxSteps) throws IOException {
+        int[] a = program.a;
+        int[] b = program.b;
+        int[] c = program.c;
+        byte[] flags = program.flags;
+        int pc = this.pc;
+
+        try {
+            for (long step = 0; step < maxSteps && !halted; step++) {
+                int f = flags[pc];
+                if (f == Program.FLAG_END) {
+                    break;
+                }
+                instructionCount++;
+
+                if (debug) {
+                    System.err.println("\nPC=" + pc + ", " + Lang.get("指令", "Instr") + ": " + program.describe(pc));
+                    System.err.println("  " + Lang.get("执行前", "Before") + ": mem[" + program.originalAddress(a[pc]) + "]=" + readMem(a[pc]) +
+                                     ", mem[" + program.originalAddress(b[pc]) + "]=" + readMem(b[pc]));
+                }
+
+                if (f == 0) {
+                    // 正常Subleq指令 / Normal Subleq instruction
+                    int valA = readMem(a[pc]);
+                    int valB = readMem(b[pc]);
+                    int result = valB - valA;
+                    writeMem(b[pc], result);
+
+                    if (debug) System.err.println("  mem[" + program.originalAddress(b[pc]) + "] = " + valB + " - " + valA + " = " + result);
+                    if (trace != null) trace.record(pc, valA, valB, result, result <= 0 ? TraceBuffer.JUMPED : 0);
+
+                    // 跳转或继续 / Jump or continue
+                    if (result <= 0) {
+                        if (debug) System.err.println("  " + Lang.get("跳转到 ", "JUMP to ") + c[pc]);
+                        pc = c[pc];
+                    } else {
+                        if (debug) System.err.println("  " + Lang.get("继续到 ", "CONTINUE to ") + (pc + 1));
+                        pc++;
+                    }
+                } else if (trace != null) {
+                    int valA = readMem(a[pc]);
+                    int valB = readMem(b[pc]);
+                    int next = executeFunctions(pc, f, a[pc], b[pc]);
+                    if (blocked) {
+                        break;
+                    }
+                    int input = (f & Program.FLAG_IN) != 0 ? readMem(a[pc]) : 0;
+                    trace.record(pc, valA, valB, input, f | (inputEof ? TraceBuffer.EOF : 0));
+                    pc = next;
+                } else {
+                    pc = executeFunctions(pc, f, a[pc], b[pc]);
+                    if (blocked) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            this.pc = pc;
+        }
+    }
+
+    /**
+     * 边解码边执行的解释循环（不含调试输出）；只有 PC 越过已解码前沿时才等待解码线程
+     * Interpreter loop used while the program is still being decoded (no debug output); it only
+     * waits for the decoder thread when PC passes the decoded frontier
+     */
+    private void interpretStreaming(long maxSteps) throws IOException {
+        StreamingProgram stream = this.stream;
+        int frontier = stream.decoded();
+        int segmentIndex = -1;
+        StreamingProgram.Segment segment = null;
+        int pc = this.pc;
+
+        try {
+            for (long step = 0; step < maxSteps && !halted; step++) {
+                if (pc >= frontier || pc < 0) {
+                    if (!stream.await(pc)) {
+                        // 与结束哨兵相同，PC 停在程序末尾 / As with the end sentinel, PC stops at the program's end
+                        ended = true;
+                        pc = stream.decoded();
+                        break;
+                    }
+                    frontier = stream.decoded();
+                }
+                if (pc >>> StreamingProgram.SEGMENT_BITS != segmentIndex) {
+                    segmentIndex = pc >>> StreamingProgram.SEGMENT_BITS;
+                    segment = stream.segment(pc);
+                }
+                int i = pc & StreamingProgram.SEGMENT_MASK;
+                int f = segment.flags[i];
+                instructionCount++;
+
+                if (f == 0) {
+                    int result = readMem(segment.b[i]) - readMem(segment.a[i]);
+                    writeMem(segment.b[i], result);
+                    pc = result <= 0 ? segment.c[i] : pc + 1;
+                } else {
+                    pc = executeFunctions(pc, f, segment.a[i], segment.b[i]);
+                    if (blocked) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            this.pc = pc;
+        }
+    }
+
+    /**
+     * 带超级指令和循环加速的解释循环（不含调试输出）
+     * Interpreter loop with superinstructions and loop acceleration (no debug output)
+     */
+    private void interpretFused(long maxSteps) throws IOException {
+        int[] a = program.a;
+        int[] b = program.b;
+        int[] c = program.c;
+        byte[] flags = program.flags;
+        byte[] ops = this.ops;
+        int pc = this.pc;
+        long step = 0;
+
+        try {
+            while (step < maxSteps && !halted) {
+                int f = flags[pc];
+                if (f == Program.FLAG_END) {
+                    break;
+                }
+                if (f != 0) {
+                    instructionCount++;
+                    step++;
+                    pc = executeFunctions(pc, f, a[pc], b[pc]);
+                    if (blocked) {
+                        break;
+                    }
+                    continue;
+                }
+
+                int op = ops[pc];
+                if (op == Superinstructions.OP_LOOP) {
+                    // 跳过完整的迭代后仍停在循环头，剩余部分正常执行
+                    // After skipping whole iterations PC stays at the loop head; the rest runs normally
+                    long skipped = loops.accelerate(pc, memory, maxSteps - step);
+                    instructionCount += skipped;
+                    step += skipped;
+                    op = Superinstructions.OP_NONE;
+                    if (step >= maxSteps) {
+                        break;
+                    }
+                }
+                int span = Superinstructions.span(op);
+                if (op == Superinstructions.OP_NONE || step + span > maxSteps) {
+                    // 普通 Subleq，或剩余步数不足以执行整个融合操作
+                    // Plain Subleq, or not enough steps left for the whole fused op
+                    instructionCount++;
+                    step++;
+                    int result = readMem(b[pc]) - readMem(a[pc]);
+                    writeMem(b[pc], result);
+                    pc = result <= 0 ? c[pc] : pc + 1;
+                    continue;
+                }
+
+                switch (op) {
+                    case Superinstructions.OP_JMP:
+                    case Superinstructions.OP_CLEAR:
+                        writeMem(b[pc], 0);
+                        pc = c[pc];
+                        break;
+                    case Superinstructions.OP_MOV:
+                        writeMem(b[pc], 0);
+                        // 其余部分与 ADD 相同 / The rest is an ADD
+                        pc = fusedAdd(pc + 1);
+                        break;
+                    case Superinstructions.OP_ADD:
+                        pc = fusedAdd(pc);
+                        break;
+                    default:
+                        throw new IllegalStateException("op " + op);
+                }
+                instructionCount += span;
+                step += span;
+            }
+        } finally {
+            this.pc = pc;
+        }
+    }
+
+    /**
+     * 融合的 ADD（pc 起的三条指令），返回下一条指令的 PC
+     * The fused ADD (three instructions from pc), returns the next PC
+     */
+    private int fusedAdd(int pc) {
+        int[] a = program.a;
+        int[] b = program.b;
+        writeMem(b[pc], readMem(b[pc]) - readMem(a[pc]));
+        writeMem(b[pc + 1], readMem(b[pc + 1]) - readMem(a[pc + 1]));
+        writeMem(b[pc + 2], 0);
+        return program.c[pc + 2];
+    }
+
+    /**
+     * 用 JIT 编译代码执行；不在基本块入口或预算不足一个块时逐条解释
+     * Execute through JIT-compiled code; interpret single steps when not at a block entry or when the budget cannot cover a block
+     */
+    private void runCompiled(long maxSteps) throws IOException {
+        int[] cells = ((FlatMemory) memory).cells();
+        long remaining = maxSteps;
+
+        while (remaining > 0 && !halted && program.flags[pc] != Program.FLAG_END) {
+            if (!jit.isEntry(pc)) {
+                long before = instructionCount;
+                interpret(1);
+                remaining -= instructionCount - before;
+                continue;
+            }
+
+            int budget = (int) Math.min(remaining, Integer.MAX_VALUE);
+            jitRuntime.pc = pc;
+            int left = jit.run(jitRuntime, cells, pc, budget);
+            int executed = budget - left;
+            instructionCount += executed;
+            remaining -= executed;
+            pc = jitRuntime.pc;
+            halted = jitRuntime.halted;
+
+            if (executed == 0 && !halted) {
+                // 预算不足以进入下一个块 / Budget too small to enter the next block
+                long before = instructionCount;
+                interpret(1);
+                remaining -= instructionCount - before;
+            }
+        }
+    }
+
+    private void dumpTrace() throws IOException {
+        if (traceOut == null) {
+            System.err.println();
+            dumpTrace(System.err, traceLast);
+            return;
+        }
+        try (PrintStream out = new PrintStream(Files.newOutputStream(traceOut), false, StandardCharsets.UTF_8.name())) {
+            dumpTrace(out, traceLast);
+        }
+    }
+
+    private void dumpProfile() throws IOException {
+        if (profileOut == null) {
+            System.err.println();
+            dumpProfile(System.err, profileTop);
+        } else {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(profileOut), false, StandardCharsets.UTF_8.name())) {
+                dumpProfile(out, profileTop);
             }
         }
+        if (profileFolded != null) {
+            try (PrintStream out = new PrintStream(new BufferedOutputStream(Files.newOutputStream(profileFolded)), false, StandardCharsets.UTF_8.name())) {
+                profiler.writeFolded(program, out);
+            }
+        }
+    }
+
+    /**
+     * 输出剖析报告，每一类列出 top 个条目；未启用剖析时不输出
+     * Print the profile report with top entries per section; prints nothing when profiling is off
+     */
+    public void dumpProfile(PrintStream out, int top) {
+        if (profiler != null) {
+            profiler.report(program, out, top);
+            out.flush();
+        }
+    }
 
-        if (debug) System.err.println("\n" + Lang.get(
-            "执行完成。总指令数：" + instructionCount,
-            "Execution finished. Total instructions: " + instructionCount
-        ));
+    /**
+     * 剖析计数，未启用剖析时为 null
+     * The profile counters, null when profiling is off
+     */
+    public Profiler getProfiler() {
+        return profiler;
     }
 
-    private void executeInstruction(Instruction instr) throws IOException {
-        boolean hasAnyFunction = instr.aFunc || instr.bFunc || instr.cFunc;
+    /**
+     * 把轨迹中最近的 last 步解码输出（last <= 0 表示全部保留的步）；未启用轨迹时不输出
+     * Decode the most recent last trace steps (last <= 0 means all steps kept); prints nothing when tracing is off
+     */
+    public void dumpTrace(PrintStream out, int last) {
+        if (trace != null) {
+            trace.dump(program, out, last);
+            out.flush();
+        }
+    }
 
+    /**
+     * 按原始地址顺序打印所有非零内存单元到 stderr
+     * Print all non-zero memory cells to stderr, ordered by original address
+     */
+    public void dumpMemory() {
+        List<int[]> cells = new ArrayList<>();
+        memory.forEach((address, value) -> {
+            if (value != 0) cells.add(new int[] {address, value});
+        });
+        cells.sort((x, y) -> Integer.compare(x[0], y[0]));
+
+        System.err.println(Lang.get("内存（非零单元）：", "Memory (non-zero cells):"));
+        for (int[] cell : cells) {
+            System.err.println("  mem[" + cell[0] + "]=" + cell[1]);
+        }
+    }
+
+    /**
+     * 执行带功能位的指令，返回下一条指令的 PC
+     * Execute an instruction that carries function bits, returns the next PC
+     *
+     * 若有任何功能位，则不执行正常的Subleq指令，只递增PC
+     * If any function bit is set, the normal Subleq step is skipped and PC is just incremented
+     */
+    private int executeFunctions(int pc, int f, int addressA, int addressB) throws IOException {
         // 按顺序执行功能位：a段（输入）→ b段（输出）→ c段（停机）
         // Execute function bits in order: a (input) → b (output) → c (halt)
 
         // 1. 检查a段输入功能位 / Check a segment input function bit
-        if (instr.aFunc) {
-            int input = unbufferedInput.readChar();
+        if ((f & Program.FLAG_IN) != 0) {
+            int address = addressA;
+            // 阻塞读取之前必须刷新已缓冲的输出 / Buffered output must be flushed before a blocking read
+            if (inputSource.mayBlock()) {
+                output.flush();
+            }
+            int input = inputSource.readChar();
+            if (input == InputSource.WOULD_BLOCK) {
+                // 挂起：本指令不计数，下一个时间片从这里重新执行 / Suspend: this instruction is not counted and is re-executed by the next quantum
+                blocked = true;
+                instructionCount--;
+                return pc;
+            }
+            inputEof = input == -1;
             if (input == -1) {
                 // EOF encountered - treat as 0 and set halt flag
                 input = 0;
@@ -163,65 +949,63 @@ public class BSInterpreter {
                     "Warning: EOF encountered, treating as 0"
                 ));
             }
-            writeMem(instr.a, input);
+            writeMem(address, input);
             if (debug) System.err.println("  " + Lang.get(
-                "输入：读取字节 " + input + " 到地址 " + instr.a,
-                "INPUT: read byte " + input + " to address " + instr.a
+                "输入：读取字节 " + input + " 到地址 " + program.originalAddress(address),
+                "INPUT: read byte " + input + " to address " + program.originalAddress(address)
             ));
         }
 
         // 2. 检查b段输出功能位 / Check b segment output function bit
-        if (instr.bFunc) {
-            int value = readMem(instr.b);
-            System.out.write(value & 0xFF);
-            System.out.flush();
+        if ((f & Program.FLAG_OUT) != 0) {
+            int address = addressB;
+            int value = readMem(address);
+            output.write(value & 0xFF);
             if (debug) System.err.println("  " + Lang.get(
-                "输出：写入字节 " + (value & 0xFF) + " ('" + (char)(value & 0xFF) + "') 从地址 " + instr.b,
-                "OUTPUT: wrote byte " + (value & 0xFF) + " ('" + (char)(value & 0xFF) + "') from address " + instr.b
+                "输出：写入字节 " + (value & 0xFF) + " ('" + (char)(value & 0xFF) + "') 从地址 " + program.originalAddress(address),
+                "OUTPUT: wrote byte " + (value & 0xFF) + " ('" + (char)(value & 0xFF) + "') from address " + program.originalAddress(address)
             ));
         }
 
         // 3. 检查c段停机功能位 / Check c segment halt function bit
-        if (instr.cFunc) {
+        if ((f & Program.FLAG_HALT) != 0) {
             if (debug) System.err.println("  " + Lang.get("停机（c功能位）", "HALT (c function bit)"));
             halted = true;
-            return;
+            return pc;
         }
 
-        // 如果有任何功能位被执行，则只递增PC，不执行正常的Subleq指令
-        // If any function bit was executed, just increment PC, don't execute normal Subleq
-        if (hasAnyFunction) {
-            pc++;
-            return;
-        }
-
-        // 正常Subleq指令 / Normal Subleq instruction
-        int valA = readMem(instr.a);
-        int valB = readMem(instr.b);
-        int result = valB - valA;
-        writeMem(instr.b, result);
-
-        if (debug) System.err.println("  mem[" + instr.b + "] = " + valB + " - " + valA + " = " + result);
-
-        // 跳转或继续 / Jump or continue
-        if (result <= 0) {
-            if (debug) System.err.println("  " + Lang.get("跳转到 ", "JUMP to ") + instr.c);
-            pc = instr.c;
-        } else {
-            if (debug) System.err.println("  " + Lang.get("继续到 ", "CONTINUE to ") + (pc + 1));
-            pc++;
-        }
+        return pc + 1;
     }
 
     public boolean isHalted() {
         return halted;
     }
 
-    public int getInstructionCount() {
+    public long getInstructionCount() {
         return instructionCount;
     }
 
+    /**
+     * 上一次 execute() 停止的原因
+     * Why the last execute() stopped
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * 上一次 execute() 的结果
+     * The result of the last execute()
+     */
+    public BSResult getResult() {
+        return new BSResult(stopReason, instructionCount, halted, getProgramSize());
+    }
+
+    /**
+     * 程序的指令数；边解码边执行时为目前已解码的指令数
+     * Number of instructions in the program; while streaming, the number decoded so far
+     */
     public int getProgramSize() {
-        return program.size();
+        return stream != null ? stream.decoded() : program.size();
     }
 }
@@ -1,12 +1,29 @@
 import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 /**
  * BS (Bitwise Subleq) 解释器的主入口点
  * Main entry point for the BS (Bitwise Subleq) interpreter
  */
 public class BSMain {
+    /** 轨迹缓冲区的最大步数（每步 17 字节）/ Maximum trace buffer size in steps (17 bytes each) */
+    private static final long MAX_TRACE_SIZE = 1 << 26;
+
+    /** 解码线程数上限（ForkJoinPool 的限制）/ Maximum number of decoding threads (a ForkJoinPool limit) */
+    private static final long MAX_LOAD_THREADS = 0x7fff;
+
+    /** 扫描工作线程数上限 / Maximum number of sweep workers */
+    private static final long MAX_JOBS = 4096;
+
+    /** 扫描通道数上限 / Maximum number of sweep lanes */
+    private static final long MAX_LANES = 4096;
 
     public static void main(String[] args) {
         // 注册 shutdown hook 以恢复终端设置
@@ -32,77 +49,377 @@ public class BSMain {
             return;
         }
 
+        int exitCode = 0;
         try {
-            String bitstream;
-            boolean debug = System.getenv("BS_DEBUG") != null || System.getenv("BS_VERBOSE") != null;
-
-            // 处理语言参数
-            int argOffset = 0;
-            if (args[0].equals("--lang") && args.length > 1) {
-                Lang.setLanguage(args[1]);
-                argOffset = 2;
+            String bitstream = null;
+            String filename = null;
+            String inputFile = null;
+            String outputFile = null;
+            String sweep = null;
+            Path sweepOut = null;
+            int jobs = Runtime.getRuntime().availableProcessors();
+            int lanes = 1;
+            boolean useCache = true;
+            Path cacheDir = null;
+            long cacheMaxBytes = ProgramCache.DEFAULT_MAX_BYTES;
+            OutputSink.FlushPolicy flushPolicy = null;
+            long flushInterval = 0;
+            Path resume = null;
+            BSOptions options = new BSOptions();
+            options.debug = System.getenv("BS_DEBUG") != null || System.getenv("BS_VERBOSE") != null;
+
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "-h":
+                    case "--help":
+                        printUsage();
+                        return;
+                    case "--lang":
+                        if (i + 1 < args.length) {
+                            Lang.setLanguage(args[++i]);
+                        }
+                        break;
+                    case "-d":
+                        options.debug = true;
+                        break;
+                    case "-e":
+                        if (i + 1 >= args.length) {
+                            System.err.println(Lang.get(
+                                "错误：-e 需要一个比特流参数",
+                                "Error: -e requires a bitstream argument"
+                            ));
+                            printUsage();
+                            return;
+                        }
+                        bitstream = args[++i];
+                        break;
+                    case "--renumber":
+                        options.renumber = true;
+                        break;
+                    case "--jit":
+                        options.jit = true;
+                        break;
+                    case "--fuse":
+                        options.fuse = true;
+                        break;
+                    case "--accelerate-loops":
+                        options.accelerateLoops = true;
+                        break;
+                    case "--stream":
+                        options.stream = true;
+                        break;
+                    case "--no-cache":
+                        useCache = false;
+                        break;
+                    case "--cache-dir":
+                        String dir = optionValue(args, i++);
+                        if (dir == null) return;
+                        cacheDir = Paths.get(dir);
+                        break;
+                    case "--cache-size":
+                        String cacheSize = optionValue(args, i++);
+                        if (cacheSize == null) return;
+                        long mib = parsePositive(arg, cacheSize);
+                        if (mib < 0) return;
+                        cacheMaxBytes = Math.min(mib, Long.MAX_VALUE >> 20) << 20;
+                        break;
+                    case "--load-threads":
+                        String loadThreads = optionValue(args, i++);
+                        if (loadThreads == null) return;
+                        long threads = parsePositive(arg, loadThreads);
+                        if (threads < 0) return;
+                        options.loadThreads = (int) Math.min(threads, MAX_LOAD_THREADS);
+                        break;
+                    case "--max-instructions":
+                        String max = optionValue(args, i++);
+                        if (max == null) return;
+                        options.maxInstructions = max.equals("unlimited") ? BSOptions.UNLIMITED : parsePositive(arg, max);
+                        if (options.maxInstructions < 0) return;
+                        break;
+                    case "--timeout":
+                        String timeout = optionValue(args, i++);
+                        if (timeout == null) return;
+                        options.timeoutMillis = parsePositive(arg, timeout);
+                        if (options.timeoutMillis < 0) return;
+                        break;
+                    case "--cpu-time":
+                        String cpuTime = optionValue(args, i++);
+                        if (cpuTime == null) return;
+                        options.cpuTimeMillis = parsePositive(arg, cpuTime);
+                        if (options.cpuTimeMillis < 0) return;
+                        break;
+                    case "--trace":
+                        String traceSize = optionValue(args, i++);
+                        if (traceSize == null) return;
+                        long size = parsePositive(arg, traceSize);
+                        if (size < 0) return;
+                        options.traceSize = (int) Math.min(size, MAX_TRACE_SIZE);
+                        break;
+                    case "--trace-last":
+                        String traceLast = optionValue(args, i++);
+                        if (traceLast == null) return;
+                        long last = parsePositive(arg, traceLast);
+                        if (last < 0) return;
+                        options.traceLast = (int) Math.min(last, Integer.MAX_VALUE);
+                        break;
+                    case "--trace-out":
+                        String traceOut = optionValue(args, i++);
+                        if (traceOut == null) return;
+                        options.traceOut = Paths.get(traceOut);
+                        break;
+                    case "--metrics":
+                        options.metrics = true;
+                        break;
+                    case "--checkpoint":
+                        String checkpoint = optionValue(args, i++);
+                        if (checkpoint == null) return;
+                        options.checkpoint = Paths.get(checkpoint);
+                        break;
+                    case "--checkpoint-every":
+                        String every = optionValue(args, i++);
+                        if (every == null) return;
+                        options.checkpointEvery = parsePositive(arg, every);
+                        if (options.checkpointEvery < 0) return;
+                        break;
+                    case "--resume":
+                        String resumeFile = optionValue(args, i++);
+                        if (resumeFile == null) return;
+                        resume = Paths.get(resumeFile);
+                        break;
+                    case "--profile":
+                        options.profile = true;
+                        break;
+                    case "--profile-top":
+                        String profileTop = optionValue(args, i++);
+                        if (profileTop == null) return;
+                        long top = parsePositive(arg, profileTop);
+                        if (top < 0) return;
+                        options.profileTop = (int) Math.min(top, Integer.MAX_VALUE);
+                        break;
+                    case "--profile-out":
+                        String profileOut = optionValue(args, i++);
+                        if (profileOut == null) return;
+                        options.profileOut = Paths.get(profileOut);
+                        break;
+                    case "--profile-folded":
+                        String profileFolded = optionValue(args, i++);
+                        if (profileFolded == null) return;
+                        options.profileFolded = Paths.get(profileFolded);
+                        break;
+                    case "--pack":
+                    case "--unpack":
+                        if (i + 2 >= args.length) {
+                            System.err.println(Lang.get(
+                                "错误：" + arg + " 需要源文件和目标文件",
+                                "Error: " + arg + " requires a source and a target file"
+                            ));
+                            printUsage();
+                            return;
+                        }
+                        Path source = Paths.get(args[i + 1]);
+                        Path target = Paths.get(args[i + 2]);
+                        long bits = arg.equals("--pack")
+                            ? PackedProgramFile.pack(source, target)
+                            : PackedProgramFile.unpack(source, target);
+                        System.err.println(Lang.get("已转换 " + bits + " 位", "Converted " + bits + " bits"));
+                        return;
+                    case "--generate":
+                        if (i + 3 >= args.length) {
+                            System.err.println(Lang.get(
+                                "错误：--generate 需要工作负载规格、程序文件和输入文件",
+                                "Error: --generate requires a workload spec, a program file and an input file"
+                            ));
+                            printUsage();
+                            return;
+                        }
+                        ProgramGenerator.Sample sample;
+                        try {
+                            sample = ProgramGenerator.generate(args[i + 1]);
+                        } catch (IllegalArgumentException e) {
+                            System.err.println(Lang.get("错误：", "Error: ") + e.getMessage());
+                            printUsage();
+                            return;
+                        }
+                        try (Writer writer = Files.newBufferedWriter(Paths.get(args[i + 2]), StandardCharsets.US_ASCII)) {
+                            sample.program.writeTo(writer);
+                        }
+                        Files.write(Paths.get(args[i + 3]), sample.input);
+                        System.err.println(Lang.get(
+                            "已生成 " + sample.spec + "：" + sample.program.size() + " 条指令，输入 " + sample.input.length + " 字节",
+                            "Generated " + sample.spec + ": " + sample.program.size() + " instructions, " + sample.input.length + " input bytes"
+                        ));
+                        return;
+                    case "--sweep":
+                        sweep = optionValue(args, i++);
+                        if (sweep == null) return;
+                        break;
+                    case "--sweep-out":
+                        String sweepDir = optionValue(args, i++);
+                        if (sweepDir == null) return;
+                        sweepOut = Paths.get(sweepDir);
+                        break;
+                    case "--jobs":
+                        String jobCount = optionValue(args, i++);
+                        if (jobCount == null) return;
+                        long workers = parsePositive(arg, jobCount);
+                        if (workers < 0) return;
+                        jobs = (int) Math.min(workers, MAX_JOBS);
+                        break;
+                    case "--lanes":
+                        String laneCount = optionValue(args, i++);
+                        if (laneCount == null) return;
+                        long width = parsePositive(arg, laneCount);
+                        if (width < 0) return;
+                        lanes = (int) Math.min(width, MAX_LANES);
+                        break;
+                    case "--lanes-vector":
+                        options.vectorLanes = true;
+                        break;
+                    case "--input":
+                        inputFile = optionValue(args, i++);
+                        if (inputFile == null) return;
+                        break;
+                    case "--out":
+                        outputFile = optionValue(args, i++);
+                        if (outputFile == null) return;
+                        break;
+                    case "--flush":
+                        String flush = optionValue(args, i++);
+                        if (flush == null) return;
+                        if (flush.matches("[1-9]\\d*")) {
+                            flushPolicy = OutputSink.FlushPolicy.INTERVAL;
+                            flushInterval = Long.parseLong(flush);
+                        } else {
+                            try {
+                                flushPolicy = OutputSink.FlushPolicy.valueOf(flush.toUpperCase());
+                            } catch (IllegalArgumentException e) {
+                                System.err.println(Lang.get(
+                                    "错误：未知的刷新策略：" + flush,
+                                    "Error: Unknown flush policy: " + flush
+                                ));
+                                printUsage();
+                                return;
+                            }
+                        }
+                        break;
+                    default:
+                        filename = arg;
+                        break;
+                }
             }
 
-            if (argOffset >= args.length) {
+            if (bitstream == null && filename == null) {
+                if (options.debug) {
+                    System.err.println(Lang.get(
+                        "错误：-d 需要一个比特流或文件名",
+                        "Error: -d requires a bitstream or filename"
+                    ));
+                }
                 printUsage();
                 return;
             }
 
-            // 再次检查帮助参数（在 --lang 之后）
-            if (args[argOffset].equals("-h") || args[argOffset].equals("--help")) {
-                printUsage();
-                return;
+            // 调试时逐字节刷新，使输出与 stderr 上的调试信息保持顺序
+            // In debug mode flush every byte so output stays in order with debug lines on stderr
+            if (flushPolicy == null) {
+                flushPolicy = options.debug ? OutputSink.FlushPolicy.ALWAYS
+                            : outputFile != null ? OutputSink.FlushPolicy.FULL
+                            : OutputSink.FlushPolicy.NEWLINE;
             }
 
-            if (args[argOffset].equals("-e")) {
-                if (args.length < argOffset + 2) {
-                    System.err.println(Lang.get(
-                        "错误：-e 需要一个比特流参数",
-                        "Error: -e requires a bitstream argument"
+            // 缓存需要先读完整个文件计算散列，边解码边执行时不使用；调试时需要逐条加载信息，也不使用
+            // The cache has to read the whole file for its hash, so streaming runs skip it; so do debug runs, which report each loaded instruction
+            Path programFile = bitstream == null ? Paths.get(filename) : null;
+            ProgramCache cache = programFile != null && useCache && !options.stream && !options.debug
+                ? new ProgramCache(cacheDir != null ? cacheDir : ProgramCache.defaultDirectory(), cacheMaxBytes)
+                : null;
+            String cacheKey = cache != null ? cache.key(programFile) : null;
+            Program program = cacheKey != null ? loadCached(cache, cacheKey) : null;
+
+            // 扫描模式：程序只解码一次，由所有输入共享 / Sweep mode: the program is decoded once and shared by every input
+            if (sweep != null) {
+                if (options.checkpoint != null || resume != null) {
+                    throw new IOException(Lang.get(
+                        "--checkpoint 和 --resume 不能与 --sweep 一起使用",
+                        "--checkpoint and --resume cannot be used with --sweep"
                     ));
-                    printUsage();
-                    return;
                 }
-                bitstream = args[argOffset + 1];
-            } else if (args[argOffset].equals("-d")) {
-                debug = true;
-                if (args.length < argOffset + 2) {
-                    System.err.println(Lang.get(
-                        "错误：-d 需要一个比特流或文件名",
-                        "Error: -d requires a bitstream or filename"
-                    ));
-                    printUsage();
-                    return;
+                List<Path> inputs = InputSweep.findInputs(sweep);
+                if (inputs.isEmpty()) {
+                    throw new IOException(Lang.get("没有匹配的输入文件：", "No input files match: ") + sweep);
+                }
+                if (program == null) {
+                    try (BitReader reader = bitstream != null ? new StringBitReader(bitstream) : openProgram(programFile)) {
+                        program = BSInterpreter.load(reader, options);
+                    }
+                    if (cacheKey != null) {
+                        storeCached(cache, cacheKey, program);
+                    }
                 }
-                if (args[argOffset + 1].equals("-e") && args.length >= argOffset + 3) {
-                    bitstream = args[argOffset + 2];
-                } else {
-                    bitstream = new String(Files.readAllBytes(Paths.get(args[argOffset + 1])));
+                exitCode = runSweep(new InputSweep(program, options, jobs, lanes), inputs, sweepOut,
+                                    outputFile, flushPolicy, flushInterval);
+                if (exitCode != 0) {
+                    System.exit(exitCode);
                 }
-            } else {
-                bitstream = new String(Files.readAllBytes(Paths.get(args[argOffset])));
+                return;
             }
 
-            BSInterpreter interpreter = new BSInterpreter(bitstream, debug);
-
-            if (debug) {
-                System.err.println(Lang.get(
-                    "开始执行 " + interpreter.getProgramSize() + " 条指令...\n",
-                    "Starting execution of " + interpreter.getProgramSize() + " instructions...\n"
-                ));
+            // 从检查点继续：指令上限按本次执行计算，输出文件从记录的位置续写
+            // Resuming from a checkpoint: the instruction limit counts this run, and the output file continues at the recorded position
+            Checkpoint restored = resume != null ? Checkpoint.read(resume) : null;
+            if (restored != null) {
+                options.stream = false;
+                if (options.maxInstructions != BSOptions.UNLIMITED) {
+                    options.maxInstructions = options.maxInstructions + restored.instructionCount;
+                }
+            }
+            if (options.checkpoint != null) {
+                // 注册 MBean，使 JMX 客户端可以调用 requestCheckpoint / Register the MBean so JMX clients can invoke requestCheckpoint
+                BSMetrics.get();
+                handleCheckpointSignal();
             }
 
-            interpreter.execute();
-
-            if (System.getenv("BS_VERBOSE") != null) {
-                System.err.println("\n" + Lang.get(
-                    "已执行 " + interpreter.getInstructionCount() + " 条指令",
-                    "Executed " + interpreter.getInstructionCount() + " instructions"
-                ));
-                System.err.println(Lang.get(
-                    "已停机：" + interpreter.isHalted(),
-                    "Halted: " + interpreter.isHalted()
-                ));
+            // 程序文件直接从内存映射解码，不读入字符串 / Program files are decoded straight from a memory mapping, never read into a string
+            try (BitReader reader = program != null ? null
+                    : bitstream != null ? new StringBitReader(bitstream) : openProgram(programFile);
+                 MappedInput input = inputFile != null ? new MappedInput(Paths.get(inputFile)) : null;
+                 OutputSink output = outputFile == null ? OutputSink.stdout(flushPolicy, flushInterval)
+                    : restored != null ? OutputSink.toFile(Paths.get(outputFile), flushPolicy, flushInterval, restored.outputPosition)
+                    : OutputSink.toFile(Paths.get(outputFile), flushPolicy, flushInterval)) {
+                options.input = input;
+                options.output = output;
+                if (program == null && cacheKey != null) {
+                    program = BSInterpreter.load(reader, options);
+                    storeCached(cache, cacheKey, program);
+                }
+                BSInterpreter interpreter = program != null
+                    ? new BSInterpreter(program, options)
+                    : new BSInterpreter(reader, options);
+                if (restored != null) {
+                    interpreter.restore(restored);
+                }
+
+                if (options.debug) {
+                    System.err.println(Lang.get(
+                        "开始执行 " + interpreter.getProgramSize() + " 条指令...\n",
+                        "Starting execution of " + interpreter.getProgramSize() + " instructions...\n"
+                    ));
+                }
+
+                interpreter.execute();
+
+                if (System.getenv("BS_VERBOSE") != null) {
+                    System.err.println("\n" + Lang.get(
+                        "已执行 " + interpreter.getInstructionCount() + " 条指令",
+                        "Executed " + interpreter.getInstructionCount() + " instructions"
+                    ));
+                    System.err.println(Lang.get(
+                        "已停机：" + interpreter.isHalted(),
+                        "Halted: " + interpreter.isHalted()
+                    ));
+                }
+                exitCode = interpreter.getStopReason().exitCode;
             }
 
         } catch (IOException e) {
@@ -112,6 +429,128 @@ public class BSMain {
             }
             System.exit(1);
         }
+
+        // 因预算耗尽而停止时使用专门的退出码 / Use a distinct exit status when a budget ran out
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * 运行扫描：输出写到 sweepOut 下每个输入各自的文件，或合并写到 --out 文件或标准输出
+     * Run a sweep: outputs go to one file per input under sweepOut, or are merged into the --out file or stdout
+     */
+    private static int runSweep(InputSweep sweep, List<Path> inputs, Path sweepOut, String outputFile,
+                                OutputSink.FlushPolicy flushPolicy, long flushInterval) throws IOException {
+        if (sweepOut != null) {
+            return sweep.run(inputs, sweepOut, null);
+        }
+        try (OutputSink merged = outputFile != null
+                ? OutputSink.toFile(Paths.get(outputFile), flushPolicy, flushInterval)
+                : OutputSink.stdout(flushPolicy, flushInterval)) {
+            return sweep.run(inputs, null, merged);
+        }
+    }
+
+    /**
+     * 收到 SIGUSR2 时请求保存检查点；信号 API（sun.misc.Signal）通过反射加载，不可用或平台不支持该信号时
+     * 只打印警告，仍可通过 MBean 操作 requestCheckpoint 请求
+     * Request a checkpoint on SIGUSR2; the signal API (sun.misc.Signal) is loaded reflectively, and
+     * when it is unavailable or the platform lacks the signal only a warning is printed, and the
+     * MBean operation requestCheckpoint still works
+     */
+    private static void handleCheckpointSignal() {
+        try {
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object handler = Proxy.newProxyInstance(handlerClass.getClassLoader(), new Class<?>[] {handlerClass},
+                (proxy, method, arguments) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == arguments[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "checkpoint request on SIGUSR2";
+                        default:
+                            Checkpoint.request();
+                            return null;
+                    }
+                });
+            Object signal = signalClass.getConstructor(String.class).newInstance("USR2");
+            signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, signal, handler);
+        } catch (ReflectiveOperationException | LinkageError | IllegalArgumentException e) {
+            Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+            System.err.println(Lang.get(
+                "警告：无法处理 SIGUSR2，检查点只在预算耗尽、按周期或通过 MBean 保存：",
+                "Warning: Cannot handle SIGUSR2, checkpoints are only saved periodically, when a budget runs out or through the MBean: "
+            ) + cause);
+        }
+    }
+
+    /**
+     * 解析正整数选项值，无效时打印错误并返回 -1
+     * Parse a positive option value, printing an error and returning -1 when it is invalid
+     */
+    private static long parsePositive(String option, String value) {
+        if (value.matches("[1-9]\\d{0,17}")) {
+            return Long.parseLong(value);
+        }
+        System.err.println(Lang.get(
+            "错误：" + option + " 的值无效：" + value,
+            "Error: Invalid value for " + option + ": " + value
+        ));
+        printUsage();
+        return -1;
+    }
+
+    /**
+     * 从缓存读取程序；缓存不可用时打印警告并返回 null（照常解码）
+     * Load a program from the cache; prints a warning and returns null (decode as usual) when the cache is unusable
+     */
+    private static Program loadCached(ProgramCache cache, String key) {
+        try {
+            return cache.load(key);
+        } catch (IOException e) {
+            System.err.println(Lang.get("警告：无法读取程序缓存：", "Warning: Cannot read the program cache: ") + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 把程序写入缓存；失败时只打印警告
+     * Store a program in the cache; failures only print a warning
+     */
+    private static void storeCached(ProgramCache cache, String key, Program program) {
+        try {
+            cache.store(key, program);
+        } catch (IOException e) {
+            System.err.println(Lang.get("警告：无法写入程序缓存：", "Warning: Cannot write the program cache: ") + e.getMessage());
+        }
+    }
+
+    /**
+     * 打开程序文件，按魔数选择打包格式或文本格式
+     * Open a program file, choosing the packed or text format by its magic number
+     */
+    private static BitReader openProgram(Path path) throws IOException {
+        return PackedProgramFile.isPacked(path) ? new PackedBitReader(path) : new MappedBitReader(path);
+    }
+
+    /**
+     * 取得选项的参数值，缺失时打印错误并返回 null
+     * Get an option's argument, printing an error and returning null when it is missing
+     */
+    private static String optionValue(String[] args, int i) {
+        if (i + 1 < args.length) {
+            return args[i + 1];
+        }
+        System.err.println(Lang.get(
+            "错误：" + args[i] + " 需要一个参数",
+            "Error: " + args[i] + " requires an argument"
+        ));
+        printUsage();
+        return null;
     }
 
     private static void printUsage() {
@@ -123,6 +562,42 @@ public class BSMain {
             System.out.println("  java BSMain [--lang zh|en] -e <bitstream>      从命令行运行 BS 程序");
             System.out.println("  java BSMain [--lang zh|en] -d <filename>       以调试模式运行");
             System.out.println("  java BSMain [--lang zh|en] -d -e <bitstream>   以调试模式运行比特流");
+            System.out.println("  java BSMain --pack <source> <packed>           将文本程序打包为二进制格式（每字节 8 位）");
+            System.out.println("  java BSMain --unpack <packed> <source>         将打包的程序还原为文本格式");
+            System.out.println("  java BSMain --generate <spec> <program> <input> 生成合成程序及其输入（spec 如 loops:3,50）");
+            System.out.println();
+            System.out.println("选项：");
+            System.out.println("  --renumber        加载时将地址重编号为紧凑下标，内存使用 int[]");
+            System.out.println("  --jit             将程序编译为 JVM 字节码执行");
+            System.out.println("  --fuse            将常见指令序列融合为超级指令执行");
+            System.out.println("  --accelerate-loops 以闭式计算计数循环，直接跳过其迭代");
+            System.out.println("  --load-threads <n> 解码打包程序的线程数（默认所有核心，1 为顺序解码）");
+            System.out.println("  --stream          边解码边执行，无需等待整个程序加载完成");
+            System.out.println("  --no-cache        不使用已解码程序的磁盘缓存");
+            System.out.println("  --cache-dir <dir> 缓存目录（默认 ~/.cache/bs）");
+            System.out.println("  --cache-size <MiB> 缓存容量上限，超过时删除最久未使用的条目（默认 1024）");
+            System.out.println("  --max-instructions <n|unlimited>  最多执行的指令数（默认 1000000，退出码 3）");
+            System.out.println("  --timeout <ms>    墙钟时间上限（退出码 4）");
+            System.out.println("  --cpu-time <ms>   CPU 时间上限（退出码 5）");
+            System.out.println("  --trace <n>       在环形缓冲区中记录最近 n 步，停止时解码输出");
+            System.out.println("  --trace-last <n>  停止时只输出最近 n 步轨迹");
+            System.out.println("  --trace-out <file> 将轨迹写入文件而不是 stderr");
+            System.out.println("  --metrics         通过 JMX MBean（BS:type=Interpreter）和 JFR 事件（类别 BS）发布指令速率、内存、I/O 和输入等待");
+            System.out.println("  --checkpoint <file> 预算耗尽、收到 SIGUSR2 或调用 MBean 操作 requestCheckpoint 时把 PC、内存、指令数和 I/O 位置保存到检查点文件");
+            System.out.println("  --checkpoint-every <n> 另外每隔 n 条指令保存一次检查点（需要 --checkpoint）");
+            System.out.println("  --resume <file>   从检查点继续执行（相同的程序和输入；--out 文件从记录的位置续写）");
+            System.out.println("  --profile         统计每条指令的执行与跳转次数，停止时输出热点指令、热循环和内存热度报告");
+            System.out.println("  --profile-top <n> 报告每一类列出 n 个条目（默认 20）");
+            System.out.println("  --profile-out <file> 将剖析报告写入文件而不是 stderr");
+            System.out.println("  --profile-folded <file> 另外写出 flamegraph 工具可读的折叠栈文件");
+            System.out.println("  --input <file>    从文件读取输入（内存映射）");
+            System.out.println("  --sweep <dir|glob> 程序只解码一次，并行处理每个匹配的输入文件，最后汇总停止原因和指令数");
+            System.out.println("  --sweep-out <dir> 扫描时每个输入的输出写到 <dir>/<名称>.out（默认合并输出，每条记录前有 ==> 名称 <== 行）");
+            System.out.println("  --jobs <n>        扫描的工作线程数（默认所有核心）");
+            System.out.println("  --lanes <n>       扫描时每个工作线程锁步运行 n 个输入，取指和分派由 n 个通道共享（默认 1）");
+            System.out.println("  --lanes-vector    多通道时使用向量 API（需要 java --add-modules jdk.incubator.vector）");
+            System.out.println("  --out <file>      将程序输出直接写入文件");
+            System.out.println("  --flush <policy>  输出刷新策略：always | newline | full | <毫秒数>");
             System.out.println();
             System.out.println("示例：");
             System.out.println("  无限循环：    java BSMain -e 000000000000000");
@@ -141,6 +616,42 @@ public class BSMain {
             System.out.println("  java BSMain [--lang zh|en] -e <bitstream>      Run BS program from command line");
             System.out.println("  java BSMain [--lang zh|en] -d <filename>       Run in debug mode");
             System.out.println("  java BSMain [--lang zh|en] -d -e <bitstream>   Run bitstream in debug mode");
+            System.out.println("  java BSMain --pack <source> <packed>           Pack a text program into the binary format (8 bits per byte)");
+            System.out.println("  java BSMain --unpack <packed> <source>         Unpack a packed program back into text");
+            System.out.println("  java BSMain --generate <spec> <program> <input> Generate a synthetic program and its input (spec e.g. loops:3,50)");
+            System.out.println();
+            System.out.println("Options:");
+            System.out.println("  --renumber        Renumber addresses densely at load time, use int[] memory");
+            System.out.println("  --jit             Compile the program to JVM bytecode");
+            System.out.println("  --fuse            Fuse common instruction sequences into superinstructions");
+            System.out.println("  --accelerate-loops Skip the iterations of counting loops in closed form");
+            System.out.println("  --load-threads <n> Threads for decoding packed programs (default all cores, 1 = sequential)");
+            System.out.println("  --stream          Start executing while the program is still being decoded");
+            System.out.println("  --no-cache        Do not use the on-disk cache of decoded programs");
+            System.out.println("  --cache-dir <dir> Cache directory (default ~/.cache/bs)");
+            System.out.println("  --cache-size <MiB> Cache size bound; least recently used entries are evicted (default 1024)");
+            System.out.println("  --max-instructions <n|unlimited>  Maximum instructions to execute (default 1000000, exit status 3)");
+            System.out.println("  --timeout <ms>    Wall-clock limit (exit status 4)");
+            System.out.println("  --cpu-time <ms>   CPU time limit (exit status 5)");
+            System.out.println("  --trace <n>       Record the last n steps in a ring buffer, decoded on stop");
+            System.out.println("  --trace-last <n>  Only dump the last n trace steps on stop");
+            System.out.println("  --trace-out <file> Write the trace to a file instead of stderr");
+            System.out.println("  --metrics         Publish instruction rate, memory, I/O and input waits via a JMX MBean (BS:type=Interpreter) and JFR events (category BS)");
+            System.out.println("  --checkpoint <file> Save PC, memory, instruction count and I/O positions to a checkpoint file when a budget runs out, on SIGUSR2 or when the MBean operation requestCheckpoint is invoked");
+            System.out.println("  --checkpoint-every <n> Also save a checkpoint every n instructions (needs --checkpoint)");
+            System.out.println("  --resume <file>   Continue from a checkpoint (same program and input; the --out file continues at the recorded position)");
+            System.out.println("  --profile         Count executions and jumps per instruction; report hot instructions, loops and memory on stop");
+            System.out.println("  --profile-top <n> Entries per section of the profile report (default 20)");
+            System.out.println("  --profile-out <file> Write the profile report to a file instead of stderr");
+            System.out.println("  --profile-folded <file> Also write a collapsed-stack file for flamegraph tools");
+            System.out.println("  --input <file>    Read input from a file (memory-mapped)");
+            System.out.println("  --sweep <dir|glob> Decode the program once and run it on every matching input file in parallel, then summarize");
+            System.out.println("  --sweep-out <dir> Write each input's sweep output to <dir>/<name>.out (default: merged, each record after a ==> name <== line)");
+            System.out.println("  --jobs <n>        Sweep worker threads (default all cores)");
+            System.out.println("  --lanes <n>       Run n sweep inputs in lockstep per worker, sharing fetch and dispatch across n lanes (default 1)");
+            System.out.println("  --lanes-vector    Use the vector API for lanes (needs java --add-modules jdk.incubator.vector)");
+            System.out.println("  --out <file>      Write program output straight to a file");
+            System.out.println("  --flush <policy>  Output flush policy: always | newline | full | <milliseconds>");
             System.out.println();
             System.out.println("Examples:");
             System.out.println("  Infinite loop:    java BSMain -e 000000000000000");
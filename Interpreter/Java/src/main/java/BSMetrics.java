@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * 进程内所有启用了指标的解释器的运行指标，通过 JMX（BSMetricsMXBean）和 JFR（BSEvents）发布
+ * Metrics of every interpreter in the process that has metrics enabled, published through JMX
+ * (BSMetricsMXBean) and JFR (BSEvents)
+ *
+ * 每个解释器通过自己的 Probe 记录：执行循环不做任何同步，Probe 只在时间片之间把增量加到
+ * 共享的 LongAdder 上；输入字节和等待时间由包装输入源的普通字段计数。
+ * Each interpreter records through its own Probe: the execution loops do no synchronization,
+ * and the Probe only adds deltas to the shared LongAdders between slices; input bytes and wait
+ * time are counted in plain fields of a wrapper around the input source.
+ *
+ * 指令速率由一个守护线程每 RATE_WINDOW_MILLIS 采样一次，读取属性不改变任何状态，因此多个
+ * JMX 客户端看到的是同一个值。
+ * The instruction rate is sampled by a daemon thread every RATE_WINDOW_MILLIS, and reading the
+ * attribute changes no state, so every JMX client sees the same value.
+ */
+public class BSMetrics implements BSMetricsMXBean {
+    /** MBean 的对象名 / Object name of the MBean */
+    public static final String OBJECT_NAME = "BS:type=Interpreter";
+
+    /** 速率采样间隔（毫秒）/ Rate sampling interval in milliseconds */
+    static final long RATE_WINDOW_MILLIS = 1000;
+
+    private static BSMetrics instance;
+
+    private final LongAdder instructions = new LongAdder();
+    private final LongAdder active = new LongAdder();
+    private final LongAdder memoryCells = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder inputWaitNanos = new LongAdder();
+    private final LongAdder stopped = new LongAdder();
+    private final LongAdder halted = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    /** 速率采样线程和周期事件各自的上一次采样 / Previous samples of the rate sampler and of the periodic event */
+    private final Sample rateSample = new Sample();
+    private final Sample eventSample = new Sample();
+
+    /** 最近一个完整采样窗口的每秒指令数 / Instructions per second over the last complete sampling window */
+    private volatile double instructionsPerSecond;
+
+    private BSMetrics() {
+    }
+
+    /**
+     * 进程内唯一的实例；首次调用时注册 MBean 和周期性的 JFR 吞吐量事件
+     * The single instance in the process; the first call registers the MBean and the periodic JFR throughput event
+     */
+    public static synchronized BSMetrics get() {
+        if (instance == null) {
+            BSMetrics metrics = new BSMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                System.err.println(Lang.get("警告：无法注册 MBean：", "Warning: Cannot register the MBean: ") + e.getMessage());
+            }
+            FlightRecorder.addPeriodicEvent(BSEvents.Throughput.class, metrics::emitThroughput);
+            Thread sampler = new Thread(metrics::sampleRate, "bs-metrics-sampler");
+            sampler.setDaemon(true);
+            sampler.start();
+            instance = metrics;
+        }
+        return instance;
+    }
+
+    /** 两次采样之间的差值 / Differences between two samples */
+    private static class Sample {
+        long time = System.nanoTime();
+        long instructions;
+        long bytesRead;
+        long bytesWritten;
+        long inputWaitNanos;
+    }
+
+    private void emitThroughput() {
+        BSEvents.Throughput event = new BSEvents.Throughput();
+        synchronized (eventSample) {
+            long now = System.nanoTime();
+            long total = instructions.sum();
+            long read = bytesRead.sum();
+            long written = bytesWritten.sum();
+            long wait = inputWaitNanos.sum();
+            event.instructions = total - eventSample.instructions;
+            event.instructionsPerSecond = perSecond(event.instructions, now - eventSample.time);
+            event.bytesRead = read - eventSample.bytesRead;
+            event.bytesWritten = written - eventSample.bytesWritten;
+            event.inputWait = wait - eventSample.inputWaitNanos;
+            eventSample.time = now;
+            eventSample.instructions = total;
+            eventSample.bytesRead = read;
+            eventSample.bytesWritten = written;
+            eventSample.inputWaitNanos = wait;
+        }
+        event.activeInterpreters = active.sum();
+        event.memoryCells = memoryCells.sum();
+        event.commit();
+    }
+
+    /** 只由采样线程使用 rateSample / rateSample is only used by the sampler thread */
+    private void sampleRate() {
+        while (true) {
+            try {
+                Thread.sleep(RATE_WINDOW_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            long total = instructions.sum();
+            instructionsPerSecond = perSecond(total - rateSample.instructions, now - rateSample.time);
+            rateSample.time = now;
+            rateSample.instructions = total;
+        }
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return nanos > 0 ? count * 1e9 / nanos : 0;
+    }
+
+    @Override
+    public long getInstructions() {
+        return instructions.sum();
+    }
+
+    @Override
+    public double getInstructionsPerSecond() {
+        return instructionsPerSecond;
+    }
+
+    @Override
+    public long getActiveInterpreters() {
+        return active.sum();
+    }
+
+    @Override
+    public long getMemoryCells() {
+        return memoryCells.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getInputWaitMillis() {
+        return inputWaitNanos.sum() / 1000000;
+    }
+
+    @Override
+    public long getStoppedRuns() {
+        return stopped.sum();
+    }
+
+    @Override
+    public long getHaltedRuns() {
+        return halted.sum();
+    }
+
+    @Override
+    public long getBudgetExhaustedRuns() {
+        return budgetExhausted.sum();
+    }
+
+    @Override
+    public void requestCheckpoint() {
+        Checkpoint.request();
+    }
+
+    /**
+     * 为一个解释器创建探针；解释器在停止前一直计为运行中
+     * Create a probe for one interpreter; the interpreter counts as running until it stops
+     */
+    Probe probe(InputSource input, OutputSink output) {
+        return new Probe(input, output);
+    }
+
+    /**
+     * 一个解释器的计数：只由执行它的线程使用，发布时才写入共享计数
+     * Counts of one interpreter: used only by the thread executing it, and written to the shared counters when published
+     */
+    class Probe {
+        final MeteredInput input;
+        private final OutputSink output;
+        private long instructions;
+        private long memoryCells;
+        private long bytesRead;
+        private long bytesWritten;
+        private long inputWaitNanos;
+        private boolean closed;
+
+        private Probe(InputSource input, OutputSink output) {
+            this.input = new MeteredInput(input);
+            this.output = output;
+            this.bytesWritten = output.getBytesWritten();
+            active.increment();
+        }
+
+        /**
+         * 发布自上一次发布以来的增量
+         * Publish the deltas since the previous publish
+         */
+        void publish(long instructionCount, long cells) {
+            BSMetrics.this.instructions.add(instructionCount - instructions);
+            instructions = instructionCount;
+            BSMetrics.this.memoryCells.add(cells - memoryCells);
+            memoryCells = cells;
+            long read = input.bytesRead;
+            BSMetrics.this.bytesRead.add(read - bytesRead);
+            bytesRead = read;
+            long written = output.getBytesWritten();
+            BSMetrics.this.bytesWritten.add(written - bytesWritten);
+            bytesWritten = written;
+            long wait = input.waitNanos;
+            BSMetrics.this.inputWaitNanos.add(wait - inputWaitNanos);
+            inputWaitNanos = wait;
+        }
+
+        /**
+         * 执行停止：发布最后的增量，不再计为运行中，并提交停止事件
+         * Execution stopped: publish the last deltas, stop counting as running, and commit the stop event
+         */
+        void close(BSInterpreter.StopReason reason, long instructionCount, int programSize) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            publish(instructionCount, memoryCells);
+            BSMetrics.this.memoryCells.add(-memoryCells);
+            active.decrement();
+            stopped.increment();
+            boolean exhausted = reason.exitCode != 0;
+            if (reason == BSInterpreter.StopReason.HALTED) {
+                halted.increment();
+            } else if (exhausted) {
+                budgetExhausted.increment();
+            }
+
+            BSEvents.Stop event = new BSEvents.Stop();
+            if (event.shouldCommit()) {
+                event.stopReason = reason.name();
+                event.budgetExhausted = exhausted;
+                event.instructions = instructionCount;
+                event.programSize = programSize;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * 计数读到的字节，并在可能阻塞的输入源上计时等待（提交 InputWait 事件）
+     * Counts bytes read and times waits on input sources that may block (committing InputWait events)
+     */
+    static class MeteredInput implements InputSource {
+        private final InputSource source;
+        long bytesRead;
+        long waitNanos;
+
+        MeteredInput(InputSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public int readChar() throws IOException {
+            if (!source.mayBlock()) {
+                int value = source.readChar();
+                if (value >= 0) {
+                    bytesRead++;
+                }
+                return value;
+            }
+            BSEvents.InputWait event = new BSEvents.InputWait();
+            event.begin();
+            long start = System.nanoTime();
+            int value = source.readChar();
+            waitNanos += System.nanoTime() - start;
+            event.end();
+            if (value >= 0) {
+                bytesRead++;
+            }
+            if (event.shouldCommit()) {
+                event.eof = value == -1;
+                event.commit();
+            }
+            return value;
+        }
+
+        @Override
+        public boolean mayBlock() {
+            return source.mayBlock();
+        }
+    }
+}
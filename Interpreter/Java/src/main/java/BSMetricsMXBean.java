@@ -0,0 +1,49 @@
+/**
+ * 解释器运行指标的 JMX 接口（对象名 BS:type=Interpreter），汇总本进程中所有启用了指标的解释器
+ * JMX interface of the interpreter metrics (object name BS:type=Interpreter), summed over every
+ * interpreter in this process that has metrics enabled
+ *
+ * 计数由执行线程在时间片之间批量发布，因此最多滞后一个时间片（约 100 万条指令）。
+ * Counters are published in batches by the executing threads between slices, so they lag by at
+ * most one slice (about a million instructions).
+ */
+public interface BSMetricsMXBean {
+    /** 已执行的指令总数 / Total instructions executed */
+    long getInstructions();
+
+    /**
+     * 最近一个完整的一秒采样窗口内的每秒指令数；读取不影响其他客户端
+     * Instructions per second over the last complete one-second sampling window; reading it does not affect other clients
+     */
+    double getInstructionsPerSecond();
+
+    /** 正在运行（已创建且尚未停止）的解释器数 / Interpreters running (created and not yet stopped) */
+    long getActiveInterpreters();
+
+    /** 正在运行的解释器使用的内存单元数 / Memory cells in use by running interpreters */
+    long getMemoryCells();
+
+    /** 输入指令读到的字节数（不含 EOF）/ Bytes read by input instructions (EOF excluded) */
+    long getBytesRead();
+
+    /** 输出指令写出的字节数 / Bytes written by output instructions */
+    long getBytesWritten();
+
+    /** 在可能阻塞的输入源上等待输入的总时间（毫秒）/ Total time spent waiting on input sources that may block, in milliseconds */
+    long getInputWaitMillis();
+
+    /** 已停止的执行数 / Executions that stopped */
+    long getStoppedRuns();
+
+    /** 由 c 功能位停机的执行数 / Executions halted by a c function bit */
+    long getHaltedRuns();
+
+    /** 因指令数、墙钟或 CPU 时间预算耗尽而停止的执行数 / Executions stopped because an instruction, wall-clock or CPU time budget ran out */
+    long getBudgetExhaustedRuns();
+
+    /**
+     * 操作：请求所有启用了检查点（--checkpoint）的解释器尽快保存检查点
+     * Operation: ask every interpreter with checkpoints enabled (--checkpoint) to save one as soon as possible
+     */
+    void requestCheckpoint();
+}
@@ -0,0 +1,151 @@
+import java.nio.file.Path;
+
+/**
+ * 解释器选项
+ * Interpreter options
+ */
+public class BSOptions implements Cloneable {
+    /** 预算值为 0 表示不限制 / A budget of 0 means unlimited */
+    public static final long UNLIMITED = 0;
+
+    /** 默认的最大指令数 / Default maximum number of instructions */
+    public static final long DEFAULT_MAX_INSTRUCTIONS = 1000000;
+
+    /** 剖析报告默认列出的条目数 / Default number of entries in the profile report */
+    public static final int DEFAULT_PROFILE_TOP = 20;
+
+    /** 调试输出 / Debug output */
+    public boolean debug;
+
+    /**
+     * 加载时把所有地址重编号为 0..N-1，内存改用 int[]
+     * Renumber all addresses to 0..N-1 at load time and use an int[] memory
+     */
+    public boolean renumber;
+
+    /**
+     * 使用 JIT 把程序编译为 JVM 字节码执行（隐含 renumber；调试模式下忽略）
+     * Compile the program to JVM bytecode with the JIT (implies renumber; ignored in debug mode)
+     */
+    public boolean jit;
+
+    /**
+     * 加载时把常见 Subleq 宏融合为超级指令（调试模式或 JIT 下忽略）
+     * Fuse common Subleq macros into superinstructions at load time (ignored in debug mode or with the JIT)
+     */
+    public boolean fuse;
+
+    /**
+     * 以闭式计算计数循环的迭代，直接跳过（调试模式或 JIT 下忽略）
+     * Skip the iterations of counting loops by computing them in closed form (ignored in debug mode or with the JIT)
+     */
+    public boolean accelerateLoops;
+
+    /**
+     * 解码打包程序的线程数：0 表示使用公共 ForkJoinPool（所有核心），1 表示顺序解码；调试模式下总是顺序解码
+     * Threads for decoding packed programs: 0 uses the common ForkJoinPool (all cores), 1 decodes sequentially; debug runs always decode sequentially
+     */
+    public int loadThreads;
+
+    /**
+     * 边解码边执行：解码线程在后台追加指令，解释器立即从 PC=0 开始执行
+     * （调试或轨迹模式下忽略；程序不完整，不使用重编号、JIT、融合或循环加速）
+     * Execute while decoding: a decoder thread appends instructions in the background and the
+     * interpreter starts at PC=0 right away (ignored in debug or trace mode; the program is
+     * incomplete, so renumbering, the JIT, fusion and loop acceleration are not used)
+     */
+    public boolean stream;
+
+    /**
+     * 多通道执行时，整组通道的 Subleq 使用 jdk.incubator.vector 计算
+     * （需要 --add-modules jdk.incubator.vector，不可用时退回标量循环）
+     * With lockstep lanes, compute Subleq for a whole group of lanes with jdk.incubator.vector
+     * (needs --add-modules jdk.incubator.vector; falls back to scalar loops when unavailable)
+     */
+    public boolean vectorLanes;
+
+    /** 最多执行的指令数，UNLIMITED 表示不限制 / Maximum number of instructions to execute, UNLIMITED for no limit */
+    public long maxInstructions = DEFAULT_MAX_INSTRUCTIONS;
+
+    /** 墙钟时间上限（毫秒），UNLIMITED 表示不限制 / Wall-clock limit in milliseconds, UNLIMITED for no limit */
+    public long timeoutMillis = UNLIMITED;
+
+    /** 执行线程的 CPU 时间上限（毫秒），UNLIMITED 表示不限制 / CPU time limit of the executing thread in milliseconds, UNLIMITED for no limit */
+    public long cpuTimeMillis = UNLIMITED;
+
+    /**
+     * 轨迹环形缓冲区保留的步数，0 表示不记录轨迹（记录时解释执行，不使用 JIT 等优化）
+     * Steps kept in the trace ring buffer, 0 disables tracing (traced runs are interpreted without the JIT or other optimizations)
+     */
+    public int traceSize;
+
+    /** 停止时输出的最近轨迹步数，0 表示全部保留的步 / Trace steps dumped on stop, 0 means all steps kept */
+    public int traceLast;
+
+    /** 轨迹输出文件，为 null 时输出到 stderr / Trace output file, null means stderr */
+    public Path traceOut;
+
+    /**
+     * 剖析执行：统计每条指令的执行和跳转次数，停止时输出热点报告（解释执行，不使用 JIT 等优化；调试或轨迹模式下忽略）
+     * Profile execution: count executions and jumps per instruction and print a hot spot report on
+     * stop (profiled runs are interpreted without the JIT or other optimizations; ignored in debug or trace mode)
+     */
+    public boolean profile;
+
+    /** 剖析报告中每一类列出的条目数 / Entries listed per section of the profile report */
+    public int profileTop = DEFAULT_PROFILE_TOP;
+
+    /** 剖析报告输出文件，为 null 时输出到 stderr / Profile report file, null means stderr */
+    public Path profileOut;
+
+    /** flamegraph 折叠栈输出文件，为 null 时不输出 / Collapsed-stack file for flamegraph tools, null writes none */
+    public Path profileFolded;
+
+    /**
+     * 发布运行指标：JMX MBean（BS:type=Interpreter）和 JFR 事件（类别 BS），计数在时间片之间批量发布
+     * Publish live metrics: a JMX MBean (BS:type=Interpreter) and JFR events (category BS), with counters published in batches between slices
+     */
+    public boolean metrics;
+
+    /**
+     * 检查点文件，为 null 时不保存检查点；预算耗尽、收到请求（Checkpoint.request()）或每隔 checkpointEvery 条指令时保存，
+     * 每个解释器需要各自的文件。设置后不边解码边执行
+     * Checkpoint file, null saves none; a checkpoint is saved when a budget runs out, on request
+     * (Checkpoint.request()) or every checkpointEvery instructions, and each interpreter needs a
+     * file of its own. Setting it turns off streaming
+     */
+    public Path checkpoint;
+
+    /** 周期检查点的指令间隔，0 表示不按周期保存 / Instructions between periodic checkpoints, 0 saves none periodically */
+    public long checkpointEvery;
+
+    /** 稀疏内存的初始容量 / Initial capacity of the sparse memory */
+    public int memoryCapacity = IntHashMemory.DEFAULT_INITIAL_CAPACITY;
+
+    /** 稀疏内存的装载因子 / Load factor of the sparse memory */
+    public float memoryLoadFactor = IntHashMemory.DEFAULT_LOAD_FACTOR;
+
+    /**
+     * 预算耗尽时不在 stderr 上打印警告（停止原因仍可通过 getStopReason() 取得）
+     * Do not print a warning on stderr when a budget runs out (the stop reason is still available from getStopReason())
+     */
+    public boolean quiet;
+
+    /** 输入源，为 null 时使用标准输入 / Input source, null means stdin */
+    public InputSource input;
+
+    /** 输出端，为 null 时使用按换行刷新的标准输出 / Output sink, null means stdout flushed on newline */
+    public OutputSink output;
+
+    /**
+     * 浅拷贝：输入源和输出端仍是同一对象
+     * Shallow copy: the input source and output sink are the same objects
+     */
+    public BSOptions copy() {
+        try {
+            return (BSOptions) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * 一次执行的结果
+ * The result of one execution
+ */
+public class BSResult {
+    /** 停止原因 / Why execution stopped */
+    public final BSInterpreter.StopReason stopReason;
+
+    /** 已执行的指令数 / Number of instructions executed */
+    public final long instructionCount;
+
+    /** 是否由 c 功能位停机 / Whether a c function bit halted the program */
+    public final boolean halted;
+
+    /** 程序的指令数 / Number of instructions in the program */
+    public final int programSize;
+
+    public BSResult(BSInterpreter.StopReason stopReason, long instructionCount, boolean halted, int programSize) {
+        this.stopReason = stopReason;
+        this.instructionCount = instructionCount;
+        this.halted = halted;
+        this.programSize = programSize;
+    }
+
+    /**
+     * 程序是否自行结束（停机或离开程序），而不是被预算中止
+     * Whether the program finished on its own (halted or left the program) rather than being stopped by a budget
+     */
+    public boolean completed() {
+        return stopReason.exitCode == 0;
+    }
+
+    @Override
+    public String toString() {
+        return stopReason + " after " + instructionCount + " instructions (program size " + programSize + ")";
+    }
+}
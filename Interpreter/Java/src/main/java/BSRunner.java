@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * 嵌入式执行接口：在当前进程中运行 BS 程序并返回结果
+ * Embedding API: runs BS programs in-process and returns the result
+ *
+ * 每次调用都使用独立的解释器、内存和 I/O，互不共享可变状态，因此可以在多个线程中同时调用。
+ * 与命令行不同，未设置输入源时程序读到的是 EOF（不会接管终端），预算耗尽也不会在 stderr 上打印警告；
+ * 未设置输出端时输出仍写到标准输出。传入的 options 不会被修改，可以在多次调用之间复用
+ * （但输入源和输出端有状态，并发调用时每次都应使用自己的）。
+ * Every call uses its own interpreter, memory and I/O and shares no mutable state, so calls
+ * may run concurrently on several threads. Unlike the command line, a run without an input
+ * source reads EOF (the terminal is never taken over), and a run that exhausts its budget
+ * prints no warning on stderr; a run without an output sink still writes to stdout. The given
+ * options are not modified and may be reused across calls (but input sources and output sinks
+ * are stateful, so concurrent calls should each bring their own).
+ *
+ * 示例 / Example:
+ *   BSOptions options = new BSOptions();
+ *   options.input = InputSource.of(requestBytes);
+ *   options.output = OutputSink.of(responseStream, OutputSink.FlushPolicy.FULL);
+ *   BSResult result = BSRunner.run(program, options);
+ */
+public class BSRunner {
+    private static final InputSource NO_INPUT = InputSource.of(new byte[0]);
+
+    private BSRunner() {
+    }
+
+    /**
+     * 运行 '0'/'1' 字符串形式的程序
+     * Run a program given as a string of '0'/'1'
+     */
+    public static BSResult run(String bitstream, BSOptions options) throws IOException {
+        return run(new StringBitReader(bitstream), options);
+    }
+
+    /**
+     * 运行程序文件，按魔数选择打包格式或文本格式
+     * Run a program file, choosing the packed or text format by its magic number
+     */
+    public static BSResult run(Path program, BSOptions options) throws IOException {
+        try (BitReader reader = PackedProgramFile.isPacked(program)
+                ? new PackedBitReader(program) : new MappedBitReader(program)) {
+            return run(reader, options);
+        }
+    }
+
+    /**
+     * 运行内存中的程序文件内容（从 position 到 limit），按魔数选择打包格式或文本格式；不改变缓冲区的位置
+     * Run program file contents held in memory (from position to limit), choosing the packed or
+     * text format by its magic number; the buffer's position is left unchanged
+     */
+    public static BSResult run(ByteBuffer program, BSOptions options) throws IOException {
+        try (BitReader reader = PackedProgramFile.isPacked(program)
+                ? new PackedBitReader(program) : new MappedBitReader(program)) {
+            return run(reader, options);
+        }
+    }
+
+    /**
+     * 运行已解码的程序；同一个已解码程序可以同时被多次运行
+     * Run an already decoded program; one decoded program can be run many times concurrently
+     *
+     * 解释器只在重编号时修改程序，因此只有需要重编号而程序尚未重编号时才复制；
+     * 要反复以重编号或 JIT 方式运行时，先调用一次 program.renumberAddresses() 即可避免每次复制。
+     * The interpreter only modifies a program when renumbering it, so the program is only copied
+     * when it needs renumbering and has not been renumbered yet; to run it many times renumbered
+     * or with the JIT, call program.renumberAddresses() once to avoid a copy per run.
+     */
+    public static BSResult run(Program program, BSOptions options) throws IOException {
+        boolean renumbers = (options.renumber || options.jit) && !program.isRenumbered();
+        return execute(new BSInterpreter(renumbers ? program.copy() : program, embedded(options)));
+    }
+
+    /**
+     * 解码（不执行）程序，供之后多次运行；stream 选项被忽略
+     * Decode (without running) a program for later runs; the stream option is ignored
+     */
+    public static Program decode(BitReader reader, BSOptions options) throws IOException {
+        return BSInterpreter.load(reader, options);
+    }
+
+    private static BSResult run(BitReader reader, BSOptions options) throws IOException {
+        return execute(new BSInterpreter(reader, embedded(options)));
+    }
+
+    private static BSResult execute(BSInterpreter interpreter) throws IOException {
+        interpreter.execute();
+        return interpreter.getResult();
+    }
+
+    private static BSOptions embedded(BSOptions options) {
+        BSOptions copy = options.copy();
+        copy.quiet = true;
+        if (copy.input == null) {
+            copy.input = NO_INPUT;
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,362 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 协作式多任务调度器：在固定数量的工作线程上运行成千上万个 BS 程序
+ * Cooperative multi-tenant scheduler: runs thousands of BS programs on a fixed number of worker threads
+ *
+ * 每个任务每次最多执行 quantum 条指令（BSInterpreter.step()），然后让出工作线程。
+ * 任务的输入由调用方通过 feed() 逐步提供；没有数据可读时任务在输入指令处挂起，
+ * 不占用任何工作线程，直到 feed() 或 closeInput() 将它唤醒，因此大多数时间在等待输入的
+ * 程序几乎没有开销。就绪任务按加权公平方式排队：每个任务的虚拟运行时间按
+ * 已执行指令数除以优先级增长，总是先运行虚拟运行时间最小的任务，所以优先级为 2 的任务
+ * 得到的指令数约为优先级为 1 的任务的两倍，而任何任务都不会饿死。
+ * Each task runs at most quantum instructions at a time (BSInterpreter.step()) and then yields
+ * its worker. A task's input is supplied incrementally by the caller through feed(); when there
+ * is nothing to read the task suspends at the input instruction without occupying any worker
+ * until feed() or closeInput() wakes it, so programs that mostly wait for input cost almost
+ * nothing. Ready tasks are queued fairly by weight: each task's virtual runtime grows by the
+ * instructions it executed divided by its priority, and the task with the smallest virtual
+ * runtime always runs first, so a priority 2 task gets about twice the instructions of a
+ * priority 1 task and no task starves.
+ *
+ * 编译后的代码无法在指令中途挂起，因此调度器中的任务总是关闭 JIT 运行；其他执行选项与预算照常生效
+ * （CPU 时间上限除外，因为任务的时间片会在不同线程上运行）。
+ * Compiled code cannot suspend in the middle of an instruction, so scheduled tasks always run
+ * with the JIT off; the other execution options and budgets apply as usual (except the CPU time
+ * limit, since a task's quanta run on different threads).
+ *
+ * 示例 / Example:
+ *   try (BSScheduler scheduler = new BSScheduler(4, BSScheduler.DEFAULT_QUANTUM)) {
+ *       BSScheduler.Task task = scheduler.submit(program, options, 1);
+ *       task.feed(requestBytes);
+ *       task.closeInput();
+ *       BSResult result = task.result().join();
+ *   }
+ */
+public class BSScheduler implements AutoCloseable {
+    /** 默认时间片（指令数）/ Default quantum (instructions) */
+    public static final long DEFAULT_QUANTUM = 10000;
+
+    /** 优先级上限 / Maximum priority */
+    public static final int MAX_PRIORITY = 1000;
+
+    /** 虚拟运行时间的刻度，使除以优先级的误差可以忽略 / Virtual runtime scale, so dividing by the priority loses nothing noticeable */
+    private static final long VRUNTIME_SCALE = 1000;
+
+    /** 任务状态 / Task state */
+    public enum State {
+        /** 等待工作线程 / Waiting for a worker */
+        READY,
+        /** 正在某个工作线程上执行 / Executing on a worker */
+        RUNNING,
+        /** 等待输入，不在就绪队列中 / Waiting for input, not in the ready queue */
+        BLOCKED,
+        /** 已停止，结果已完成 / Stopped, with the result completed */
+        DONE
+    }
+
+    private final long quantum;
+    private final List<Thread> workers = new ArrayList<>();
+    private final PriorityQueue<Task> ready = new PriorityQueue<>((x, y) -> x.vruntime != y.vruntime
+        ? Long.compare(x.vruntime, y.vruntime) : Long.compare(x.sequence, y.sequence));
+    private final Set<Task> tasks = new HashSet<>();
+    private long sequence;
+    private long minVruntime;
+    private boolean closed;
+
+    /**
+     * @param workers 工作线程数 / number of worker threads
+     * @param quantum 每个时间片最多执行的指令数 / instructions executed per quantum at most
+     */
+    public BSScheduler(int workers, long quantum) {
+        if (workers < 1) {
+            throw new IllegalArgumentException(Lang.get("工作线程数必须为正数", "The number of workers must be positive"));
+        }
+        if (quantum < 1) {
+            throw new IllegalArgumentException(Lang.get("时间片必须为正数", "The quantum must be positive"));
+        }
+        this.quantum = quantum;
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(this::work, "bs-scheduler-" + i);
+            worker.setDaemon(true);
+            this.workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * 提交一个程序；任务立即就绪，读取输入时等待 feed() 提供的数据
+     * Submit a program; the task is ready at once and waits for data from feed() when it reads input
+     *
+     * options 被复制，其中的输入源被忽略；没有输出端时输出写到标准输出。
+     * 与 BSRunner 相同，只有需要重编号而程序尚未重编号时才复制程序。
+     * The options are copied and their input source is ignored; without an output sink, output
+     * goes to stdout. As with BSRunner, the program is only copied when it needs renumbering and
+     * has not been renumbered yet.
+     *
+     * @param priority 权重，1 到 MAX_PRIORITY / weight, 1 to MAX_PRIORITY
+     */
+    public Task submit(Program program, BSOptions options, int priority) throws IOException {
+        if (priority < 1 || priority > MAX_PRIORITY) {
+            throw new IllegalArgumentException(Lang.get(
+                "优先级必须在 1 到 " + MAX_PRIORITY + " 之间：" + priority,
+                "Priority must be between 1 and " + MAX_PRIORITY + ": " + priority
+            ));
+        }
+        BSOptions copy = options.copy();
+        copy.jit = false;
+        copy.quiet = true;
+        Task task = new Task(priority);
+        copy.input = task.input;
+        boolean renumbers = copy.renumber && !program.isRenumbered();
+        task.interpreter = new BSInterpreter(renumbers ? program.copy() : program, copy);
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException(Lang.get("调度器已关闭", "The scheduler is closed"));
+            }
+            task.sequence = sequence++;
+            tasks.add(task);
+            enqueue(task);
+        }
+        return task;
+    }
+
+    /**
+     * 停止所有工作线程；尚未完成的任务的结果以 CancellationException 结束
+     * Stop every worker; the results of unfinished tasks complete with a CancellationException
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        synchronized (this) {
+            for (Task task : tasks) {
+                task.state = State.DONE;
+                task.result.cancel(false);
+            }
+            tasks.clear();
+            ready.clear();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 尚未完成的任务数
+     * Number of unfinished tasks
+     */
+    public synchronized int getTaskCount() {
+        return tasks.size();
+    }
+
+    /** 调用时必须持有调度器的锁 / Must be called holding the scheduler's lock */
+    private void enqueue(Task task) {
+        // 新任务和被唤醒的任务不能靠等待积累的份额独占工作线程 / New and woken tasks cannot hog the workers with share saved up while waiting
+        task.vruntime = Math.max(task.vruntime, minVruntime);
+        task.state = State.READY;
+        ready.add(task);
+        notify();
+    }
+
+    private void work() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                while (!closed && ready.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                task = ready.poll();
+                minVruntime = task.vruntime;
+                task.state = State.RUNNING;
+            }
+
+            BSInterpreter interpreter = task.interpreter;
+            long before = interpreter.getInstructionCount();
+            boolean running;
+            Throwable failure = null;
+            try {
+                running = interpreter.step(quantum);
+            } catch (IOException | RuntimeException | Error e) {
+                running = false;
+                failure = e;
+            }
+            long executed = interpreter.getInstructionCount() - before;
+
+            synchronized (this) {
+                task.instructions += executed;
+                task.vruntime += Math.max(executed, 1) * VRUNTIME_SCALE / task.priority;
+                if (!running) {
+                    task.state = State.DONE;
+                    tasks.remove(task);
+                    if (failure != null) {
+                        task.result.completeExceptionally(failure);
+                    } else {
+                        task.result.complete(interpreter.getResult());
+                    }
+                } else if (closed) {
+                    task.state = State.READY;
+                } else if (interpreter.isBlocked() && !task.input.isReadable()) {
+                    // 没有数据可读：挂起到 feed() 或 closeInput() 为止 / Nothing to read: suspend until feed() or closeInput()
+                    task.state = State.BLOCKED;
+                } else {
+                    enqueue(task);
+                }
+            }
+        }
+    }
+
+    /** 输入到达，唤醒挂起的任务 / Input arrived; wake the task if it is suspended */
+    private synchronized void wake(Task task) {
+        if (task.state == State.BLOCKED && !closed) {
+            enqueue(task);
+        }
+    }
+
+    /**
+     * 调度器中的一个程序
+     * One program in the scheduler
+     */
+    public class Task {
+        private final int priority;
+        private final TaskInput input = new TaskInput();
+        private final CompletableFuture<BSResult> result = new CompletableFuture<>();
+        private BSInterpreter interpreter;
+        private long sequence;
+        private long vruntime;
+        private long instructions;
+        private State state;
+
+        private Task(int priority) {
+            this.priority = priority;
+        }
+
+        /**
+         * 追加输入数据；可以从任何线程调用
+         * Append input data; may be called from any thread
+         */
+        public void feed(byte[] bytes) {
+            feed(bytes, 0, bytes.length);
+        }
+
+        public void feed(byte[] bytes, int offset, int length) {
+            input.append(bytes, offset, length);
+            wake(this);
+        }
+
+        /**
+         * 结束输入；读完已提供的数据之后程序读到 EOF
+         * End the input; the program reads EOF once the data already fed is consumed
+         */
+        public void closeInput() {
+            input.close();
+            wake(this);
+        }
+
+        /**
+         * 程序停止时完成的结果
+         * The result, completed when the program stops
+         */
+        public CompletableFuture<BSResult> result() {
+            return result;
+        }
+
+        public State getState() {
+            synchronized (BSScheduler.this) {
+                return state;
+            }
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        /**
+         * 到上一个时间片结束为止已执行的指令数
+         * Instructions executed up to the end of the last quantum
+         */
+        public long getInstructionCount() {
+            synchronized (BSScheduler.this) {
+                return instructions;
+            }
+        }
+    }
+
+    /**
+     * 由 feed() 填充的非阻塞输入源
+     * A non-blocking input source filled by feed()
+     */
+    private static class TaskInput implements InputSource {
+        private byte[] buffer = new byte[16];
+        private int head;
+        private int tail;
+        private boolean closed;
+
+        synchronized void append(byte[] bytes, int offset, int length) {
+            if (closed) {
+                throw new IllegalStateException(Lang.get("输入已结束", "The input is closed"));
+            }
+            if (tail + length > buffer.length) {
+                // 先把未读部分移到开头，仍不够时再扩容 / Move the unread part to the front first, and grow only if that is not enough
+                int unread = tail - head;
+                byte[] target = unread + length > buffer.length
+                    ? new byte[Math.max(buffer.length * 2, unread + length)] : buffer;
+                System.arraycopy(buffer, head, target, 0, unread);
+                buffer = target;
+                head = 0;
+                tail = unread;
+            }
+            System.arraycopy(bytes, offset, buffer, tail, length);
+            tail += length;
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+
+        /** 下一次读取是否会得到数据或 EOF / Whether the next read yields data or EOF */
+        synchronized boolean isReadable() {
+            return head < tail || closed;
+        }
+
+        @Override
+        public synchronized int readChar() {
+            if (head < tail) {
+                return buffer[head++] & 0xFF;
+            }
+            return closed ? -1 : WOULD_BLOCK;
+        }
+
+        @Override
+        public synchronized boolean mayBlock() {
+            // 挂起之前刷新输出，以便对方看到回应后再提供输入 / Flush output before suspending, so the other side sees the reply before feeding more
+            return head == tail && !closed;
+        }
+    }
+}
@@ -16,37 +16,25 @@ import java.io.IOException;
  * - s=1且l=1: 错误情况，视为s=0处理
  * - l=0: 地址结束
  * - l=1: 继续读取下一段
+ *
+ * 子类提供比特来源（跳过空白）：StringBitReader 读取字符串，MappedBitReader 直接读取内存映射的文件；
+ * 能按 64 位字读取的来源继承 WordBitReader。
+ * Subclasses supply the bits (skipping whitespace): StringBitReader reads a string,
+ * MappedBitReader reads a memory-mapped file directly; sources that can read 64-bit words
+ * extend WordBitReader.
  */
-public class BitReader {
-    private final String bitstream;
-    private int position;
-
-    public BitReader(String bitstream) {
-        this.bitstream = bitstream.replaceAll("\\s+", "");
-        this.position = 0;
-    }
-
+public abstract class BitReader implements AutoCloseable {
     /**
      * 检查是否还有更多位可读
      * Check if there are more bits to read
      */
-    public boolean hasMore() {
-        return position < bitstream.length();
-    }
+    public abstract boolean hasMore();
 
     /**
-     * 读取单个比特，EOF 时返回 -1
-     * Read a single bit, returns -1 on EOF
+     * 读取单个比特，EOF 时返回 -1；无效字符被消耗并视为 EOF
+     * Read a single bit, returns -1 on EOF; an invalid character is consumed and treated as EOF
      */
-    private int readBit() {
-        if (position >= bitstream.length()) {
-            return -1;
-        }
-        char c = bitstream.charAt(position++);
-        if (c == '0') return 0;
-        if (c == '1') return 1;
-        return -1; // 无效字符视为 EOF / Invalid character treated as EOF
-    }
+    protected abstract int readBit();
 
     /**
      * 地址解析结果
@@ -76,8 +64,32 @@ public class BitReader {
      *
      * 返回解码后的地址值和功能位状态
      * Returns the decoded address value and function bit status.
+     * WordBitReader 按字解码，语义完全相同
+     * WordBitReader decodes by words with exactly the same semantics
      */
     public AddressResult readAddress() throws IOException {
+        return readAddressBits();
+    }
+
+    /**
+     * 统计从当前位置到流末尾的地址数（读取器随之到达末尾），与反复调用 readAddress() 的次数相同
+     * Count the addresses from the current position to the end of the stream (leaving the reader
+     * at the end); equals the number of readAddress() calls that would succeed
+     */
+    public long countAddresses() throws IOException {
+        long count = 0;
+        while (hasMore()) {
+            readAddress();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 逐位解码一个地址
+     * Decode one address bit by bit
+     */
+    protected final AddressResult readAddressBits() throws IOException {
         int address = 0;
         int segmentCount = 0;
         boolean hasFunction = false;
@@ -91,8 +103,8 @@ public class BitReader {
                     // 数据位期间遇到 EOF / EOF during data bits
                     if (segmentCount == 0 && i == 0) {
                         throw new IOException(Lang.get(
-                            "位流在位置 " + position + " 处意外结束",
-                            "Unexpected end of bitstream at position " + position
+                            "位流在位置 " + getPosition() + " 处意外结束",
+                            "Unexpected end of bitstream at position " + getPosition()
                         ));
                     }
                     // 部分段 - 剩余部分视为 0 并结束 / Partial segment - treat remaining as 0s and end
@@ -146,10 +158,16 @@ public class BitReader {
     }
 
     /**
-     * 获取当前在比特流中的位置
-     * Get current position in bitstream
+     * 获取当前在比特流中的位置（已读取的非空白字符数）
+     * Get current position in bitstream (number of non-whitespace characters read)
+     */
+    public abstract long getPosition();
+
+    /**
+     * 释放比特来源（例如映射的文件）
+     * Release the bit source (e.g. a mapped file)
      */
-    public int getPosition() {
-        return position;
+    @Override
+    public void close() throws IOException {
     }
 }
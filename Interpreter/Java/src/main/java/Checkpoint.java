@@ -0,0 +1,361 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 解释器状态的检查点：PC、内存内容、指令数、输入/输出位置和停机标志
+ * Checkpoint of the interpreter state: PC, memory contents, instruction count, input/output positions and halted flag
+ *
+ * 文件格式（大端）/ File format (big-endian):
+ *   int    魔数 "BSCK" / magic "BSCK"
+ *   int    版本 / version
+ *   long   程序散列（恢复时校验）/ program hash (checked on resume)
+ *   int    pc
+ *   byte   是否停机 / halted
+ *   long   指令数 / instruction count
+ *   long   已读取的输入字节数 / input bytes consumed
+ *   long   已写出的输出字节数 / output bytes written
+ *   int    非零单元数 / number of non-zero cells
+ *   ...    按地址排序的单元：地址差和值，均为变长整数 / cells sorted by address: address delta and value, both varints
+ *   long   以上内容的 CRC-32 / CRC-32 of everything above
+ * 地址总是原始地址，因此检查点与是否重编号、使用哪种执行引擎无关。
+ * Addresses are always original addresses, so a checkpoint does not depend on renumbering or
+ * on the execution engine.
+ */
+public class Checkpoint {
+    public static final int MAGIC = 0x4253434B; // "BSCK"
+    public static final int VERSION = 1;
+
+    /** 通过 request() 请求的检查点计数（例如由信号处理器请求）/ Count of checkpoints requested through request() (e.g. by a signal handler) */
+    private static final AtomicLong requests = new AtomicLong();
+
+    public final long programHash;
+    public final int pc;
+    public final boolean halted;
+    public final long instructionCount;
+    public final long inputPosition;
+    public final long outputPosition;
+    private final Memory memory;
+
+    /**
+     * @param memory 内存的副本（按原始地址遍历），之后不能再被修改 / a copy of the memory (visited by original address) that is not modified afterwards
+     */
+    public Checkpoint(long programHash, int pc, boolean halted, long instructionCount,
+                      long inputPosition, long outputPosition, Memory memory) {
+        this.programHash = programHash;
+        this.pc = pc;
+        this.halted = halted;
+        this.instructionCount = instructionCount;
+        this.inputPosition = inputPosition;
+        this.outputPosition = outputPosition;
+        this.memory = memory;
+    }
+
+    /**
+     * 请求所有启用了检查点的解释器在下一个时间片之间保存检查点；可以从任何线程（包括信号处理器）调用
+     * Ask every interpreter with checkpoints enabled to save one between its next slices; may be
+     * called from any thread (including a signal handler)
+     */
+    public static void request() {
+        requests.incrementAndGet();
+    }
+
+    /**
+     * 程序内容的 64 位散列（按原始地址，与是否重编号无关）
+     * 64-bit hash of the program contents (by original address, independent of renumbering)
+     */
+    public static long programHash(Program program) {
+        long hash = 0xcbf29ce484222325L ^ program.size();
+        for (int pc = 0; pc < program.size(); pc++) {
+            hash = (hash ^ program.originalAddress(program.a[pc])) * 0x100000001b3L;
+            hash = (hash ^ program.originalAddress(program.b[pc])) * 0x100000001b3L;
+            hash = (hash ^ program.c[pc]) * 0x100000001b3L;
+            hash = (hash ^ program.flags[pc]) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * 按原始地址遍历所有非零单元
+     * Visit every non-zero cell by original address
+     */
+    public void forEachCell(Memory.CellVisitor visitor) {
+        memory.forEach((address, value) -> {
+            if (value != 0) {
+                visitor.visit(address, value);
+            }
+        });
+    }
+
+    /**
+     * 写入文件：先写临时文件再原子地替换，写到一半被终止时原有的检查点保持完整
+     * Write to a file: a temporary file is written and then atomically moved into place, so a
+     * write killed halfway leaves the previous checkpoint intact
+     */
+    public void write(Path path) throws IOException {
+        long[] cells = sortedCells();
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (OutputStream file = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(programHash);
+                out.writeInt(pc);
+                out.writeBoolean(halted);
+                out.writeLong(instructionCount);
+                out.writeLong(inputPosition);
+                out.writeLong(outputPosition);
+                out.writeInt(cells.length);
+                long previous = 0;
+                for (int i = 0; i < cells.length; i++) {
+                    long address = cells[i] >> 32;
+                    // 第一个地址按 zigzag 编码，之后是正的差值 / The first address is zigzag encoded, then positive deltas
+                    writeVarint(out, i == 0 ? (address << 1) ^ (address >> 63) : address - previous);
+                    int value = (int) cells[i];
+                    writeVarint(out, ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+                    previous = address;
+                }
+                out.flush();
+                file.write(longBytes(crc.getValue()));
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 读取检查点文件；格式、版本或校验和不符时抛出 IOException
+     * Read a checkpoint file; throws IOException when the format, version or checksum does not match
+     */
+    public static Checkpoint read(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path));
+             DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(Lang.get("不是检查点文件：", "Not a checkpoint file: ") + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(Lang.get(
+                    "不支持的检查点版本 " + version + "：" + path,
+                    "Unsupported checkpoint version " + version + ": " + path
+                ));
+            }
+            long programHash = in.readLong();
+            int pc = in.readInt();
+            boolean halted = in.readBoolean();
+            long instructionCount = in.readLong();
+            long inputPosition = in.readLong();
+            long outputPosition = in.readLong();
+            int count = in.readInt();
+            if (pc < 0 || count < 0 || instructionCount < 0 || inputPosition < 0 || outputPosition < 0) {
+                throw new IOException(Lang.get("检查点已损坏：", "Corrupt checkpoint: ") + path);
+            }
+
+            IntHashMemory memory = new IntHashMemory(Math.min(count, 1 << 24), IntHashMemory.DEFAULT_LOAD_FACTOR);
+            long address = 0;
+            for (int i = 0; i < count; i++) {
+                long delta = readVarint(in);
+                address = i == 0 ? (delta >>> 1) ^ -(delta & 1) : address + delta;
+                long value = readVarint(in);
+                memory.write((int) address, (int) ((value >>> 1) ^ -(value & 1)));
+            }
+
+            long expected = crc.getValue();
+            byte[] trailer = new byte[8];
+            if (file.readNBytes(trailer, 0, 8) != 8 || bytesLong(trailer) != expected) {
+                throw new IOException(Lang.get("检查点校验和不符：", "Checkpoint checksum mismatch: ") + path);
+            }
+            return new Checkpoint(programHash, pc, halted, instructionCount, inputPosition, outputPosition, memory);
+        } catch (EOFException e) {
+            throw new IOException(Lang.get("检查点不完整：", "Truncated checkpoint: ") + path);
+        }
+    }
+
+    /** 非零单元，打包为 (地址 << 32 | 值) 并按地址排序 / Non-zero cells packed as (address << 32 | value), sorted by address */
+    private long[] sortedCells() {
+        long[][] cells = {new long[Math.max(16, memory.size())]};
+        int[] count = {0};
+        forEachCell((address, value) -> {
+            if (count[0] == cells[0].length) {
+                cells[0] = Arrays.copyOf(cells[0], count[0] * 2);
+            }
+            cells[0][count[0]++] = ((long) address << 32) | (value & 0xFFFFFFFFL);
+        });
+        long[] sorted = Arrays.copyOf(cells[0], count[0]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException(Lang.get("检查点已损坏：变长整数过长", "Corrupt checkpoint: varint too long"));
+    }
+
+    private static byte[] longBytes(long value) {
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    private static long bytesLong(byte[] bytes) {
+        long value = 0;
+        for (byte b : bytes) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 一个解释器的检查点触发与后台写入：执行线程只复制内存数组，编码和写文件在后台线程中进行
+     * Checkpoint triggering and background writing for one interpreter: the executing thread only
+     * copies the memory arrays, while encoding and writing happen on a background thread
+     */
+    static class Writer {
+        private final Path path;
+        private final long every;
+        private long next;
+        private long seenRequests;
+        private Thread pending;
+        private volatile IOException failure;
+
+        /**
+         * @param every 每隔多少条指令保存一次，0 表示只在请求或预算耗尽时保存 / save every so many instructions, 0 saves only on request or budget exhaustion
+         */
+        Writer(Path path, long every) {
+            this.path = path;
+            this.every = every;
+            this.seenRequests = requests.get();
+            start(0);
+        }
+
+        /** 从 instructionCount 起重新计算下一次周期检查点 / Schedule the next periodic checkpoint counting from instructionCount */
+        void start(long instructionCount) {
+            next = every > 0 ? instructionCount + every : Long.MAX_VALUE;
+        }
+
+        /** 到下一次周期检查点之前最多还能执行的指令数 / Instructions that may run before the next periodic checkpoint */
+        long stepsUntilDue(long instructionCount) {
+            return every > 0 ? Math.max(1, next - instructionCount) : Long.MAX_VALUE;
+        }
+
+        /** 是否应该保存检查点（周期到达或有新的请求）/ Whether a checkpoint is due (period reached or a new request) */
+        boolean due(long instructionCount) {
+            return instructionCount >= next || requests.get() != seenRequests;
+        }
+
+        /**
+         * 在后台写入检查点；上一次写入尚未完成时先等待它
+         * Write the checkpoint in the background, first waiting for the previous write if it is still running
+         */
+        void save(Checkpoint checkpoint) throws IOException {
+            await();
+            seenRequests = requests.get();
+            start(checkpoint.instructionCount);
+            Thread writer = new Thread(() -> {
+                try {
+                    checkpoint.write(path);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }, "bs-checkpoint");
+            writer.setDaemon(true);
+            writer.start();
+            pending = writer;
+        }
+
+        /**
+         * 等待正在进行的写入完成，并报告它的错误
+         * Wait for the write in progress and report its failure
+         */
+        void await() throws IOException {
+            Thread writer = pending;
+            if (writer != null) {
+                boolean interrupted = false;
+                while (writer.isAlive()) {
+                    try {
+                        writer.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                pending = null;
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            IOException e = failure;
+            if (e != null) {
+                failure = null;
+                throw new IOException(Lang.get("无法写入检查点：", "Cannot write checkpoint: ") + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 统计已读取字节数的输入源包装（恢复时据此跳过已读取的输入）
+     * Input source wrapper counting the bytes consumed (so a resumed run can skip them)
+     */
+    static class CountingInput implements InputSource {
+        private final InputSource source;
+        long position;
+
+        CountingInput(InputSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public int readChar() throws IOException {
+            int value = source.readChar();
+            if (value >= 0) {
+                position++;
+            }
+            return value;
+        }
+
+        @Override
+        public boolean mayBlock() {
+            return source.mayBlock();
+        }
+    }
+}
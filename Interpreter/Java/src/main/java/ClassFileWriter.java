@@ -0,0 +1,390 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 最小化的 JVM class 文件生成器（供 JIT 使用）
+ * Minimal JVM class file writer (used by the JIT)
+ *
+ * 只支持 JIT 需要的常量池条目和指令。生成 49 版本（Java 5）的 class 文件，
+ * 这样验证器会自行推导类型，不需要 StackMapTable。
+ * Supports only the constant pool entries and instructions the JIT needs. It emits
+ * version 49 (Java 5) class files, so the verifier infers types itself and no
+ * StackMapTable is required.
+ */
+public class ClassFileWriter {
+    private static final int MAJOR_VERSION = 49;
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    // 使用到的操作码 / Opcodes in use
+    public static final int ICONST_0 = 0x03;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC = 0x12;
+    public static final int LDC_W = 0x13;
+    public static final int ILOAD = 0x15;
+    public static final int ALOAD = 0x19;
+    public static final int ILOAD_0 = 0x1a;
+    public static final int ALOAD_0 = 0x2a;
+    public static final int IALOAD = 0x2e;
+    public static final int ISTORE = 0x36;
+    public static final int ISTORE_0 = 0x3b;
+    public static final int IASTORE = 0x4f;
+    public static final int DUP_X2 = 0x5b;
+    public static final int DUP2 = 0x5c;
+    public static final int ISUB = 0x64;
+    public static final int IFGT = 0x9d;
+    public static final int IFLE = 0x9e;
+    public static final int IF_ICMPGE = 0xa2;
+    public static final int GOTO = 0xa7;
+    public static final int TABLESWITCH = 0xaa;
+    public static final int IRETURN = 0xac;
+    public static final int RETURN = 0xb1;
+    public static final int PUTFIELD = 0xb5;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<Method> methods = new ArrayList<>();
+
+    /**
+     * @param name       类的内部名称（如 "JitChunk"）/ internal class name (e.g. "JitChunk")
+     * @param superName  父类内部名称 / internal superclass name
+     * @param interfaces 实现的接口内部名称 / internal names of implemented interfaces
+     */
+    public ClassFileWriter(String name, String superName, String... interfaces) {
+        this.thisClass = classRef(name);
+        this.superClass = classRef(superName);
+        this.interfaces = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            this.interfaces[i] = classRef(interfaces[i]);
+        }
+    }
+
+    // ---- 常量池 / Constant pool ----
+
+    public int utf8(String value) {
+        return entry("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    public int intConst(int value) {
+        return entry("I" + value, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    public int classRef(String name) {
+        int nameIndex = utf8(name);
+        return entry("C" + name, out -> {
+            out.writeByte(7);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    public int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descIndex = utf8(descriptor);
+        return entry("N" + name + ":" + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descIndex);
+        });
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int natIndex = nameAndType(name, descriptor);
+        return entry(tag + owner + "." + name + ":" + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(natIndex);
+        });
+    }
+
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int entry(String key, EntryWriter writer) {
+        Integer index = poolIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        if (poolCount >= 0xFFFF) {
+            throw new IllegalStateException(Lang.get("常量池溢出", "Constant pool overflow"));
+        }
+        try {
+            writer.write(poolOut);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        poolIndex.put(key, poolCount);
+        return poolCount++;
+    }
+
+    // ---- 方法 / Methods ----
+
+    public Method method(int access, String name, String descriptor, int maxStack, int maxLocals) {
+        Method method = new Method(access, utf8(name), utf8(descriptor), maxStack, maxLocals);
+        methods.add(method);
+        return method;
+    }
+
+    /**
+     * 生成 class 文件字节
+     * Produce the class file bytes
+     */
+    public byte[] toByteArray() {
+        int codeName = utf8("Code");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int i : interfaces) {
+                out.writeShort(i);
+            }
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (Method method : methods) {
+                method.writeTo(out, codeName);
+            }
+            out.writeShort(0); // attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 跳转目标
+     * Jump target
+     */
+    public static class Label {
+        private int position = -1;
+        private final List<int[]> uses = new ArrayList<>(2);
+    }
+
+    /**
+     * 方法体的字节码缓冲区
+     * Bytecode buffer for one method body
+     */
+    public class Method {
+        private final int access;
+        private final int nameIndex;
+        private final int descIndex;
+        private final int maxStack;
+        private final int maxLocals;
+        private byte[] code = new byte[256];
+        private int length;
+        private final List<Label> labels = new ArrayList<>();
+
+        private Method(int access, int nameIndex, int descIndex, int maxStack, int maxLocals) {
+            this.access = access;
+            this.nameIndex = nameIndex;
+            this.descIndex = descIndex;
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        /** 至今生成的字节码长度 / Length of the bytecode generated so far */
+        public int length() {
+            return length;
+        }
+
+        public void op(int opcode) {
+            u1(opcode);
+        }
+
+        public void iload(int local) {
+            local(ILOAD, ILOAD_0, local);
+        }
+
+        public void istore(int local) {
+            local(ISTORE, ISTORE_0, local);
+        }
+
+        public void aload(int local) {
+            local(ALOAD, ALOAD_0, local);
+        }
+
+        private void local(int opcode, int shortOpcode, int local) {
+            if (local <= 3) {
+                u1(shortOpcode + local);
+            } else {
+                u1(opcode);
+                u1(local);
+            }
+        }
+
+        /**
+         * 以最短的形式压入一个 int 常量
+         * Push an int constant using the shortest encoding
+         */
+        public void push(int value) {
+            if (value >= -1 && value <= 5) {
+                u1(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(value);
+            } else {
+                int index = intConst(value);
+                if (index <= 0xFF) {
+                    u1(LDC);
+                    u1(index);
+                } else {
+                    u1(LDC_W);
+                    u2(index);
+                }
+            }
+        }
+
+        public void invoke(int opcode, String owner, String name, String descriptor) {
+            u1(opcode);
+            u2(methodRef(owner, name, descriptor));
+        }
+
+        public void field(int opcode, String owner, String name, String descriptor) {
+            u1(opcode);
+            u2(fieldRef(owner, name, descriptor));
+        }
+
+        /**
+         * 条件或无条件跳转（16 位偏移）
+         * Conditional or unconditional jump (16-bit offset)
+         */
+        public void jump(int opcode, Label target) {
+            int at = length;
+            u1(opcode);
+            use(target, at, 2);
+            u2(0);
+        }
+
+        public void tableswitch(int low, Label[] targets, Label defaultTarget) {
+            int at = length;
+            u1(TABLESWITCH);
+            while (length % 4 != 0) {
+                u1(0);
+            }
+            use(defaultTarget, at, 4);
+            u4(0);
+            u4(low);
+            u4(low + targets.length - 1);
+            for (Label target : targets) {
+                use(target, at, 4);
+                u4(0);
+            }
+        }
+
+        /**
+         * 把标签放在当前位置
+         * Place a label at the current position
+         */
+        public void mark(Label label) {
+            label.position = length;
+        }
+
+        private void use(Label label, int opcodeAt, int width) {
+            if (label.uses.isEmpty()) {
+                labels.add(label);
+            }
+            label.uses.add(new int[] {opcodeAt, length, width});
+        }
+
+        private void resolve() {
+            for (Label label : labels) {
+                if (label.position < 0) {
+                    throw new IllegalStateException(Lang.get("未放置的标签", "Unplaced label"));
+                }
+                for (int[] use : label.uses) {
+                    int offset = label.position - use[0];
+                    if (use[2] == 2) {
+                        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                            throw new IllegalStateException(Lang.get("跳转偏移过大", "Jump offset too large"));
+                        }
+                        code[use[1]] = (byte) (offset >> 8);
+                        code[use[1] + 1] = (byte) offset;
+                    } else {
+                        code[use[1]] = (byte) (offset >> 24);
+                        code[use[1] + 1] = (byte) (offset >> 16);
+                        code[use[1] + 2] = (byte) (offset >> 8);
+                        code[use[1] + 3] = (byte) offset;
+                    }
+                }
+            }
+        }
+
+        private void writeTo(DataOutputStream out, int codeName) throws IOException {
+            resolve();
+            if (length > 0xFFFF) {
+                throw new IllegalStateException(Lang.get("方法体过大", "Method body too large"));
+            }
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(descIndex);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(length);
+            out.write(code, 0, length);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        }
+
+        private void u1(int value) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        private void u4(int value) {
+            u2(value >> 16);
+            u2(value);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 回归语料检查：用每种执行引擎运行语料中的每个生成程序，输出、指令数和停止原因都必须与记录一致
+ * Regression corpus check: every generated program in the corpus is run on every execution
+ * engine, and its output, instruction count and stop reason must match the recorded ones
+ *
+ * 语料（corpus.txt，每行一个程序）/ Corpus (corpus.txt, one program per line):
+ *   <工作负载规格 / workload spec> <指令数 / instructions> <停止原因 / stop reason> <输出 / output>
+ * 输出为十六进制，空输出为 -，超过 16 字节时为 crc32=<CRC-32>/<长度>。
+ * The output is hex, - when empty, or crc32=<CRC-32>/<length> when longer than 16 bytes.
+ * 程序和输入由 ProgramGenerator 按规格重新生成，因此语料只保存期望结果。
+ * Programs and inputs are regenerated from the spec by ProgramGenerator, so the corpus only
+ * holds the expected results.
+ *
+ * 用法 / Usage: java CorpusCheck [--lang zh|en] [--corpus <file>] [--record] [engine...]
+ *   engine: interpret | renumber | fuse | loops | jit | stream | lanes | lanes-vector | checkpoint | checkpoint-renumber（默认全部 / default all）
+ *   lanes、lanes-vector 在 LANES 个锁步通道中运行同一程序，各通道的输入不同（截短、空、种子字节不同），
+ *   因此通道组会分裂、重新合并和轮转；通道 0 与语料比较，其他通道与各自单独运行的结果比较。
+ *   种子为 0 的循环不会结束，因此指令上限为记录指令数的两倍。
+ *   lanes-vector 需要 java --add-modules jdk.incubator.vector，否则回退到标量循环
+ *   lanes and lanes-vector run the same program in LANES lockstep lanes with different inputs
+ *   (truncated, empty, another seed byte), so lane groups split, merge again and rotate; lane 0
+ *   is compared with the corpus and the other lanes with a separate run of each. Loops with a
+ *   zero seed never end, so the instruction limit is twice the recorded count.
+ *   lanes-vector needs java --add-modules jdk.incubator.vector, otherwise it falls back to
+ *   scalar loops
+ *   checkpoint、checkpoint-renumber 在记录的指令数一半处用指令上限中断，保存检查点后恢复运行到结束，
+ *   拼接两段输出；分别使用散列内存和重编号后的紧凑内存
+ *   checkpoint and checkpoint-renumber stop the run at half the recorded instruction count,
+ *   save a checkpoint, resume from it to the end and concatenate both outputs; on hash memory
+ *   and on renumbered dense memory respectively
+ *   --record  用解释器重新计算期望结果，输出新的语料 / recompute the expected results with the interpreter and print a new corpus
+ */
+public class CorpusCheck {
+    private static final String[] ENGINES = {"interpret", "renumber", "fuse", "loops", "jit", "stream", "lanes", "lanes-vector",
+                                             "checkpoint", "checkpoint-renumber"};
+
+    /** 锁步引擎的通道数（laneInputs 的个数，不是向量长度的倍数，以覆盖尾部）/ Lane count of the lockstep engines (the number of laneInputs, not a multiple of the vector length, to cover the tail) */
+    private static final int LANES = 6;
+
+    /** 更长的输出只记录长度和 CRC-32 / Longer outputs are only recorded by length and CRC-32 */
+    private static final int MAX_HEX_OUTPUT = 16;
+
+    public static void main(String[] args) throws IOException {
+        String corpus = null;
+        boolean record = false;
+        List<String> engines = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--lang":
+                    Lang.setLanguage(args[++i]);
+                    break;
+                case "--corpus":
+                    corpus = args[++i];
+                    break;
+                case "--record":
+                    record = true;
+                    break;
+                default:
+                    if (!Arrays.asList(ENGINES).contains(args[i])) {
+                        System.err.println(Lang.get("未知的引擎：", "Unknown engine: ") + args[i]);
+                        System.exit(2);
+                    }
+                    engines.add(args[i]);
+                    break;
+            }
+        }
+        if (engines.isEmpty()) {
+            engines.addAll(Arrays.asList(ENGINES));
+        }
+
+        List<String> lines = new ArrayList<>();
+        try (InputStream in = corpus != null ? Files.newInputStream(Paths.get(corpus))
+                                             : CorpusCheck.class.getResourceAsStream("/corpus.txt")) {
+            if (in == null) {
+                throw new IOException(Lang.get("找不到语料 corpus.txt", "Corpus corpus.txt not found"));
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+
+        int entries = 0;
+        int failures = 0;
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                if (record) {
+                    System.out.println(line);
+                }
+                continue;
+            }
+            String[] fields = trimmed.split("\\s+");
+            ProgramGenerator.Sample sample = ProgramGenerator.generate(fields[0]);
+            String bits = sample.program.bits();
+            entries++;
+
+            if (record) {
+                Result result = run(bits, sample, "interpret", 0)[0];
+                System.out.println(sample.spec + " " + result);
+                continue;
+            }
+
+            String expected = String.join(" ", Arrays.copyOfRange(fields, 1, fields.length));
+            for (String engine : engines) {
+                long start = System.nanoTime();
+                Result[] results = run(bits, sample, engine, Long.parseLong(fields[1]));
+                long millis = (System.nanoTime() - start) / 1000000;
+                boolean ok = true;
+                for (int lane = 0; lane < results.length; lane++) {
+                    String wanted = results[lane].reference != null ? results[lane].reference : expected;
+                    if (!results[lane].toString().equals(wanted)) {
+                        ok = false;
+                        failures++;
+                        String where = results.length > 1 ? engine + " " + Lang.get("通道 ", "lane ") + lane : engine;
+                        System.out.println(Lang.get("不一致：", "Mismatch: ") + sample.spec + " [" + where + "]");
+                        System.out.println("  " + Lang.get("期望", "expected") + ": " + wanted);
+                        System.out.println("  " + Lang.get("实际", "actual") + ":   " + results[lane]);
+                    }
+                }
+                if (ok) {
+                    System.out.printf("%-24s %-19s %8d ms  %s%n", sample.spec, engine, millis,
+                                      Lang.get("通过", "ok"));
+                }
+            }
+        }
+
+        if (!record) {
+            System.out.println(Lang.get(
+                "检查了 " + entries + " 个程序，失败 " + failures + " 次",
+                "Checked " + entries + " programs, " + failures + " failures"
+            ));
+            if (failures > 0) {
+                System.exit(1);
+            }
+        }
+    }
+
+    /** 一次运行的结果，格式与语料的列相同 / The result of one run, formatted like the corpus columns */
+    private static class Result {
+        long instructions;
+        BSInterpreter.StopReason stop;
+        byte[] output;
+        /** 不与语料比较时的期望结果（单独运行的结果）/ The expected result when not compared with the corpus (that of a separate run) */
+        String reference;
+
+        @Override
+        public String toString() {
+            String text;
+            if (output.length == 0) {
+                text = "-";
+            } else if (output.length <= MAX_HEX_OUTPUT) {
+                StringBuilder hex = new StringBuilder();
+                for (byte b : output) {
+                    hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+                text = hex.toString();
+            } else {
+                CRC32 crc = new CRC32();
+                crc.update(output);
+                text = String.format("crc32=%08x/%d", crc.getValue(), output.length);
+            }
+            return instructions + " " + stop + " " + text;
+        }
+    }
+
+    /**
+     * 用一种引擎运行样本；锁步引擎返回每个通道的结果，检查点引擎在 recorded（记录的指令数）一半处中断
+     * Run the sample on one engine; the lockstep engines return each lane's result, and the
+     * checkpoint engines stop at half of recorded (the recorded instruction count)
+     */
+    private static Result[] run(String bits, ProgramGenerator.Sample sample, String engine, long recorded) throws IOException {
+        byte[] input = sample.input;
+        BSOptions options = new BSOptions();
+        options.maxInstructions = BSOptions.UNLIMITED;
+        switch (engine) {
+            case "renumber":
+                options.renumber = true;
+                break;
+            case "fuse":
+                options.fuse = true;
+                break;
+            case "loops":
+                options.accelerateLoops = true;
+                break;
+            case "jit":
+                options.jit = true;
+                break;
+            case "stream":
+                options.stream = true;
+                break;
+            case "lanes-vector":
+                options.vectorLanes = true;
+                return runLanes(sample.program, input, options, 2 * recorded + LANES);
+            case "lanes":
+                return runLanes(sample.program, input, options, 2 * recorded + LANES);
+            case "checkpoint-renumber":
+                options.renumber = true;
+                return new Result[] {runResumed(bits, input, options, Math.max(recorded / 2, 1))};
+            case "checkpoint":
+                return new Result[] {runResumed(bits, input, options, Math.max(recorded / 2, 1))};
+            default:
+                break;
+        }
+        options.input = InputSource.of(input);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        options.output = OutputSink.of(output, OutputSink.FlushPolicy.FULL);
+
+        BSResult run = BSRunner.run(bits, options);
+
+        Result result = new Result();
+        result.instructions = run.instructionCount;
+        result.stop = run.stopReason;
+        result.output = output.toByteArray();
+        return new Result[] {result};
+    }
+
+    /**
+     * 运行 cut 条指令后保存检查点，再用新的解释器从检查点运行到结束；输出为检查点记录的前一段输出加上恢复后的输出
+     * Run cut instructions and save a checkpoint, then run a new interpreter from the checkpoint to
+     * the end; the output is the first part up to the recorded position followed by the resumed output
+     */
+    private static Result runResumed(String bits, byte[] input, BSOptions options, long cut) throws IOException {
+        Path file = Files.createTempFile("corpus", ".ck");
+        try {
+            options.quiet = true;
+            options.maxInstructions = cut;
+            options.checkpoint = file;
+            options.input = InputSource.of(input);
+            ByteArrayOutputStream first = new ByteArrayOutputStream();
+            options.output = OutputSink.of(first, OutputSink.FlushPolicy.FULL);
+            BSInterpreter interpreter = new BSInterpreter(bits, options);
+            interpreter.execute();
+
+            Result result = new Result();
+            BSResult run = interpreter.getResult();
+            if (run.stopReason == BSInterpreter.StopReason.INSTRUCTION_LIMIT) {
+                Checkpoint checkpoint = Checkpoint.read(file);
+                options.maxInstructions = BSOptions.UNLIMITED;
+                options.checkpoint = null;
+                options.input = InputSource.of(input);
+                ByteArrayOutputStream rest = new ByteArrayOutputStream();
+                options.output = OutputSink.of(rest, OutputSink.FlushPolicy.FULL);
+                BSInterpreter resumed = new BSInterpreter(bits, options);
+                resumed.restore(checkpoint);
+                resumed.execute();
+                run = resumed.getResult();
+
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                output.write(first.toByteArray(), 0, (int) Math.min(checkpoint.outputPosition, first.size()));
+                rest.writeTo(output);
+                result.output = output.toByteArray();
+            } else {
+                result.output = first.toByteArray();
+            }
+            result.instructions = run.instructionCount;
+            result.stop = run.stopReason;
+            return result;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * 各通道的输入：原输入、空输入（种子为 0）、前一半、每个字节加 1、只有第一个字节、再一次原输入
+     * Each lane's input: the original input, an empty one (a zero seed), the first half, every
+     * byte plus 1, only the first byte, and the original input again
+     */
+    private static byte[][] laneInputs(byte[] input) {
+        byte[] shifted = input.clone();
+        for (int i = 0; i < shifted.length; i++) {
+            shifted[i]++;
+        }
+        return new byte[][] {
+            input, new byte[0], Arrays.copyOf(input, input.length / 2), shifted,
+            Arrays.copyOf(input, Math.min(input.length, 1)), input
+        };
+    }
+
+    private static Result[] runLanes(ProgramGenerator generator, byte[] input, BSOptions options, long maxInstructions)
+            throws IOException {
+        byte[][] laneInputs = laneInputs(input);
+        options.maxInstructions = maxInstructions;
+        InputSource[] inputs = new InputSource[LANES];
+        OutputSink[] outputs = new OutputSink[LANES];
+        ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[LANES];
+        for (int lane = 0; lane < LANES; lane++) {
+            inputs[lane] = InputSource.of(laneInputs[lane]);
+            buffers[lane] = new ByteArrayOutputStream();
+            outputs[lane] = OutputSink.of(buffers[lane], OutputSink.FlushPolicy.FULL);
+        }
+
+        Program program = generator.toProgram();
+        BSResult[] runs = new LockstepEngine(program, options).run(inputs, outputs);
+
+        Result[] results = new Result[LANES];
+        for (int lane = 0; lane < LANES; lane++) {
+            results[lane] = new Result();
+            results[lane].instructions = runs[lane].instructionCount;
+            results[lane].stop = runs[lane].stopReason;
+            results[lane].output = buffers[lane].toByteArray();
+            // 通道 0 与语料比较，其他通道与同一上限下的单独运行比较 / Lane 0 is compared with the corpus, the others with a separate run under the same limit
+            if (lane > 0) {
+                BSOptions separate = new BSOptions();
+                separate.maxInstructions = maxInstructions;
+                separate.input = InputSource.of(laneInputs[lane]);
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                separate.output = OutputSink.of(output, OutputSink.FlushPolicy.FULL);
+                BSResult run = BSRunner.run(program, separate);
+                Result reference = new Result();
+                reference.instructions = run.instructionCount;
+                reference.stop = run.stopReason;
+                reference.output = output.toByteArray();
+                results[lane].reference = reference.toString();
+            }
+        }
+        return results;
+    }
+}
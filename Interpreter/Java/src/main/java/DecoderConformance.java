@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 一致性检查：按字解码（PackedBitReader）与逐位解码（StringBitReader）必须完全一致，地址计数也必须一致；
+ * 以很小的段并行解码（ParallelDecoder）得到的程序必须与顺序解码逐个数组相同
+ * Conformance check: word-at-a-time decoding (PackedBitReader) must match bit-by-bit decoding (StringBitReader) exactly,
+ * and so must the address count; a parallel decode with tiny chunks (ParallelDecoder) must give the same arrays as a
+ * sequential decode
+ *
+ * 用法 / Usage: java DecoderConformance [--lang zh|en] [iterations] [seed]
+ */
+public class DecoderConformance {
+    public static void main(String[] args) throws IOException {
+        int arg = 0;
+        if (args.length > 1 && args[0].equals("--lang")) {
+            Lang.setLanguage(args[1]);
+            arg = 2;
+        }
+        int iterations = args.length > arg ? Integer.parseInt(args[arg]) : 20000;
+        long seed = args.length > arg + 1 ? Long.parseLong(args[arg + 1]) : 1;
+
+        Random random = new Random(seed);
+        Path packed = Files.createTempFile("bs-conformance", ".bsp");
+        Path text = Files.createTempFile("bs-conformance", ".bs");
+        // 多线程池加上很小的段，使几千位的流也被切成多段 / A multi-thread pool with tiny chunks, so streams of a few thousand bits are split too
+        ForkJoinPool pool = new ForkJoinPool(4);
+        int failures = 0;
+        try {
+            for (int i = 0; i < iterations && failures < 10; i++) {
+                String bits = i % 2 == 0 ? randomBits(random) : adversarialBits(random);
+                long chunkBits = 6 * (1 + random.nextInt(16));
+                if (!check(bits, text, packed) || !checkParallel(bits, packed, pool, chunkBits)) {
+                    failures++;
+                }
+            }
+        } finally {
+            pool.shutdown();
+            Files.deleteIfExists(packed);
+            Files.deleteIfExists(text);
+        }
+
+        System.out.println(Lang.get(
+            "检查了 " + iterations + " 个比特流，失败 " + failures + " 个",
+            "Checked " + iterations + " bitstreams, " + failures + " failed"
+        ));
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 均匀随机的比特流，长度覆盖 64 位字边界附近
+     * Uniformly random bitstreams, with lengths around 64-bit word boundaries
+     */
+    private static String randomBits(Random random) {
+        int length = random.nextBoolean() ? random.nextInt(140) : random.nextInt(4000);
+        StringBuilder bits = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            bits.append(random.nextBoolean() ? '1' : '0');
+        }
+        return bits.toString();
+    }
+
+    /**
+     * 由边界情况组成的比特流：长链接链（超过 10 块、超过 8 个半字节）、s=1且l=1 块、
+     * 功能位、任意位置截断
+     * Bitstreams built from edge cases: long link chains (over 10 blocks, over 8 nibbles),
+     * s=1/l=1 blocks, function bits, truncation at any position
+     */
+    private static String adversarialBits(Random random) {
+        StringBuilder bits = new StringBuilder();
+        int addresses = 1 + random.nextInt(30);
+        for (int n = 0; n < addresses; n++) {
+            int blocks = random.nextInt(4) == 0 ? 1 + random.nextInt(16) : 1 + random.nextInt(3);
+            for (int block = 0; block < blocks; block++) {
+                boolean last = block == blocks - 1;
+                for (int i = 0; i < 4; i++) {
+                    bits.append(random.nextInt(3) == 0 ? '1' : '0');
+                }
+                // 非终止块也可能带 s=1 / Non-terminating blocks may carry s=1 too
+                bits.append(random.nextInt(3) == 0 ? '1' : '0');
+                bits.append(last ? '0' : '1');
+            }
+        }
+        int cut = random.nextInt(4) == 0 ? random.nextInt(bits.length() + 1) : bits.length();
+        return bits.substring(0, cut);
+    }
+
+    private static boolean check(String bits, Path text, Path packed) throws IOException {
+        Files.write(text, bits.getBytes("US-ASCII"));
+        PackedProgramFile.pack(text, packed);
+
+        long addresses = 0;
+        try (BitReader expected = new StringBitReader(bits);
+             BitReader actual = new PackedBitReader(packed)) {
+            while (expected.hasMore() || actual.hasMore()) {
+                String want = next(expected);
+                String got = next(actual);
+                if (!want.equals(got) || expected.getPosition() != actual.getPosition()) {
+                    System.out.println(Lang.get("不一致：", "Mismatch: ") + bits);
+                    System.out.println("  " + Lang.get("逐位", "bitwise") + ": " + want + " @" + expected.getPosition());
+                    System.out.println("  " + Lang.get("按字", "word") + ":    " + got + " @" + actual.getPosition());
+                    return false;
+                }
+                if (want.startsWith("!")) {
+                    break;
+                }
+                addresses++;
+            }
+        }
+
+        // 位计数统计必须与逐个解码一致 / The population count must agree with decoding one by one
+        try (BitReader counted = new PackedBitReader(packed)) {
+            long count = counted.countAddresses();
+            if (count != addresses) {
+                System.out.println(Lang.get("地址数不一致：", "Address count mismatch: ") + bits);
+                System.out.println("  " + addresses + " != " + count);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 并行解码（每段至少 chunkBits 位）必须与顺序解码逐个数组相同，包括结束哨兵
+     * A parallel decode (at least chunkBits bits per chunk) must give the same arrays as a
+     * sequential decode, end sentinel included
+     */
+    private static boolean checkParallel(String bits, Path packed, ForkJoinPool pool, long chunkBits) throws IOException {
+        Program expected = Program.decode(new StringBitReader(bits), false);
+        Program actual;
+        try (PackedBitReader reader = new PackedBitReader(packed)) {
+            actual = ParallelDecoder.decode(reader, pool, chunkBits);
+        } catch (IOException e) {
+            System.out.println(Lang.get("并行解码失败：", "Parallel decode failed: ") + bits);
+            System.out.println("  " + Lang.get("段大小 ", "chunk bits ") + chunkBits + ": " + e.getMessage());
+            return false;
+        }
+        int size = expected.size();
+        String field = actual.size() != size ? "size"
+                     : !Arrays.equals(expected.a, 0, size + 1, actual.a, 0, size + 1) ? "a"
+                     : !Arrays.equals(expected.b, 0, size + 1, actual.b, 0, size + 1) ? "b"
+                     : !Arrays.equals(expected.c, 0, size + 1, actual.c, 0, size + 1) ? "c"
+                     : !Arrays.equals(expected.flags, 0, size + 1, actual.flags, 0, size + 1) ? "flags"
+                     : null;
+        if (field != null) {
+            System.out.println(Lang.get("并行解码不一致（" + field + "）：", "Parallel decode mismatch (" + field + "): ") + bits);
+            System.out.println("  " + Lang.get("段大小 ", "chunk bits ") + chunkBits + ", "
+                + Lang.get("顺序 ", "sequential ") + size + ", " + Lang.get("并行 ", "parallel ") + actual.size());
+            return false;
+        }
+        return true;
+    }
+
+    private static String next(BitReader reader) {
+        if (!reader.hasMore()) {
+            return "<eof>";
+        }
+        try {
+            BitReader.AddressResult result = reader.readAddress();
+            return result.address + (result.hasFunction ? "[F]" : "");
+        } catch (IOException e) {
+            return "!" + Objects.toString(e.getMessage());
+        }
+    }
+}
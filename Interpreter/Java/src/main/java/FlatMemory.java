@@ -0,0 +1,61 @@
+/**
+ * 基于 int[] 的紧凑内存，用于地址重编号后的程序
+ * Dense int[] memory for programs whose addresses were renumbered
+ *
+ * 读写使用的是 0..N-1 的紧凑下标；遍历时报告原始地址。
+ * Reads and writes use dense indices 0..N-1; iteration reports original addresses.
+ */
+public class FlatMemory implements Memory {
+    private final int[] cells;
+    private final int[] originalAddresses;
+
+    /**
+     * @param originalAddresses 紧凑下标到原始地址的映射 / dense index to original address table
+     */
+    public FlatMemory(int[] originalAddresses) {
+        this.cells = new int[originalAddresses.length];
+        this.originalAddresses = originalAddresses;
+    }
+
+    private FlatMemory(int[] cells, int[] originalAddresses) {
+        this.cells = cells;
+        this.originalAddresses = originalAddresses;
+    }
+
+    @Override
+    public int read(int address) {
+        return cells[address];
+    }
+
+    @Override
+    public void write(int address, int value) {
+        cells[address] = value;
+    }
+
+    @Override
+    public int size() {
+        return cells.length;
+    }
+
+    @Override
+    public void forEach(CellVisitor visitor) {
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != 0) {
+                visitor.visit(originalAddresses[i], cells[i]);
+            }
+        }
+    }
+
+    @Override
+    public Memory copy() {
+        return new FlatMemory(cells.clone(), originalAddresses);
+    }
+
+    /**
+     * 底层单元数组（供执行引擎直接访问）
+     * Backing cell array (for direct access by execution engines)
+     */
+    public int[] cells() {
+        return cells;
+    }
+}
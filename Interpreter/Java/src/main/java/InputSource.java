@@ -0,0 +1,55 @@
+import java.io.IOException;
+
+/**
+ * 输入源（a段输入功能位读取的字节来源）
+ * Input source (where the a input function bit reads bytes from)
+ */
+public interface InputSource {
+
+    /**
+     * 非阻塞输入源暂无数据时 readChar() 的返回值；BSInterpreter.step() 会在该输入指令处挂起，稍后重新执行它。
+     * 只有 step() 支持非阻塞输入源：execute()（以及 BSRunner）、JIT 和多通道执行遇到它时抛出 IllegalStateException
+     * What readChar() returns when a non-blocking source has no data yet; BSInterpreter.step()
+     * suspends at that input instruction and executes it again later. Only step() supports
+     * non-blocking sources: execute() (and so BSRunner), the JIT and lockstep lanes throw
+     * IllegalStateException when they meet one
+     */
+    int WOULD_BLOCK = -2;
+
+    /**
+     * 读取一个字节
+     * Read one byte
+     *
+     * @return 读取的字节值，如果到达EOF返回-1；非阻塞输入源暂无数据时返回 WOULD_BLOCK
+     * @throws IOException 如果读取失败
+     */
+    int readChar() throws IOException;
+
+    /**
+     * 下一次读取是否可能阻塞；可能阻塞时解释器会先刷新输出
+     * Whether the next read may block; if so the interpreter flushes output first
+     */
+    default boolean mayBlock() {
+        return true;
+    }
+
+    /**
+     * 依次读取字节数组内容的输入源，读完后为 EOF；每次调用返回独立的读取位置
+     * An input source reading the bytes of an array in order, then EOF; every call returns an independent read position
+     */
+    static InputSource of(byte[] bytes) {
+        return new InputSource() {
+            private int position;
+
+            @Override
+            public int readChar() {
+                return position < bytes.length ? bytes[position++] & 0xFF : -1;
+            }
+
+            @Override
+            public boolean mayBlock() {
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,291 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 参数扫描（--sweep）：用同一个已解码程序依次处理多个输入文件
+ * Parameter sweep (--sweep): runs one decoded program against many input files
+ *
+ * 程序只解码一次（需要时也只重编号一次），之后作为不可变镜像被所有工作线程共享；
+ * 每个输入都有自己的解释器、内存和输出。输出写到每个输入各自的文件，或按输入顺序合并为一个流，
+ * 每条记录前有一行 "==> 名称 <=="、后有一个换行。结束时在 stderr 上汇总停止原因和指令数。
+ * 通道数大于 1 时，每个工作线程用 LockstepEngine 同时运行一批输入。
+ * The program is decoded once (and renumbered once when needed) and then shared by every
+ * worker as an immutable image; each input gets its own interpreter, memory and output.
+ * Outputs go to one file per input, or are merged into one stream in input order, each record
+ * preceded by a "==> name <==" line and followed by a newline. At the end, stop reasons and
+ * instruction counts are summarized on stderr. With more than one lane, each worker runs a batch
+ * of inputs together on a LockstepEngine.
+ */
+public class InputSweep {
+    /** 汇总中最多列出的未完成输入 / Maximum number of unfinished inputs listed in the summary */
+    private static final int MAX_LISTED = 20;
+
+    private final Program program;
+    private final BSOptions options;
+    private final int jobs;
+    private final int lanes;
+    private final LockstepEngine engine;
+
+    /** 一个输入的运行结果 / The outcome of one input */
+    private static class Outcome {
+        final Path input;
+        BSResult result;
+        byte[] output;
+        String error;
+
+        Outcome(Path input) {
+            this.input = input;
+        }
+    }
+
+    /**
+     * @param jobs 工作线程数；调试输出、剖析报告和 stderr 上的轨迹无法交错，这些情况下总是 1；轨迹写到文件时每个输入写到
+     *             各自的 <traceOut>.<输入文件名> / worker threads; debug output, profile reports and traces on stderr cannot be
+     *             interleaved, so always 1 in those cases; traces written to a file go to <traceOut>.<input name> per input
+     * @param lanes 每批锁步运行的输入数；调试、记录轨迹或剖析时总是 1 / inputs run in lockstep per batch; always 1 when debugging, tracing or profiling
+     */
+    public InputSweep(Program program, BSOptions options, int jobs, int lanes) {
+        this.program = program;
+        this.options = options;
+        this.jobs = options.debug || options.profile || options.traceSize > 0 && options.traceOut == null ? 1 : jobs;
+        this.lanes = options.debug || options.traceSize > 0 || options.profile ? 1 : lanes;
+        if (options.renumber || options.jit) {
+            // 只重编号一次，之后程序不再被修改 / Renumber once; the program is never modified afterwards
+            program.renumberAddresses();
+        }
+        this.engine = this.lanes > 1 ? new LockstepEngine(program, options) : null;
+    }
+
+    /**
+     * 按目录（其中所有普通文件）或通配符（如 inputs/*.in）列出输入文件，按名称排序
+     * List input files by directory (every regular file in it) or glob (e.g. inputs/*.in), sorted by name
+     */
+    public static List<Path> findInputs(String pattern) throws IOException {
+        Path path = Paths.get(pattern);
+        Path directory;
+        String glob;
+        if (Files.isDirectory(path)) {
+            directory = path;
+            glob = "*";
+        } else {
+            directory = path.getParent() != null ? path.getParent() : Paths.get(".");
+            glob = path.getFileName().toString();
+        }
+        List<Path> inputs = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return inputs;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path input : stream) {
+                if (Files.isRegularFile(input)) {
+                    inputs.add(input);
+                }
+            }
+        }
+        Collections.sort(inputs);
+        return inputs;
+    }
+
+    /**
+     * 运行所有输入；outputDir 不为 null 时每个输入的输出写到 outputDir/<名称>.out，否则按顺序合并写到 merged
+     * Run every input; with an outputDir each input's output goes to outputDir/<name>.out, otherwise
+     * the outputs are merged in order into merged
+     *
+     * @return 命令行退出码：所有运行中最大的退出码，出错的运行为 1 / command line exit status: the largest over all runs, 1 for a failed run
+     */
+    public int run(List<Path> inputs, Path outputDir, OutputSink merged) throws IOException {
+        if (outputDir != null) {
+            Files.createDirectories(outputDir);
+        }
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(jobs, runnable -> {
+            Thread thread = new Thread(runnable, "bs-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Outcome> outcomes = new ArrayList<>(inputs.size());
+        try {
+            List<Future<List<Outcome>>> futures = new ArrayList<>();
+            for (int i = 0; i < inputs.size(); i += lanes) {
+                List<Path> batch = inputs.subList(i, Math.min(i + lanes, inputs.size()));
+                futures.add(pool.submit(() -> engine != null
+                    ? runBatch(batch, outputDir) : Collections.singletonList(runOne(batch.get(0), outputDir))));
+            }
+            // 按输入顺序收集，合并输出因此与完成顺序无关 / Collect in input order, so the merged output does not depend on completion order
+            for (Future<List<Outcome>> future : futures) {
+                for (Outcome outcome : future.get()) {
+                    if (merged != null) {
+                        writeRecord(merged, outcome);
+                        outcome.output = null;
+                    }
+                    outcomes.add(outcome);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            if (merged != null) {
+                merged.flush();
+            }
+        }
+        return summarize(outcomes, System.nanoTime() - start);
+    }
+
+    private Outcome runOne(Path input, Path outputDir) {
+        Outcome outcome = new Outcome(input);
+        BSOptions run = options.copy();
+        ByteArrayOutputStream buffer = outputDir == null ? new ByteArrayOutputStream() : null;
+        try (MappedInput in = new MappedInput(input);
+             OutputSink out = outputDir != null
+                ? OutputSink.toFile(outputDir.resolve(input.getFileName() + ".out"), OutputSink.FlushPolicy.FULL, 0)
+                : OutputSink.of(buffer, OutputSink.FlushPolicy.FULL)) {
+            run.input = in;
+            run.output = out;
+            if (options.traceOut != null) {
+                run.traceOut = options.traceOut.resolveSibling(options.traceOut.getFileName() + "." + input.getFileName());
+            }
+            outcome.result = BSRunner.run(program, run);
+        } catch (IOException | RuntimeException e) {
+            outcome.error = String.valueOf(e.getMessage());
+        }
+        if (buffer != null) {
+            outcome.output = buffer.toByteArray();
+        }
+        return outcome;
+    }
+
+    private List<Outcome> runBatch(List<Path> batch, Path outputDir) {
+        List<Outcome> outcomes = new ArrayList<>(batch.size());
+        MappedInput[] ins = new MappedInput[batch.size()];
+        OutputSink[] outs = new OutputSink[batch.size()];
+        ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[batch.size()];
+        try {
+            for (int i = 0; i < ins.length; i++) {
+                Path input = batch.get(i);
+                outcomes.add(new Outcome(input));
+                ins[i] = new MappedInput(input);
+                if (outputDir != null) {
+                    outs[i] = OutputSink.toFile(outputDir.resolve(input.getFileName() + ".out"), OutputSink.FlushPolicy.FULL, 0);
+                } else {
+                    buffers[i] = new ByteArrayOutputStream();
+                    outs[i] = OutputSink.of(buffers[i], OutputSink.FlushPolicy.FULL);
+                }
+            }
+            BSResult[] results = engine.run(ins, outs);
+            for (int i = 0; i < results.length; i++) {
+                outcomes.get(i).result = results[i];
+            }
+        } catch (IOException | RuntimeException e) {
+            // 一批通道一起运行，出错时整批都算失败 / A batch runs together, so a failure fails the whole batch
+            for (int i = outcomes.size(); i < batch.size(); i++) {
+                outcomes.add(new Outcome(batch.get(i)));
+            }
+            for (Outcome outcome : outcomes) {
+                outcome.result = null;
+                outcome.error = String.valueOf(e.getMessage());
+            }
+        } finally {
+            for (int i = 0; i < ins.length; i++) {
+                try {
+                    if (ins[i] != null) {
+                        ins[i].close();
+                    }
+                    if (outs[i] != null) {
+                        outs[i].close();
+                    }
+                } catch (IOException e) {
+                    outcomes.get(i).error = String.valueOf(e.getMessage());
+                }
+            }
+        }
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] != null) {
+                outcomes.get(i).output = buffers[i].toByteArray();
+            }
+        }
+        return outcomes;
+    }
+
+    private static void writeRecord(OutputSink merged, Outcome outcome) throws IOException {
+        write(merged, "==> " + outcome.input.getFileName() + " <==\n");
+        if (outcome.output != null) {
+            merged.write(outcome.output, 0, outcome.output.length);
+        }
+        merged.write('\n');
+    }
+
+    private static void write(OutputSink out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private int summarize(List<Outcome> outcomes, long nanos) {
+        Map<BSInterpreter.StopReason, long[]> byReason = new EnumMap<>(BSInterpreter.StopReason.class);
+        List<Outcome> unfinished = new ArrayList<>();
+        int errors = 0;
+        int exitCode = 0;
+        long total = 0;
+        for (Outcome outcome : outcomes) {
+            if (outcome.error != null) {
+                errors++;
+                unfinished.add(outcome);
+                exitCode = Math.max(exitCode, 1);
+                continue;
+            }
+            long[] entry = byReason.computeIfAbsent(outcome.result.stopReason, reason -> new long[2]);
+            entry[0]++;
+            entry[1] += outcome.result.instructionCount;
+            total += outcome.result.instructionCount;
+            if (!outcome.result.completed()) {
+                unfinished.add(outcome);
+            }
+            exitCode = Math.max(exitCode, outcome.result.stopReason.exitCode);
+        }
+
+        System.err.println(Lang.get(
+            String.format(Locale.ROOT, "扫描：%d 个输入，%d 个线程，%.2f 秒，共 %,d 条指令",
+                outcomes.size(), jobs, nanos / 1e9, total) + (lanes > 1 ? "，每批 " + lanes + " 个通道" : ""),
+            String.format(Locale.ROOT, "Sweep: %d inputs, %d workers, %.2f s, %,d instructions in total",
+                outcomes.size(), jobs, nanos / 1e9, total) + (lanes > 1 ? ", " + lanes + " lanes per batch" : "")
+        ));
+        for (Map.Entry<BSInterpreter.StopReason, long[]> entry : byReason.entrySet()) {
+            System.err.println(String.format(Locale.ROOT, "  %-18s %8d  %,20d %s", entry.getKey(),
+                entry.getValue()[0], entry.getValue()[1], Lang.get("条指令", "instructions")));
+        }
+        if (errors > 0) {
+            System.err.println(String.format(Locale.ROOT, "  %-18s %8d", "ERROR", errors));
+        }
+        for (int i = 0; i < unfinished.size() && i < MAX_LISTED; i++) {
+            Outcome outcome = unfinished.get(i);
+            System.err.println("  " + outcome.input + ": " + (outcome.error != null
+                ? Lang.get("错误：", "Error: ") + outcome.error
+                : outcome.result.stopReason + " (" + outcome.result.instructionCount + ")"));
+        }
+        if (unfinished.size() > MAX_LISTED) {
+            System.err.println(Lang.get(
+                "  ……另有 " + (unfinished.size() - MAX_LISTED) + " 个未完成的输入",
+                "  ... and " + (unfinished.size() - MAX_LISTED) + " more unfinished inputs"
+            ));
+        }
+        return exitCode;
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * 基于开放寻址的 int→int 稀疏内存
+ * Sparse int→int memory based on open addressing
+ *
+ * 键和值都保存在原始 int 数组中，使用线性探测，不产生装箱对象。
+ * 扩容完成后，读写操作不再分配任何内存。
+ * Keys and values live in primitive int arrays with linear probing, so no boxed
+ * objects are created. Once the table has grown, reads and writes allocate nothing.
+ *
+ * 地址 0 被用作空槽标记，因此单独保存。
+ * Address 0 doubles as the empty-slot marker, so it is stored separately.
+ */
+public class IntHashMemory implements Memory {
+    public static final int DEFAULT_INITIAL_CAPACITY = 64;
+    public static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final float loadFactor;
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int shift;
+    private int threshold;
+    private int size;
+
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public IntHashMemory() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * @param initialCapacity 初始预期单元数 / expected initial number of cells
+     * @param loadFactor      扩容前允许的最大装载率 (0, 1) / maximum fill ratio before growing, in (0, 1)
+     */
+    public IntHashMemory(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException(Lang.get(
+                "初始容量不能为负数：" + initialCapacity,
+                "Initial capacity must not be negative: " + initialCapacity
+            ));
+        }
+        if (!(loadFactor > 0f && loadFactor < 1f)) {
+            throw new IllegalArgumentException(Lang.get(
+                "装载因子必须在 (0, 1) 之间：" + loadFactor,
+                "Load factor must be in (0, 1): " + loadFactor
+            ));
+        }
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor((int) Math.min(MAX_CAPACITY, Math.ceil(initialCapacity / (double) loadFactor))));
+    }
+
+    @Override
+    public int read(int address) {
+        if (address == 0) {
+            return zeroValue;
+        }
+        int[] keys = this.keys;
+        int mask = this.mask;
+        int i = slot(address);
+        while (true) {
+            int key = keys[i];
+            if (key == address) {
+                return values[i];
+            }
+            if (key == 0) {
+                return 0;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    @Override
+    public void write(int address, int value) {
+        if (address == 0) {
+            zeroValue = value;
+            hasZeroKey = true;
+            return;
+        }
+        int[] keys = this.keys;
+        int mask = this.mask;
+        int i = slot(address);
+        while (true) {
+            int key = keys[i];
+            if (key == address) {
+                values[i] = value;
+                return;
+            }
+            if (key == 0) {
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+
+        // 向不存在的单元写 0 与不写等价，保持表稀疏
+        // Writing 0 to an absent cell is the same as not writing it; keep the table sparse
+        if (value == 0) {
+            return;
+        }
+        keys[i] = address;
+        values[i] = value;
+        if (++size > threshold) {
+            grow();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    @Override
+    public void forEach(CellVisitor visitor) {
+        if (hasZeroKey) {
+            visitor.visit(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    @Override
+    public Memory copy() {
+        IntHashMemory copy = new IntHashMemory(0, loadFactor);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.mask = mask;
+        copy.shift = shift;
+        copy.threshold = threshold;
+        copy.size = size;
+        copy.hasZeroKey = hasZeroKey;
+        copy.zeroValue = zeroValue;
+        return copy;
+    }
+
+    /**
+     * 当前哈希表的槽数量
+     * Current number of slots in the hash table
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int slot(int address) {
+        // Fibonacci 散列：乘法后取高位 / Fibonacci hashing: multiply and take the high bits
+        return (address * 0x9E3779B9) >>> shift;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        threshold = capacity == MAX_CAPACITY ? Integer.MAX_VALUE : (int) (capacity * loadFactor);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        if (oldKeys.length == MAX_CAPACITY) {
+            throw new IllegalStateException(Lang.get(
+                "内存单元数量超出上限",
+                "Too many memory cells"
+            ));
+        }
+        allocate(oldKeys.length << 1);
+        for (int j = 0; j < oldKeys.length; j++) {
+            int key = oldKeys[j];
+            if (key != 0) {
+                int i = slot(key);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int tableSizeFor(int n) {
+        if (n <= 2) {
+            return 2;
+        }
+        return Math.min(MAX_CAPACITY, Integer.highestOneBit(n - 1) << 1);
+    }
+}
@@ -0,0 +1,361 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * 把 BS 程序编译为 JVM 字节码的 JIT
+ * JIT that compiles BS programs into JVM bytecode
+ *
+ * 程序在跳转目标（c 字段）和条件分支之后被切分为基本块。每个块只在入口检查一次
+ * 剩余预算，然后直线执行；内存访问编译为对 int[] 的数组操作，IN/OUT/HALT 功能位
+ * 编译为对 Runtime 的直接调用。
+ * The program is split into basic blocks at jump targets (c fields) and after conditional
+ * branches. Each block checks the remaining budget once on entry and then runs straight
+ * through; memory accesses compile to int[] array operations and IN/OUT/HALT function
+ * bits compile to direct calls on Runtime.
+ *
+ * 程序按每 512 条指令分段，每段在其基本块被进入 COMPILE_THRESHOLD 次后编译为一个隐藏类
+ * （MethodHandles.Lookup.defineHiddenClass），在此之前由调用者解释执行，只执行一次的代码
+ * 不承担生成类的开销。跨段跳转返回给调用者再分派。
+ * The program is divided into chunks of 512 instructions, each compiled into a hidden class
+ * (MethodHandles.Lookup.defineHiddenClass) once its basic blocks have been entered
+ * COMPILE_THRESHOLD times; until then the caller interprets it, so code that runs only once
+ * never pays for class generation. Jumps across chunks return to the caller, which dispatches
+ * again.
+ *
+ * 程序必须已经地址重编号，内存为 FlatMemory。
+ * The program must already be renumbered, with a FlatMemory.
+ */
+public class JitCompiler {
+    private static final int CHUNK_SHIFT = 9;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /** 一段被编译之前其基本块入口需要被进入的次数 / Basic block entries a chunk needs before it is compiled */
+    private static final int COMPILE_THRESHOLD = 1 << 10;
+
+    /**
+     * HotSpot 不编译字节码超过此长度的方法（HugeMethodLimit），这样的段解释执行更快
+     * HotSpot does not compile methods with more bytecode than this (HugeMethodLimit), so such chunks are better interpreted
+     */
+    private static final int HUGE_METHOD_LIMIT = 8000;
+
+    private static final String CHUNK_CLASS = "JitChunk";
+    private static final String CHUNK_INTERFACE = "JitCompiler$Chunk";
+    private static final String RUNTIME_CLASS = "JitCompiler$Runtime";
+    private static final String RUN_DESCRIPTOR = "(L" + RUNTIME_CLASS + ";[III)I";
+
+    // 生成方法的局部变量 / Locals of the generated method
+    private static final int LOCAL_RUNTIME = 1;
+    private static final int LOCAL_MEMORY = 2;
+    private static final int LOCAL_PC = 3;
+    private static final int LOCAL_BUDGET = 4;
+
+    /**
+     * 编译后的一段程序
+     * One compiled chunk of the program
+     */
+    public interface Chunk {
+        /**
+         * 从 pc 开始执行，直到离开本段、停机或预算不足以执行下一个基本块
+         * Run from pc until control leaves this chunk, the program halts, or the budget cannot cover the next basic block
+         *
+         * @return 剩余预算；下一条指令的 PC 写入 rt.pc / remaining budget; the next PC is stored in rt.pc
+         */
+        int run(Runtime rt, int[] memory, int pc, int budget) throws IOException;
+    }
+
+    /**
+     * 编译代码调用的运行时（I/O 与停机）
+     * Runtime called by compiled code (I/O and halt)
+     */
+    public static class Runtime {
+        public int pc;
+        public boolean halted;
+        private final InputSource input;
+        private final OutputSink output;
+
+        public Runtime(InputSource input, OutputSink output) {
+            this.input = input;
+            this.output = output;
+        }
+
+        public int input() throws IOException {
+            // 阻塞读取之前必须刷新已缓冲的输出 / Buffered output must be flushed before a blocking read
+            if (input.mayBlock()) {
+                output.flush();
+            }
+            int value = input.readChar();
+            if (value == InputSource.WOULD_BLOCK) {
+                // 编译后的代码无法在指令中途挂起 / Compiled code cannot suspend in the middle of an instruction
+                throw new IllegalStateException(Lang.get("JIT 不支持非阻塞输入源", "The JIT does not support non-blocking input sources"));
+            }
+            return value == -1 ? 0 : value; // EOF 作为 0 处理 / EOF is treated as 0
+        }
+
+        public void output(int value) throws IOException {
+            output.write(value & 0xFF);
+        }
+
+        public void halt() {
+            halted = true;
+        }
+    }
+
+    private final Program program;
+    private final boolean[] leaders;
+    private final Chunk[] chunks;
+    private final boolean[] failed;
+    private final int[] entries;
+    private final boolean debug;
+
+    public JitCompiler(Program program, boolean debug) {
+        if (!program.isRenumbered()) {
+            throw new IllegalArgumentException(Lang.get(
+                "JIT 需要地址重编号后的程序",
+                "The JIT requires a renumbered program"
+            ));
+        }
+        this.program = program;
+        this.debug = debug;
+        this.leaders = findLeaders(program);
+        int chunkCount = (program.size() + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        this.chunks = new Chunk[chunkCount];
+        this.failed = new boolean[chunkCount];
+        this.entries = new int[chunkCount];
+    }
+
+    /**
+     * pc 是否是可以直接进入编译代码的基本块入口；尚未编译的段在这里计数，变热之后才返回 true
+     * Whether pc is a basic block entry that compiled code can be entered at; entries into a
+     * chunk not compiled yet are counted here, and true is only returned once it is hot
+     */
+    public boolean isEntry(int pc) {
+        if (pc >= program.size() || !leaders[pc]) {
+            return false;
+        }
+        int index = pc >> CHUNK_SHIFT;
+        if (chunks[index] != null) {
+            return true;
+        }
+        return !failed[index] && ++entries[index] >= COMPILE_THRESHOLD;
+    }
+
+    /**
+     * 从基本块入口 pc 执行编译代码
+     * Run compiled code from the basic block entry pc
+     *
+     * @return 剩余预算 / remaining budget
+     */
+    public int run(Runtime rt, int[] memory, int pc, int budget) throws IOException {
+        int index = pc >> CHUNK_SHIFT;
+        Chunk chunk = chunks[index];
+        if (chunk == null) {
+            chunk = compile(index);
+            if (chunk == null) {
+                rt.pc = pc;
+                return budget;
+            }
+        }
+        return chunk.run(rt, memory, pc, budget);
+    }
+
+    /**
+     * 基本块入口：程序起点、条件跳转目标、分支或停机之后的指令、段起点
+     * Block leaders: program start, conditional jump targets, instructions after a branch or halt, chunk starts
+     */
+    private static boolean[] findLeaders(Program program) {
+        int size = program.size();
+        boolean[] leaders = new boolean[size + 1];
+        for (int i = 0; i < size; i += CHUNK_SIZE) {
+            leaders[i] = true;
+        }
+        for (int i = 0; i < size; i++) {
+            int f = program.flags[i];
+            if (f == 0) {
+                if (program.c[i] != i + 1) {
+                    leaders[program.c[i]] = true;
+                    leaders[i + 1] = true;
+                }
+            } else if ((f & Program.FLAG_HALT) != 0) {
+                leaders[i + 1] = true;
+            }
+        }
+        return leaders;
+    }
+
+    private Chunk compile(int index) {
+        try {
+            byte[] bytes = generate(index);
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return chunks[index] = (Chunk) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            // 编译失败的段回退到解释执行 / Chunks that fail to compile fall back to interpretation
+            failed[index] = true;
+            if (debug) System.err.println(Lang.get(
+                "JIT：第 " + index + " 段编译失败，改为解释执行：" + e,
+                "JIT: chunk " + index + " failed to compile, interpreting instead: " + e
+            ));
+            return null;
+        }
+    }
+
+    private byte[] generate(int index) {
+        int start = index << CHUNK_SHIFT;
+        int end = Math.min(start + CHUNK_SIZE, program.size());
+        int[] a = program.a;
+        int[] b = program.b;
+        int[] c = program.c;
+        byte[] flags = program.flags;
+
+        ClassFileWriter cf = new ClassFileWriter(CHUNK_CLASS, "java/lang/Object", CHUNK_INTERFACE);
+
+        ClassFileWriter.Method init = cf.method(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1, 1);
+        init.aload(0);
+        init.invoke(ClassFileWriter.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        init.op(ClassFileWriter.RETURN);
+
+        ClassFileWriter.Method m = cf.method(ClassFileWriter.ACC_PUBLIC, "run", RUN_DESCRIPTOR, 6, 5);
+
+        ClassFileWriter.Label[] blocks = new ClassFileWriter.Label[end - start];
+        ClassFileWriter.Label notEntry = new ClassFileWriter.Label();
+        ClassFileWriter.Label exit = new ClassFileWriter.Label();
+        for (int i = start; i < end; i++) {
+            blocks[i - start] = leaders[i] ? new ClassFileWriter.Label() : notEntry;
+        }
+
+        // 按 pc 分派到基本块 / Dispatch on pc to a basic block
+        m.iload(LOCAL_PC);
+        m.tableswitch(start, blocks, notEntry);
+
+        int i = start;
+        while (i < end) {
+            // 找出基本块 [i, last] / Find basic block [i, last]
+            int last = i;
+            while (!endsBlock(last) && last + 1 < end && !leaders[last + 1]) {
+                last++;
+            }
+            int length = last - i + 1;
+
+            // 入口：预算不足以执行整个块时退出 / Entry: exit if the budget cannot cover the whole block
+            m.mark(blocks[i - start]);
+            ClassFileWriter.Label enough = new ClassFileWriter.Label();
+            m.iload(LOCAL_BUDGET);
+            m.push(length);
+            m.jump(ClassFileWriter.IF_ICMPGE, enough);
+            exitTo(m, i, exit);
+            m.mark(enough);
+            m.iload(LOCAL_BUDGET);
+            m.push(length);
+            m.op(ClassFileWriter.ISUB);
+            m.istore(LOCAL_BUDGET);
+
+            for (int pc = i; pc <= last; pc++) {
+                int f = flags[pc];
+                if (f != 0) {
+                    if ((f & Program.FLAG_IN) != 0) {
+                        m.aload(LOCAL_MEMORY);
+                        m.push(a[pc]);
+                        m.aload(LOCAL_RUNTIME);
+                        m.invoke(ClassFileWriter.INVOKEVIRTUAL, RUNTIME_CLASS, "input", "()I");
+                        m.op(ClassFileWriter.IASTORE);
+                    }
+                    if ((f & Program.FLAG_OUT) != 0) {
+                        m.aload(LOCAL_RUNTIME);
+                        m.aload(LOCAL_MEMORY);
+                        m.push(b[pc]);
+                        m.op(ClassFileWriter.IALOAD);
+                        m.invoke(ClassFileWriter.INVOKEVIRTUAL, RUNTIME_CLASS, "output", "(I)V");
+                    }
+                    if ((f & Program.FLAG_HALT) != 0) {
+                        m.aload(LOCAL_RUNTIME);
+                        m.invoke(ClassFileWriter.INVOKEVIRTUAL, RUNTIME_CLASS, "halt", "()V");
+                        exitTo(m, pc, exit);
+                    }
+                    continue;
+                }
+
+                boolean branches = c[pc] != pc + 1;
+                if (a[pc] == b[pc]) {
+                    // mem[x] - mem[x] 恒为 0：清零并无条件跳转 / mem[x] - mem[x] is always 0: clear and jump
+                    m.aload(LOCAL_MEMORY);
+                    m.push(b[pc]);
+                    m.op(ClassFileWriter.ICONST_0);
+                    m.op(ClassFileWriter.IASTORE);
+                    if (branches) {
+                        jumpTo(m, ClassFileWriter.GOTO, c[pc], start, end, blocks, exit);
+                    }
+                    continue;
+                }
+
+                // mem[b] = mem[b] - mem[a]
+                m.aload(LOCAL_MEMORY);
+                m.push(b[pc]);
+                m.op(ClassFileWriter.DUP2);
+                m.op(ClassFileWriter.IALOAD);
+                m.aload(LOCAL_MEMORY);
+                m.push(a[pc]);
+                m.op(ClassFileWriter.IALOAD);
+                m.op(ClassFileWriter.ISUB);
+                if (branches) {
+                    m.op(ClassFileWriter.DUP_X2);
+                    m.op(ClassFileWriter.IASTORE);
+                    jumpTo(m, ClassFileWriter.IFLE, c[pc], start, end, blocks, exit);
+                } else {
+                    m.op(ClassFileWriter.IASTORE);
+                }
+            }
+
+            // 顺序落入下一块；若下一块不在本段则退出 / Fall through to the next block, or exit if it is outside this chunk
+            if (last + 1 >= end && (flags[last] & Program.FLAG_HALT) == 0
+                    && !(flags[last] == 0 && a[last] == b[last] && c[last] != last + 1)) {
+                exitTo(m, last + 1, exit);
+            }
+            i = last + 1;
+        }
+
+        // 不是基本块入口：不执行任何指令，原样返回 / Not a block entry: execute nothing and return as is
+        m.mark(notEntry);
+        m.mark(exit);
+        m.aload(LOCAL_RUNTIME);
+        m.iload(LOCAL_PC);
+        m.field(ClassFileWriter.PUTFIELD, RUNTIME_CLASS, "pc", "I");
+        m.iload(LOCAL_BUDGET);
+        m.op(ClassFileWriter.IRETURN);
+
+        if (m.length() > HUGE_METHOD_LIMIT) {
+            throw new IllegalStateException(Lang.get(
+                "生成的方法有 " + m.length() + " 字节，超过 " + HUGE_METHOD_LIMIT + " 字节，HotSpot 不会编译它",
+                "The generated method has " + m.length() + " bytes, over the " + HUGE_METHOD_LIMIT + " bytes HotSpot compiles"
+            ));
+        }
+        return cf.toByteArray();
+    }
+
+    private boolean endsBlock(int pc) {
+        int f = program.flags[pc];
+        return f == 0 ? program.c[pc] != pc + 1 : (f & Program.FLAG_HALT) != 0;
+    }
+
+    private static void jumpTo(ClassFileWriter.Method m, int opcode, int target, int start, int end,
+                               ClassFileWriter.Label[] blocks, ClassFileWriter.Label exit) {
+        if (target >= start && target < end) {
+            m.jump(opcode, blocks[target - start]);
+        } else {
+            // 跨段跳转或结束哨兵：返回给调用者 / Cross-chunk jump or end sentinel: return to the caller
+            ClassFileWriter.Label skip = new ClassFileWriter.Label();
+            if (opcode != ClassFileWriter.GOTO) {
+                m.jump(opcode == ClassFileWriter.IFLE ? ClassFileWriter.IFGT : opcode, skip);
+            }
+            exitTo(m, target, exit);
+            if (opcode != ClassFileWriter.GOTO) {
+                m.mark(skip);
+            }
+        }
+    }
+
+    private static void exitTo(ClassFileWriter.Method m, int pc, ClassFileWriter.Label exit) {
+        m.push(pc);
+        m.istore(LOCAL_PC);
+        m.jump(ClassFileWriter.GOTO, exit);
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * 多通道执行的 Subleq 内核；向量实现（LaneVectors）位于单独的 vector 源码集，由 LockstepEngine 按名称加载
+ * Subleq kernel for lockstep lanes; the vector implementation (LaneVectors) lives in the separate
+ * vector source set and is loaded by name by LockstepEngine
+ */
+interface LaneKernel {
+    /** 每个向量的 int 个数 / ints per vector */
+    int length();
+
+    /**
+     * 对 count 个连续通道执行 mem[b] -= mem[a]，返回结果 <= 0 的通道数
+     * Perform mem[b] -= mem[a] on count consecutive lanes, returning how many results are <= 0
+     */
+    int subtract(int[] memory, int a, int b, int count);
+}
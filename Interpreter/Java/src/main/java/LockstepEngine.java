@@ -0,0 +1,325 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 多通道锁步执行：同一个已解码程序在 K 个通道上同时处理 K 个独立输入
+ * Lockstep lanes: one decoded program processes K independent inputs together in K lanes
+ *
+ * 内存是一个 int[单元数 × K]，同一单元的 K 个通道值相邻存放；PC 相同的通道组成一组，
+ * 每条指令只取指和分派一次，然后对组内每个通道执行（整组包含所有通道时可以用向量指令）。
+ * 当 result <= 0 的结果在组内不一致时，组按跳转方向分裂；之后先执行 PC 最小的组，
+ * 它追上前面一组的 PC 时重新合并（最小 PC 重汇合），因此循环和分支之后的代码仍能共享分派。
+ * 存在其他组时一个组每次最多执行 TIME_SLICE 条指令，用完后让给 PC 更大的下一组（到末尾后回到最小的组），
+ * 因此停留在低 PC 循环中的通道不会让其他通道饿死。
+ * 各通道的内存和 I/O 完全独立，执行顺序不影响结果：每个通道的输出、指令数和停止原因与单独运行时相同
+ * （墙钟和 CPU 时间上限除外，它们对整批通道生效）。
+ * Memory is one int[cells × K] in which the K lane values of a cell sit next to each other;
+ * lanes whose PCs agree form a group, and each instruction is fetched and dispatched once and
+ * then applied to every lane of the group (with vector instructions when the group holds every
+ * lane). When the result <= 0 outcome differs within a group, the group splits by branch
+ * direction; the group with the smallest PC runs next and merges with the group ahead of it
+ * when it catches up with its PC (minimum-PC reconvergence), so code after loops and branches
+ * shares dispatch again. While there are other groups a group runs at most TIME_SLICE
+ * instructions at a time and then yields to the group with the next higher PC (wrapping
+ * around to the smallest), so a lane stuck in a low-PC loop cannot starve the others. Lanes
+ * have fully separate memory and I/O, so the schedule does not affect results: each lane's
+ * output, instruction count and stop reason are those of a separate run (except for the
+ * wall-clock and CPU time limits, which apply to the whole batch).
+ *
+ * 通道只执行普通 Subleq：融合、循环加速、JIT、流式、轨迹和调试选项都被忽略；不打印预算警告。
+ * 指令数上限按通道计算，墙钟和 CPU 时间上限对整批通道生效。
+ * Lanes execute plain Subleq: fusion, loop acceleration, the JIT, streaming, tracing and
+ * debugging are ignored, and no budget warnings are printed. The instruction limit applies to
+ * each lane, the wall-clock and CPU time limits to the whole batch.
+ */
+public class LockstepEngine {
+    /**
+     * 有其他组时一个组每次最多执行的指令数，也是有时间预算时读取时钟之间的最多指令数
+     * Instructions a group runs at most at a time while there are other groups, and at most
+     * between clock reads when there is a time budget
+     */
+    private static final long TIME_SLICE = 1 << 20;
+
+    /** 向量内核的类名（vector 源码集）/ Class name of the vector kernel (vector source set) */
+    private static final String VECTOR_KERNEL = "LaneVectors";
+
+    /** 是否已尝试加载向量内核，以及加载结果（不可用时为 null）/ Whether loading the vector kernel was attempted, and the result (null when unavailable) */
+    private static boolean vectorKernelLoaded;
+    private static LaneKernel vectorKernel;
+
+    private final Program program;
+    private final BSOptions options;
+    private final LaneKernel vectors;
+
+    /**
+     * 需要时就地重编号 program（之后不再修改，可被多个引擎共享）
+     * Renumbers program in place when needed (it is not modified afterwards and can be shared by several engines)
+     */
+    public LockstepEngine(Program program, BSOptions options) {
+        program.renumberAddresses();
+        this.program = program;
+        this.options = options;
+        this.vectors = options.vectorLanes ? vectorKernel(options.quiet) : null;
+    }
+
+    /**
+     * 加载向量内核，不可用时返回 null；首次请求而不可用时在 stderr 上说明一次
+     * Load the vector kernel, or return null when it is unavailable; explained once on stderr when first requested but unavailable
+     */
+    private static synchronized LaneKernel vectorKernel(boolean quiet) {
+        if (!vectorKernelLoaded) {
+            vectorKernelLoaded = true;
+            try {
+                LaneKernel kernel = (LaneKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+                vectorKernel = kernel.length() > 1 ? kernel : null;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                if (!quiet) {
+                    System.err.println(Lang.get(
+                        "警告：向量 API 不可用（需要 --add-modules jdk.incubator.vector），使用标量循环",
+                        "Warning: The vector API is unavailable (needs --add-modules jdk.incubator.vector), using scalar loops"
+                    ));
+                }
+            }
+        }
+        return vectorKernel;
+    }
+
+    /**
+     * 每个通道使用 inputs[i] 和 outputs[i] 运行程序，返回各通道的结果；输出端在结束时刷新
+     * Run the program with inputs[i] and outputs[i] in lane i and return each lane's result;
+     * the output sinks are flushed at the end
+     */
+    public BSResult[] run(InputSource[] inputs, OutputSink[] outputs) throws IOException {
+        int lanes = inputs.length;
+        if (outputs.length != lanes) {
+            throw new IllegalArgumentException(Lang.get("输入和输出的通道数不同", "Inputs and outputs have different lane counts"));
+        }
+        long cells = (long) program.renumberAddresses().length * lanes;
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(Lang.get(
+                "通道内存过大：" + cells + " 个单元",
+                "Lane memory too large: " + cells + " cells"
+            ));
+        }
+
+        int[] a = program.a;
+        int[] b = program.b;
+        int[] c = program.c;
+        byte[] flags = program.flags;
+        int[] memory = new int[(int) cells];
+        int[] pcs = new int[lanes];
+        long[] counts = new long[lanes];
+        BSInterpreter.StopReason[] reasons = new BSInterpreter.StopReason[lanes];
+
+        // 仍在运行的通道，按通道号升序 / Lanes still running, in ascending lane order
+        int[] live = new int[lanes];
+        for (int i = 0; i < lanes; i++) {
+            live[i] = i;
+        }
+        int liveCount = lanes;
+        int[] group = new int[lanes];
+
+        long maxInstructions = options.maxInstructions;
+        boolean timed = options.timeoutMillis != BSOptions.UNLIMITED || options.cpuTimeMillis != BSOptions.UNLIMITED;
+        long deadline = options.timeoutMillis != BSOptions.UNLIMITED ? System.nanoTime() + options.timeoutMillis * 1000000L : 0;
+        ThreadMXBean threads = options.cpuTimeMillis != BSOptions.UNLIMITED ? ManagementFactory.getThreadMXBean() : null;
+        long cpuDeadline = threads != null ? threads.getCurrentThreadCpuTime() + options.cpuTimeMillis * 1000000L : 0;
+        long sinceClock = 0;
+        // 用完时间片的组让出：下一次从 PC >= floor 的组中选择 / A group that used up its slice yields: the next choice is among groups at PC >= floor
+        int floor = 0;
+
+        try {
+            while (liveCount > 0) {
+                // 停止已离开程序或用完预算的通道，并找出不小于 floor 的最小 PC（没有时回到最小的 PC）
+                // Stop lanes that left the program or ran out of budget, and find the smallest PC at
+                // or above floor (wrapping around to the smallest PC when there is none)
+                int pc = Integer.MAX_VALUE;
+                int lowest = Integer.MAX_VALUE;
+                int kept = 0;
+                for (int i = 0; i < liveCount; i++) {
+                    int lane = live[i];
+                    if (flags[pcs[lane]] == Program.FLAG_END) {
+                        reasons[lane] = BSInterpreter.StopReason.PROGRAM_END;
+                    } else if (maxInstructions != BSOptions.UNLIMITED && counts[lane] >= maxInstructions) {
+                        reasons[lane] = BSInterpreter.StopReason.INSTRUCTION_LIMIT;
+                    } else {
+                        live[kept++] = lane;
+                        lowest = Math.min(lowest, pcs[lane]);
+                        if (pcs[lane] >= floor) {
+                            pc = Math.min(pc, pcs[lane]);
+                        }
+                    }
+                }
+                liveCount = kept;
+                if (liveCount == 0) {
+                    break;
+                }
+                if (pc == Integer.MAX_VALUE) {
+                    pc = lowest;
+                }
+
+                // 组成这个 PC 的组；前面一组（PC 更大的组中最小的 PC）是这一组的合并点
+                // Form the group at this PC; the group ahead (the smallest of the larger PCs) is where this one merges
+                int size = 0;
+                int otherPc = Integer.MAX_VALUE;
+                long limit = Long.MAX_VALUE;
+                for (int i = 0; i < liveCount; i++) {
+                    int lane = live[i];
+                    if (pcs[lane] == pc) {
+                        group[size++] = lane;
+                        if (maxInstructions != BSOptions.UNLIMITED) {
+                            limit = Math.min(limit, maxInstructions - counts[lane]);
+                        }
+                    } else if (pcs[lane] > pc) {
+                        otherPc = Math.min(otherPc, pcs[lane]);
+                    }
+                }
+                boolean shared = size < liveCount;
+                if (timed || shared) {
+                    limit = Math.min(limit, TIME_SLICE);
+                }
+                // 组包含所有通道时通道是连续的 / A group holding every lane is contiguous
+                boolean whole = size == lanes;
+
+                long steps = 0;
+                boolean split = false;
+                boolean halted = false;
+                while (steps < limit) {
+                    int f = flags[pc];
+                    if (f != 0) {
+                        if (f == Program.FLAG_END) {
+                            break;
+                        }
+                        steps++;
+                        executeFunctions(f, a[pc], b[pc], memory, lanes, group, size, inputs, outputs);
+                        if ((f & Program.FLAG_HALT) != 0) {
+                            halted = true;
+                            break;
+                        }
+                        pc++;
+                    } else {
+                        steps++;
+                        int baseA = a[pc] * lanes;
+                        int baseB = b[pc] * lanes;
+                        int leq = whole && vectors != null
+                            ? vectors.subtract(memory, baseA, baseB, lanes)
+                            : subtract(memory, baseA, baseB, group, size);
+                        if (leq == size) {
+                            pc = c[pc];
+                        } else if (leq == 0) {
+                            pc++;
+                        } else {
+                            // 分支方向不一致：每个通道的结果仍在内存中 / The branch diverges: each lane's result is still in memory
+                            for (int i = 0; i < size; i++) {
+                                int lane = group[i];
+                                pcs[lane] = memory[baseB + lane] <= 0 ? c[pc] : pc + 1;
+                            }
+                            split = true;
+                            break;
+                        }
+                    }
+                    // 追上（合并）或越过了另一组：重新选择 / Caught up with (merge) or passed another group: choose again
+                    if (pc >= otherPc) {
+                        break;
+                    }
+                }
+
+                floor = shared && steps == TIME_SLICE && !split && !halted ? pc + 1 : 0;
+                for (int i = 0; i < size; i++) {
+                    int lane = group[i];
+                    counts[lane] += steps;
+                    if (!split) {
+                        pcs[lane] = pc;
+                    }
+                    if (halted) {
+                        reasons[lane] = BSInterpreter.StopReason.HALTED;
+                    }
+                }
+                if (halted) {
+                    liveCount = removeStopped(live, liveCount, reasons);
+                }
+
+                if (timed) {
+                    sinceClock += steps;
+                    if (sinceClock >= TIME_SLICE) {
+                        sinceClock = 0;
+                        BSInterpreter.StopReason reason = deadline != 0 && System.nanoTime() - deadline >= 0
+                            ? BSInterpreter.StopReason.TIMEOUT
+                            : threads != null && threads.getCurrentThreadCpuTime() >= cpuDeadline
+                            ? BSInterpreter.StopReason.CPU_TIME : null;
+                        if (reason != null) {
+                            for (int i = 0; i < liveCount; i++) {
+                                reasons[live[i]] = reason;
+                            }
+                            liveCount = 0;
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (OutputSink output : outputs) {
+                output.flush();
+            }
+        }
+
+        BSResult[] results = new BSResult[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            results[lane] = new BSResult(reasons[lane], counts[lane],
+                reasons[lane] == BSInterpreter.StopReason.HALTED, program.size());
+        }
+        return results;
+    }
+
+    /**
+     * 对组内通道执行 mem[b] -= mem[a]，返回结果 <= 0 的通道数
+     * Perform mem[b] -= mem[a] on the lanes of a group, returning how many results are <= 0
+     */
+    private static int subtract(int[] memory, int baseA, int baseB, int[] group, int size) {
+        int leq = 0;
+        for (int i = 0; i < size; i++) {
+            int lane = group[i];
+            int result = memory[baseB + lane] - memory[baseA + lane];
+            memory[baseB + lane] = result;
+            if (result <= 0) {
+                leq++;
+            }
+        }
+        return leq;
+    }
+
+    /**
+     * 对组内每个通道执行功能位（输入 → 输出；停机由调用方处理）
+     * Execute the function bits for each lane of a group (input → output; the caller handles halting)
+     */
+    private static void executeFunctions(int f, int addressA, int addressB, int[] memory, int lanes, int[] group,
+                                         int size, InputSource[] inputs, OutputSink[] outputs) throws IOException {
+        for (int i = 0; i < size; i++) {
+            int lane = group[i];
+            if ((f & Program.FLAG_IN) != 0) {
+                // 阻塞读取之前必须刷新已缓冲的输出 / Buffered output must be flushed before a blocking read
+                if (inputs[lane].mayBlock()) {
+                    outputs[lane].flush();
+                }
+                int input = inputs[lane].readChar();
+                if (input == InputSource.WOULD_BLOCK) {
+                    throw new IllegalStateException(Lang.get("多通道执行不支持非阻塞输入源", "Lockstep lanes do not support non-blocking input sources"));
+                }
+                memory[addressA * lanes + lane] = input == -1 ? 0 : input; // EOF 作为 0 处理 / EOF is treated as 0
+            }
+            if ((f & Program.FLAG_OUT) != 0) {
+                outputs[lane].write(memory[addressB * lanes + lane] & 0xFF);
+            }
+        }
+    }
+
+    private static int removeStopped(int[] live, int liveCount, BSInterpreter.StopReason[] reasons) {
+        int kept = 0;
+        for (int i = 0; i < liveCount; i++) {
+            if (reasons[live[i]] == null) {
+                live[kept++] = live[i];
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * 计数循环的闭式加速
+ * Closed-form acceleration of counting loops
+ *
+ * 识别如下形状的单块循环（全部为无功能位的 Subleq）：
+ * Recognizes single-block loops of this shape (all plain Subleq, no function bits):
+ *
+ *   L:  ...            c = 下一条 / c = next
+ *   X:  subleq A T x   x 在循环之外，这是唯一出口 / x lies outside the loop, the only exit
+ *       ...            c = 下一条 / c = next
+ *   E:  subleq Z Z L   无条件跳回 / unconditional jump back
+ *
+ * 一次迭代中，每个被写入的单元要么变为常量，要么等于"迭代开始时的值 + 常量增量"；
+ * 增量只依赖循环中不被写入的单元。出口测试 mem[T] 每次迭代按固定的负增量递减时，
+ * 可以直接算出退出前完整迭代的次数 j，把所有单元一步推进 j 次迭代，
+ * 然后从 L 继续正常执行最后一次（退出的）迭代。
+ * In one iteration every written cell either becomes a constant or equals "its value at the
+ * start of the iteration plus a constant delta", where deltas depend only on cells the loop
+ * never writes. When the exit test mem[T] decreases by a fixed negative delta per iteration,
+ * the number j of full iterations before the exit can be computed directly; all cells are
+ * advanced by j iterations at once and normal execution continues at L for the final
+ * (exiting) iteration.
+ *
+ * 跳过的指令数（j × 循环长度）计入指令计数，并受剩余步数限制。
+ * The skipped instructions (j × loop length) are added to the instruction count and are
+ * capped by the remaining step budget.
+ */
+public class LoopAccelerator {
+    private static final int MAX_LOOP_LENGTH = 64;
+    private static final long MIN_ITERATIONS = 2;
+
+    private final Program program;
+    private final Loop[] loops;
+
+    /**
+     * 一个已识别的循环及其求值用的临时数组
+     * A recognized loop with scratch arrays for evaluation
+     */
+    private static class Loop {
+        final int head;
+        final int exit;
+        final int length;
+        /** 被写入单元的地址，按槽位排列 / Addresses of written cells, by slot */
+        final int[] cells;
+        /** 每条指令 a/b 的槽位，-1 表示循环不变单元 / Slot of each instruction's a/b, -1 for loop-invariant cells */
+        final int[] slotA;
+        final int[] slotB;
+
+        // 求值结果 / Evaluation results
+        final boolean[] constant;
+        final int[] offset;
+        int testOffset;
+
+        Loop(int head, int exit, int length, int[] cells, int[] slotA, int[] slotB) {
+            this.head = head;
+            this.exit = exit;
+            this.length = length;
+            this.cells = cells;
+            this.slotA = slotA;
+            this.slotB = slotB;
+            this.constant = new boolean[cells.length];
+            this.offset = new int[cells.length];
+        }
+    }
+
+    private LoopAccelerator(Program program, Loop[] loops) {
+        this.program = program;
+        this.loops = loops;
+    }
+
+    /**
+     * 扫描程序中所有可加速的循环
+     * Scan the program for all accelerable loops
+     */
+    public static LoopAccelerator analyze(Program program) {
+        Loop[] loops = new Loop[program.size() + 1];
+        for (int e = 0; e < program.size(); e++) {
+            // 回边：subleq Z Z L，L <= E / Back edge: subleq Z Z L with L <= E
+            if (program.flags[e] == 0 && program.a[e] == program.b[e] && program.c[e] <= e
+                    && loops[program.c[e]] == null) {
+                Loop loop = recognize(program, program.c[e]);
+                if (loop != null && evaluate(program, loop, null)) {
+                    loops[loop.head] = loop;
+                }
+            }
+        }
+        return new LoopAccelerator(program, loops);
+    }
+
+    /**
+     * 标记所有循环头（供解释循环分派）
+     * Mark all loop heads (for dispatch by the interpreter loop)
+     */
+    public void markHeads(byte[] ops, byte op) {
+        for (int i = 0; i < loops.length; i++) {
+            if (loops[i] != null) {
+                ops[i] = op;
+            }
+        }
+    }
+
+    /**
+     * 从循环头 pc 开始，尝试以闭式跳过完整的迭代
+     * Try to skip whole iterations in closed form, starting at loop head pc
+     *
+     * @param maxSteps 最多可跳过的指令数 / maximum number of instructions that may be skipped
+     * @return 跳过的指令数；0 表示未加速，应正常执行 / instructions skipped; 0 means not accelerated, execute normally
+     */
+    public long accelerate(int pc, Memory memory, long maxSteps) {
+        Loop loop = loops[pc];
+        if (loop == null || !evaluate(program, loop, memory)) {
+            return 0;
+        }
+
+        int testSlot = loop.slotB[loop.exit - loop.head];
+        int start = memory.read(loop.cells[testSlot]) + loop.testOffset;
+        int delta = loop.offset[testSlot];
+        if (start <= 0 || delta >= 0 || loop.constant[testSlot]) {
+            // 本次迭代就会退出，或永远（或回绕后才）退出 / Exits in this iteration, or never (or only after wrapping)
+            return 0;
+        }
+
+        // 最小的 j 使 start + j * delta <= 0 / smallest j with start + j * delta <= 0
+        long step = -(long) delta;
+        long iterations = (start + step - 1) / step;
+        iterations = Math.min(iterations, maxSteps / loop.length);
+        if (iterations < MIN_ITERATIONS) {
+            return 0;
+        }
+
+        for (int slot = 0; slot < loop.cells.length; slot++) {
+            int address = loop.cells[slot];
+            if (loop.constant[slot]) {
+                memory.write(address, loop.offset[slot]);
+            } else {
+                memory.write(address, memory.read(address) + (int) (iterations * loop.offset[slot]));
+            }
+        }
+        return iterations * loop.length;
+    }
+
+    /**
+     * 从 L 沿直线路径找出出口测试 X 和回边 E
+     * Walk the straight-line path from L to find the exit test X and the back edge E
+     */
+    private static Loop recognize(Program program, int head) {
+        int exit = -1;
+        int end = -1;
+        for (int i = head; i < program.size() && i - head < MAX_LOOP_LENGTH; i++) {
+            if (program.flags[i] != 0) {
+                return null;
+            }
+            int c = program.c[i];
+            if (c == i + 1) {
+                continue;
+            }
+            if (program.a[i] == program.b[i]) {
+                if (c == head && exit >= 0) {
+                    end = i;
+                }
+                break;
+            }
+            if (exit >= 0 || (c >= head && c <= i)) {
+                return null;
+            }
+            exit = i;
+        }
+        if (end < 0) {
+            return null;
+        }
+
+        int length = end - head + 1;
+        if (program.c[exit] >= head && program.c[exit] <= end) {
+            return null;
+        }
+
+        // 给被写入的单元（各指令的 b）分配槽位 / Assign slots to written cells (each instruction's b)
+        IntHashMemory slotOf = new IntHashMemory(length * 2, IntHashMemory.DEFAULT_LOAD_FACTOR);
+        int[] cells = new int[length];
+        int count = 0;
+        int[] slotB = new int[length];
+        for (int i = 0; i < length; i++) {
+            int address = program.b[head + i];
+            int slot = slotOf.read(address) - 1;
+            if (slot < 0) {
+                slot = count;
+                cells[count++] = address;
+                slotOf.write(address, slot + 1);
+            }
+            slotB[i] = slot;
+        }
+        int[] slotA = new int[length];
+        for (int i = 0; i < length; i++) {
+            slotA[i] = slotOf.read(program.a[head + i]) - 1;
+        }
+
+        int[] written = new int[count];
+        System.arraycopy(cells, 0, written, 0, count);
+        return new Loop(head, exit, length, written, slotA, slotB);
+    }
+
+    /**
+     * 对一次迭代做符号求值；memory 为 null 时只检查结构（不变单元按 0 处理）
+     * Evaluate one iteration symbolically; with a null memory only the structure is checked (invariants read as 0)
+     *
+     * 槽位值的形式为 常量 或 起始值 + 偏移。
+     * Slot values have the form constant or start value + offset.
+     *
+     * @return 迭代是否为所需的线性形式 / whether the iteration has the required linear form
+     */
+    private static boolean evaluate(Program program, Loop loop, Memory memory) {
+        boolean[] constant = loop.constant;
+        int[] offset = loop.offset;
+        for (int slot = 0; slot < constant.length; slot++) {
+            constant[slot] = false;
+            offset[slot] = 0;
+        }
+
+        for (int i = 0; i < loop.length; i++) {
+            int sa = loop.slotA[i];
+            int sb = loop.slotB[i];
+
+            boolean aConstant;
+            int aValue;
+            if (sa < 0) {
+                aConstant = true;
+                aValue = memory == null ? 0 : memory.read(program.a[loop.head + i]);
+            } else {
+                aConstant = constant[sa];
+                aValue = offset[sa];
+            }
+
+            int result;
+            boolean resultConstant;
+            if (aConstant) {
+                // (常量或起始值 + k) - 常量 / (constant or start + k) - constant
+                resultConstant = constant[sb];
+                result = offset[sb] - aValue;
+            } else if (sa == sb) {
+                // 同一单元相减恒为常量 / The same cell minus itself is constant
+                resultConstant = true;
+                result = offset[sb] - aValue;
+            } else {
+                // 涉及另一个单元的起始值，不是线性形式 / Involves another cell's start value, not linear
+                return false;
+            }
+
+            if (loop.head + i == loop.exit) {
+                if (resultConstant) {
+                    return false;
+                }
+                loop.testOffset = result;
+            }
+            constant[sb] = resultConstant;
+            offset[sb] = result;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 直接从内存映射的程序文件读取比特流
+ * Reads a bitstream directly from a memory-mapped program file
+ *
+ * 逐字节读取映射缓冲区并即时跳过空白，不会把整个文本复制为字符串，
+ * 加载时的内存占用只有解码后的程序本身。
+ * 文件按最多 1 GiB 的窗口依次映射，因此也支持超过 2 GiB 的文件。
+ * Bytes are read straight from the mapped buffer and whitespace is skipped on the fly, so the
+ * text is never copied into a string and loading only needs memory for the decoded program.
+ * The file is mapped in consecutive windows of at most 1 GiB, so files over 2 GiB work too.
+ */
+public class MappedBitReader extends BitReader {
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long length;
+    private long windowEnd;
+    private ByteBuffer window;
+    private long position;
+
+    public MappedBitReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.length = channel.size();
+        mapWindow(0);
+    }
+
+    /**
+     * 读取内存中的文本程序（从 position 到 limit），不改变缓冲区本身的位置
+     * Read a text program held in memory (from position to limit), leaving the buffer's own position unchanged
+     */
+    public MappedBitReader(ByteBuffer text) {
+        this.channel = null;
+        this.window = text.slice();
+        this.length = window.limit();
+        this.windowEnd = length;
+    }
+
+    @Override
+    public boolean hasMore() {
+        while (true) {
+            if (!window.hasRemaining() && !nextWindow()) {
+                return false;
+            }
+            if (!isWhitespace(window.get(window.position()))) {
+                return true;
+            }
+            window.get();
+        }
+    }
+
+    @Override
+    protected int readBit() {
+        if (!hasMore()) {
+            return -1;
+        }
+        position++;
+        byte c = window.get();
+        if (c == '0') return 0;
+        if (c == '1') return 1;
+        return -1; // 无效字符视为 EOF / Invalid character treated as EOF
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * 与正则表达式 \s 相同的空白字符
+     * The same whitespace characters as the regular expression \s
+     */
+    static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == 0x0B || c == '\f';
+    }
+
+    private boolean nextWindow() {
+        if (windowEnd >= length) {
+            return false;
+        }
+        try {
+            mapWindow(windowEnd);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    private void mapWindow(long start) throws IOException {
+        long size = Math.min(WINDOW_SIZE, length - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowEnd = start + size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * BS 内存接口
+ * BS memory interface
+ *
+ * 内存是稀疏的：从未写入过的地址读取为 0
+ * Memory is sparse: addresses that were never written read as 0.
+ */
+public interface Memory {
+
+    /**
+     * 读取一个内存单元，未写入的地址返回 0
+     * Read a memory cell, returns 0 for addresses never written
+     */
+    int read(int address);
+
+    /**
+     * 写入一个内存单元
+     * Write a memory cell
+     */
+    void write(int address, int value);
+
+    /**
+     * 当前保存的内存单元数量
+     * Number of memory cells currently stored
+     */
+    int size();
+
+    /**
+     * 遍历所有已保存的内存单元（顺序不定）
+     * Visit all stored memory cells (in no particular order)
+     */
+    void forEach(CellVisitor visitor);
+
+    /**
+     * 独立的副本：只复制底层数组，执行线程可以立即继续，而副本在后台被读取（例如写检查点）
+     * An independent copy: only the backing arrays are copied, so the executing thread can go on
+     * at once while the copy is read in the background (e.g. to write a checkpoint)
+     */
+    Memory copy();
+
+    /**
+     * 内存单元访问回调
+     * Memory cell visitor callback
+     */
+    interface CellVisitor {
+        void visit(int address, int value);
+    }
+}
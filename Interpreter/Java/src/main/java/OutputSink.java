@@ -0,0 +1,249 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 带缓冲的输出端（b段输出功能位的目标）
+ * Buffered output sink (target of the b output function bit)
+ *
+ * 字节先写入可复用的缓冲区，再按刷新策略写到底层通道。
+ * 无论使用哪种策略，缓冲区满、阻塞读取输入之前以及停机时都会刷新。
+ * Bytes go into a reusable buffer and reach the underlying channel according to the
+ * flush policy. Whatever the policy, the buffer is flushed when full, before a
+ * blocking input read, and on halt.
+ */
+public class OutputSink implements Flushable, AutoCloseable {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 刷新策略
+     * Flush policy
+     */
+    public enum FlushPolicy {
+        /** 每个字节立即刷新 / Flush after every byte */
+        ALWAYS,
+        /** 遇到换行符时刷新 / Flush on newline */
+        NEWLINE,
+        /** 仅在缓冲区满、读取输入前和停机时刷新 / Flush only when full, before input and on halt */
+        FULL,
+        /** 每隔固定毫秒数刷新 / Flush every N milliseconds */
+        INTERVAL
+    }
+
+    private final WritableByteChannel channel;
+    private final boolean ownsChannel;
+    private final FlushPolicy policy;
+    private final byte[] buffer;
+    private final ByteBuffer view;
+    private int count;
+    private long written;
+    private Thread flusher;
+    private volatile boolean closed;
+
+    /**
+     * @param channel        底层通道 / underlying channel
+     * @param ownsChannel    close() 时是否关闭通道 / whether close() closes the channel
+     * @param policy         刷新策略 / flush policy
+     * @param bufferSize     缓冲区大小 / buffer size
+     * @param intervalMillis INTERVAL 策略的刷新间隔 / flush interval for the INTERVAL policy
+     */
+    public OutputSink(WritableByteChannel channel, boolean ownsChannel, FlushPolicy policy,
+                      int bufferSize, long intervalMillis) {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.policy = policy;
+        this.buffer = new byte[policy == FlushPolicy.ALWAYS ? 1 : Math.max(bufferSize, 1)];
+        this.view = ByteBuffer.wrap(buffer);
+
+        if (policy == FlushPolicy.INTERVAL) {
+            if (intervalMillis <= 0) {
+                throw new IllegalArgumentException(Lang.get(
+                    "刷新间隔必须为正数：" + intervalMillis,
+                    "Flush interval must be positive: " + intervalMillis
+                ));
+            }
+            flusher = new Thread(() -> flushPeriodically(intervalMillis), "bs-output-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /**
+     * 标准输出（不会在 close() 时关闭）
+     * Standard output (not closed by close())
+     */
+    public static OutputSink stdout(FlushPolicy policy, long intervalMillis) {
+        FileChannel channel = new FileOutputStream(FileDescriptor.out).getChannel();
+        return new OutputSink(channel, false, policy, DEFAULT_BUFFER_SIZE, intervalMillis);
+    }
+
+    /**
+     * 直接写入文件的 FileChannel（截断已有内容）
+     * Write straight to a file's FileChannel (truncating existing content)
+     */
+    public static OutputSink toFile(Path path, FlushPolicy policy, long intervalMillis) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new OutputSink(channel, true, policy, DEFAULT_BUFFER_SIZE, intervalMillis);
+    }
+
+    /**
+     * 从 position 处继续写文件（例如从检查点恢复时）：截断其后的内容，已有的前 position 字节保持不变
+     * Continue writing a file at position (e.g. when resuming from a checkpoint): whatever follows
+     * is truncated, and the first position bytes are kept
+     */
+    public static OutputSink toFile(Path path, FlushPolicy policy, long intervalMillis, long position) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < position) {
+                throw new IOException(Lang.get(
+                    "输出文件比检查点记录的短：" + path,
+                    "The output file is shorter than recorded in the checkpoint: " + path
+                ));
+            }
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new OutputSink(channel, true, policy, DEFAULT_BUFFER_SIZE, intervalMillis);
+    }
+
+    /**
+     * 包装任意输出流（不会在 close() 时关闭）
+     * Wrap an arbitrary output stream (not closed by close())
+     */
+    public static OutputSink of(OutputStream out, FlushPolicy policy) {
+        return new OutputSink(Channels.newChannel(out), false, policy, DEFAULT_BUFFER_SIZE, 0);
+    }
+
+    /**
+     * 写入一个字节（低 8 位）
+     * Write one byte (low 8 bits)
+     */
+    public void write(int b) throws IOException {
+        if (flusher != null) {
+            synchronized (this) {
+                put(b);
+            }
+        } else {
+            put(b);
+        }
+    }
+
+    /**
+     * 写入一段字节，与逐个写入等价
+     * Write a range of bytes, equivalent to writing them one by one
+     */
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            write(bytes[i]);
+        }
+    }
+
+    private void put(int b) throws IOException {
+        buffer[count++] = (byte) b;
+        written++;
+        if (count == buffer.length || (policy == FlushPolicy.NEWLINE && b == '\n')) {
+            drain();
+        }
+    }
+
+    /**
+     * 把缓冲区内容写到底层通道
+     * Write buffered bytes to the underlying channel
+     */
+    @Override
+    public void flush() throws IOException {
+        if (flusher != null) {
+            synchronized (this) {
+                drain();
+            }
+        } else {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        view.clear().limit(count);
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+        count = 0;
+    }
+
+    /**
+     * 在输出端的监视器上等待，而不是被中断：通道是可中断的，写入途中的中断会关闭通道
+     * Waits on the sink's monitor instead of being interrupted: the channels are interruptible,
+     * and an interrupt during a write would close the channel
+     */
+    private synchronized void flushPeriodically(long intervalMillis) {
+        while (!closed) {
+            try {
+                wait(intervalMillis);
+                if (!closed) {
+                    drain();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException ignored) {
+                // 下一次写入时会再次报告 / reported again by the next write
+            }
+        }
+    }
+
+    /**
+     * 刷新并在拥有通道时关闭它
+     * Flush, and close the channel if owned
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (flusher != null) {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            closed = true;
+        }
+        try {
+            flush();
+        } finally {
+            if (ownsChannel) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * 至今写入的字节数（包括仍在缓冲区中的）
+     * Bytes written so far (including those still buffered)
+     */
+    public long getBytesWritten() {
+        return written;
+    }
+
+    public FlushPolicy getPolicy() {
+        return policy;
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 直接从内存映射的打包程序文件读取比特流（见 PackedProgramFile）
+ * Reads a bitstream directly from a memory-mapped packed program file (see PackedProgramFile)
+ *
+ * 比特直接从映射缓冲区中取出，不需要任何字符解码；
+ * 地址解码一次读取 64 位（见 WordBitReader.readAddress）。
+ * Bits come straight from the mapped buffer with no character decoding at all, and addresses
+ * are decoded 64 bits at a time (see WordBitReader.readAddress).
+ */
+public class PackedBitReader extends WordBitReader {
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long bits;
+    private final long dataBytes;
+    private ByteBuffer window;
+    private long windowBase;
+    private long position;
+
+    public PackedBitReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.ownsChannel = true;
+        try {
+            this.bits = PackedProgramFile.readHeader(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.dataBytes = (bits + 7) / 8;
+    }
+
+    /**
+     * 读取内存中的打包程序（从 position 开始，含文件头），不改变缓冲区本身的位置
+     * Read a packed program held in memory (starting at position, header included), leaving the buffer's own position unchanged
+     */
+    public PackedBitReader(ByteBuffer packed) throws IOException {
+        this.channel = null;
+        this.ownsChannel = false;
+        ByteBuffer buffer = packed.slice();
+        this.bits = PackedProgramFile.readHeader(buffer);
+        this.dataBytes = (bits + 7) / 8;
+        // 整个程序就是一个窗口，无需重新映射 / The whole program is one window and is never remapped
+        this.window = buffer.position(PackedProgramFile.HEADER_SIZE).slice().limit((int) dataBytes);
+    }
+
+    private PackedBitReader(FileChannel channel, ByteBuffer window, long start, long end) {
+        this.channel = channel;
+        this.ownsChannel = false;
+        this.window = window;
+        this.bits = end;
+        this.dataBytes = (end + 7) / 8;
+        this.position = start;
+    }
+
+    /**
+     * 读取同一文件中比特 [start, end) 的独立读取器，end 被视为流的末尾；
+     * 可与本读取器在不同线程中同时使用，关闭它不会关闭文件
+     * An independent reader over bits [start, end) of the same file, with end treated as the end
+     * of the stream; it may be used concurrently with this reader, and closing it leaves the file open
+     */
+    public PackedBitReader slice(long start, long end) {
+        return new PackedBitReader(channel, channel == null ? window.duplicate() : null, start, end);
+    }
+
+    /**
+     * 程序的比特数（切片为其末尾位置）
+     * Number of bits in the program (the end position for a slice)
+     */
+    public long bitLength() {
+        return bits;
+    }
+
+    @Override
+    public boolean hasMore() {
+        return position < bits;
+    }
+
+    @Override
+    protected int readBit() {
+        if (position >= bits) {
+            return -1;
+        }
+        int offset = windowOffset(1);
+        int bit = (window.get(offset) >> (7 - (int) (position & 7))) & 1;
+        position++;
+        return bit;
+    }
+
+    @Override
+    protected int wordBitsAvailable() {
+        long left = bits - position;
+        if (left <= 0) {
+            return 0;
+        }
+        windowOffset(9);
+        return (int) Math.min(64, left);
+    }
+
+    @Override
+    protected long peekWord() {
+        int offset = windowOffset(9);
+        int limit = window.limit();
+        long word;
+        if (offset + 8 <= limit) {
+            word = window.getLong(offset);
+        } else {
+            word = 0;
+            for (int i = 0; i < 8; i++) {
+                word = (word << 8) | (offset + i < limit ? window.get(offset + i) & 0xFF : 0);
+            }
+        }
+        int shift = (int) (position & 7);
+        if (shift != 0) {
+            word <<= shift;
+            if (offset + 8 < limit) {
+                word |= (window.get(offset + 8) & 0xFF) >>> (8 - shift);
+            }
+        }
+        return word;
+    }
+
+    @Override
+    protected void skipBits(int count) {
+        position += count;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * 确保当前字节起的 count 个字节（不超过数据末尾）都在映射窗口中，返回当前字节在窗口中的偏移
+     * Make sure count bytes from the current byte (up to the end of the data) are mapped, returning the current byte's offset in the window
+     */
+    private int windowOffset(int count) {
+        long index = position >>> 3;
+        long needed = Math.min(index + count, dataBytes);
+        if (window == null || index < windowBase || needed > windowBase + window.limit()) {
+            long size = Math.min(WINDOW_SIZE, dataBytes - index);
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, PackedProgramFile.HEADER_SIZE + index, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            windowBase = index;
+        }
+        return (int) (index - windowBase);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+}
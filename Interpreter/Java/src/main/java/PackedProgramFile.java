@@ -0,0 +1,170 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 打包的二进制程序格式（每字节 8 位）
+ * Packed binary program format (8 bits per byte)
+ *
+ * 布局（大端）：
+ * Layout (big-endian):
+ *   0  4  魔数 "BSPK" / magic "BSPK"
+ *   4  1  版本 / version
+ *   5  3  保留，为 0 / reserved, 0
+ *   8  8  比特数 / bit length
+ *   16 .. 比特流，每字节 8 位，高位在前，末字节不足部分补 0
+ *         bitstream, 8 bits per byte, most significant bit first, last byte padded with 0
+ */
+public class PackedProgramFile {
+    public static final int MAGIC = 0x4253504B; // "BSPK"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private PackedProgramFile() {
+    }
+
+    /**
+     * 文件是否以打包格式的魔数开头
+     * Whether the file starts with the packed format's magic number
+     */
+    public static boolean isPacked(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // 读满 4 字节 / Fill all 4 bytes
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * 读取并校验文件头，返回比特数
+     * Read and validate the header, returning the bit length
+     */
+    static long readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // 读满文件头 / Fill the header
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+            throw new IOException(Lang.get("不是打包的 BS 程序文件", "Not a packed BS program file"));
+        }
+        int version = header.get(4) & 0xFF;
+        if (version != VERSION) {
+            throw new IOException(Lang.get(
+                "不支持的打包格式版本：" + version,
+                "Unsupported packed format version: " + version
+            ));
+        }
+        long bits = header.getLong(8);
+        if (bits < 0 || channel.size() - HEADER_SIZE < (bits + 7) / 8) {
+            throw new IOException(Lang.get("打包的程序文件已截断", "Packed program file is truncated"));
+        }
+        return bits;
+    }
+
+    /**
+     * 校验内存中的文件头（从缓冲区开头），返回比特数
+     * Validate a header held in memory (at the start of the buffer), returning the bit length
+     */
+    static long readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(Lang.get("不是打包的 BS 程序", "Not a packed BS program"));
+        }
+        int version = buffer.get(4) & 0xFF;
+        if (version != VERSION) {
+            throw new IOException(Lang.get(
+                "不支持的打包格式版本：" + version,
+                "Unsupported packed format version: " + version
+            ));
+        }
+        long bits = buffer.getLong(8);
+        if (bits < 0 || buffer.limit() - HEADER_SIZE < (bits + 7) / 8) {
+            throw new IOException(Lang.get("打包的程序已截断", "Packed program is truncated"));
+        }
+        return bits;
+    }
+
+    /**
+     * 缓冲区（从 position 起）是否以打包格式的魔数开头
+     * Whether the buffer (from its position) starts with the packed format's magic number
+     */
+    public static boolean isPacked(ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.getInt(buffer.position()) == MAGIC;
+    }
+
+    /**
+     * 把文本程序（'0'/'1'，空白被忽略）打包为二进制格式，返回比特数
+     * Pack a text program ('0'/'1', whitespace ignored) into the binary format, returning the bit length
+     */
+    public static long pack(Path source, Path target) throws IOException {
+        try (MappedBitReader reader = new MappedBitReader(source);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            out.position(HEADER_SIZE);
+
+            long bits = 0;
+            int current = 0;
+            while (reader.hasMore()) {
+                int bit = reader.readBit();
+                if (bit < 0) {
+                    throw new IOException(Lang.get(
+                        "位置 " + bits + " 处有无效字符",
+                        "Invalid character at position " + bits
+                    ));
+                }
+                current = (current << 1) | bit;
+                if ((++bits & 7) == 0) {
+                    buffer.put((byte) current);
+                    current = 0;
+                    if (!buffer.hasRemaining()) {
+                        drain(out, buffer);
+                    }
+                }
+            }
+            if ((bits & 7) != 0) {
+                buffer.put((byte) (current << (8 - (bits & 7))));
+            }
+            drain(out, buffer);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).put((byte) VERSION).put(new byte[3]).putLong(bits).flip();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+            return bits;
+        }
+    }
+
+    /**
+     * 把打包的程序还原为文本格式，返回比特数
+     * Unpack a packed program back into the text format, returning the bit length
+     */
+    public static long unpack(Path source, Path target) throws IOException {
+        try (PackedBitReader reader = new PackedBitReader(source);
+             BufferedWriter out = Files.newBufferedWriter(target, StandardCharsets.US_ASCII)) {
+            long bits = 0;
+            while (reader.hasMore()) {
+                out.write(reader.readBit() == 1 ? '1' : '0');
+                bits++;
+            }
+            return bits;
+        }
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 在 ForkJoinPool 上并行解码打包的程序
+ * Decodes a packed program in parallel on a ForkJoinPool
+ *
+ * 每个地址段都是完整的 6 位块（只有流末尾可能不完整），所以块边界总在 6 的倍数上，
+ * 而地址边界就是 l=0 的块之后。因此只有"块从哪一个指令字段 a/b/c 开始"需要推测：
+ * 1. 从均匀的分割点（6 的倍数）各读一个地址，得到真实的地址边界作为段边界；
+ * 2. 并行统计每段的地址数（只做位计数，不解码），前缀和给出每段第一个地址的全局序号，从而确定其字段；
+ * 3. 并行地把每段直接解码到最终的数组中。跨段指令的功能位最后依次合并。
+ * 结果与顺序解码完全相同（包括末尾不完整的指令和不完整的段）。
+ * Every address segment is a whole 6-bit block (only the end of the stream may be partial), so
+ * block boundaries always sit on multiples of 6 and an address boundary follows every block
+ * with l=0. The only thing to speculate on is which instruction field (a/b/c) a chunk starts in:
+ * 1. one address is read from each even split point (a multiple of 6), giving a real address
+ *    boundary to use as the chunk boundary;
+ * 2. the addresses of each chunk are counted in parallel (a population count, no decoding), and
+ *    prefix sums give the global index of each chunk's first address, which fixes its field;
+ * 3. each chunk is decoded in parallel straight into the final arrays. Function bits of
+ *    instructions that straddle chunks are merged afterwards.
+ * The result is identical to a sequential decode, including an incomplete last instruction or
+ * a partial last segment.
+ */
+public class ParallelDecoder {
+    /** 默认的每段最小比特数，较小的程序顺序解码 / Default minimum bits per chunk; smaller programs are decoded sequentially */
+    static final long MIN_CHUNK_BITS = 6L << 20;
+
+    /** 每个线程的段数，用于平衡负载 / Chunks per thread, for load balancing */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final byte[] SLOT_FLAGS = {Program.FLAG_IN, Program.FLAG_OUT, Program.FLAG_HALT};
+
+    private ParallelDecoder() {
+    }
+
+    /**
+     * 解码整个打包程序
+     * Decode a whole packed program
+     */
+    public static Program decode(PackedBitReader reader, ForkJoinPool pool) throws IOException {
+        return decode(reader, pool, MIN_CHUNK_BITS);
+    }
+
+    /**
+     * 以给定的每段最小比特数解码（一致性检查用很小的段来覆盖分段与合并逻辑）
+     * Decode with the given minimum bits per chunk (the conformance check uses tiny chunks to
+     * exercise the splitting and merging)
+     */
+    static Program decode(PackedBitReader reader, ForkJoinPool pool, long minChunkBits) throws IOException {
+        long bits = reader.bitLength();
+        int chunks = (int) Math.min((long) pool.getParallelism() * CHUNKS_PER_THREAD, bits / minChunkBits);
+        if (chunks <= 1) {
+            return Program.decode(reader, false);
+        }
+
+        long[] bounds = boundaries(reader, chunks);
+        chunks = bounds.length - 1;
+
+        // 第 1 遍：每段的地址数 / Pass 1: addresses per chunk
+        long[] counts = new long[chunks];
+        List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int k = 0; k < chunks; k++) {
+            int chunk = k;
+            tasks.add(() -> {
+                counts[chunk] = reader.slice(bounds[chunk], bounds[chunk + 1]).countAddresses();
+                return null;
+            });
+        }
+        invokeAll(pool, tasks);
+
+        long[] offsets = new long[chunks + 1];
+        for (int k = 0; k < chunks; k++) {
+            offsets[k + 1] = offsets[k] + counts[k];
+        }
+        long instructions = offsets[chunks] / 3;
+        if (instructions >= Integer.MAX_VALUE) {
+            throw new IOException(Lang.get(
+                "程序过大：" + instructions + " 条指令",
+                "Program too large: " + instructions + " instructions"
+            ));
+        }
+        int size = (int) instructions;
+
+        // 第 2 遍：直接解码到最终数组 / Pass 2: decode straight into the final arrays
+        int[] a = new int[size + 1];
+        int[] b = new int[size + 1];
+        int[] c = new int[size + 1];
+        byte[] flags = new byte[size + 1];
+        int[] edgeFlags = new int[chunks * 2];
+        tasks.clear();
+        for (int k = 0; k < chunks; k++) {
+            int chunk = k;
+            tasks.add(() -> {
+                fill(reader.slice(bounds[chunk], bounds[chunk + 1]), offsets[chunk], offsets[chunk + 1],
+                     size, a, b, c, flags, edgeFlags, chunk * 2);
+                return null;
+            });
+        }
+        invokeAll(pool, tasks);
+
+        // 合并跨段指令的功能位 / Merge function bits of instructions that straddle chunks
+        for (int k = 0; k < chunks; k++) {
+            mergeEdge(flags, size, offsets[k] / 3, edgeFlags[k * 2]);
+            mergeEdge(flags, size, (offsets[k + 1] - 1) / 3, edgeFlags[k * 2 + 1]);
+        }
+        return Program.of(a, b, c, flags, size);
+    }
+
+    /**
+     * 段边界：从均匀分割点读一个地址后的位置，总是真实的地址边界
+     * Chunk boundaries: the position after reading one address from each even split point, always a real address boundary
+     */
+    private static long[] boundaries(PackedBitReader reader, int chunks) throws IOException {
+        long bits = reader.bitLength();
+        long[] bounds = new long[chunks + 1];
+        int count = 1;
+        for (int k = 1; k < chunks; k++) {
+            long split = bits / chunks * k / 6 * 6;
+            PackedBitReader probe = reader.slice(split, bits);
+            if (split <= bounds[count - 1] || !probe.hasMore()) {
+                continue;
+            }
+            probe.readAddress();
+            long boundary = probe.getPosition();
+            if (boundary > bounds[count - 1] && boundary < bits) {
+                bounds[count++] = boundary;
+            }
+        }
+        bounds[count++] = bits;
+        long[] result = new long[count];
+        System.arraycopy(bounds, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * 把一段的地址 [first, last) 写入指令数组；只有完全在本段内的指令直接写功能位，
+     * 首尾跨段指令的部分功能位存入 edgeFlags[edge] 和 edgeFlags[edge + 1]
+     * Write a chunk's addresses [first, last) into the instruction arrays; function bits are
+     * written directly only for instructions wholly inside the chunk, while the partial bits of
+     * the straddling first and last instructions go to edgeFlags[edge] and edgeFlags[edge + 1]
+     */
+    private static void fill(PackedBitReader reader, long first, long last, int size,
+                             int[] a, int[] b, int[] c, byte[] flags, int[] edgeFlags, int edge) throws IOException {
+        long firstInstruction = first / 3;
+        long lastInstruction = (last - 1) / 3;
+        boolean firstShared = first % 3 != 0;
+        boolean lastShared = last % 3 != 0;
+
+        for (long index = first; index < last; index++) {
+            BitReader.AddressResult result = reader.readAddress();
+            long instruction = index / 3;
+            if (instruction >= size) {
+                break; // 末尾不完整的指令被丢弃 / An incomplete last instruction is dropped
+            }
+            int i = (int) instruction;
+            int slot = (int) (index % 3);
+            int[] field = slot == 0 ? a : slot == 1 ? b : c;
+            field[i] = result.address;
+            if (!result.hasFunction) {
+                continue;
+            }
+            if (instruction == firstInstruction && firstShared) {
+                edgeFlags[edge] |= SLOT_FLAGS[slot];
+            } else if (instruction == lastInstruction && lastShared) {
+                edgeFlags[edge + 1] |= SLOT_FLAGS[slot];
+            } else {
+                flags[i] |= SLOT_FLAGS[slot];
+            }
+        }
+    }
+
+    private static void mergeEdge(byte[] flags, int size, long instruction, int edge) {
+        if (edge != 0 && instruction < size) {
+            flags[(int) instruction] |= (byte) edge;
+        }
+    }
+
+    private static void invokeAll(ForkJoinPool pool, List<Callable<Void>> tasks) throws IOException {
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
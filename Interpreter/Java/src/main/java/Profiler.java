@@ -0,0 +1,231 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 执行剖析：每条指令的执行次数和跳转次数
+ * Execution profile: per-instruction execution and jump counts
+ *
+ * 插桩的执行循环只递增两个预先分配的 long[]（按 PC 索引），执行期间不分配内存。
+ * Subleq 没有间接寻址，每条指令读写的地址都是固定的，因此内存热度图（每个地址的读写次数）
+ * 和热循环（向后跳转的次数）都在报告时从这两个数组推导，不增加热路径的开销。
+ * The instrumented execution loop only increments two preallocated long[] indexed by PC, so
+ * execution allocates nothing. Subleq has no indirect addressing and every instruction reads
+ * and writes fixed addresses, so the memory heatmap (reads and writes per address) and the hot
+ * loops (taken backward jumps) are derived from these arrays when reporting, at no cost on the
+ * hot path.
+ */
+public class Profiler {
+    private final long[] counts;
+    private final long[] jumps;
+
+    /**
+     * @param size 程序的指令数 / number of instructions in the program
+     */
+    public Profiler(int size) {
+        this.counts = new long[size];
+        this.jumps = new long[size];
+    }
+
+    /** 每条指令的执行次数（供执行循环直接递增）/ Executions per instruction (incremented directly by the execution loop) */
+    public long[] counts() {
+        return counts;
+    }
+
+    /** 每条 Subleq 指令结果 <= 0 而跳转的次数 / Times each Subleq instruction jumped because its result was <= 0 */
+    public long[] jumps() {
+        return jumps;
+    }
+
+    /** 一个被执行过的向后跳转：循环体为 [head, tail] / A taken backward jump: the loop body is [head, tail] */
+    private static class Loop {
+        final int head;
+        final int tail;
+        final long iterations;
+        long instructions;
+
+        Loop(int head, int tail, long iterations) {
+            this.head = head;
+            this.tail = tail;
+            this.iterations = iterations;
+        }
+    }
+
+    /**
+     * 输出报告：最热的 top 条指令、最热的 top 个循环、读写最多的 top 个内存单元
+     * Print the report: the top hottest instructions, the top hottest loops and the top most accessed memory cells
+     */
+    public void report(Program program, PrintStream out, int top) {
+        long total = 0;
+        int executed = 0;
+        for (long count : counts) {
+            total += count;
+            if (count > 0) {
+                executed++;
+            }
+        }
+        out.println(Lang.get(
+            String.format(Locale.ROOT, "剖析：%,d 条指令，执行过 %d / %d 条不同的指令", total, executed, counts.length),
+            String.format(Locale.ROOT, "Profile: %,d instructions, %d of %d distinct instructions executed", total, executed, counts.length)
+        ));
+        if (total == 0) {
+            return;
+        }
+
+        out.println();
+        out.println(Lang.get("最热的指令：", "Hot instructions:"));
+        out.println(Lang.get(
+            "        执行次数       %     跳转%  PC  指令",
+            "           count       %   jumped%  PC  instruction"));
+        for (int pc : topIndices(counts, top)) {
+            out.println(String.format(Locale.ROOT, "  %,14d  %5.1f%%  %7s  %d  %s", counts[pc], 100.0 * counts[pc] / total,
+                program.flags[pc] == 0 ? String.format(Locale.ROOT, "%.1f%%", 100.0 * jumps[pc] / counts[pc]) : "-",
+                pc, program.describe(pc)));
+        }
+
+        List<Loop> loops = loops(program);
+        out.println();
+        out.println(Lang.get("最热的循环（向后跳转）：", "Hot loops (backward jumps):"));
+        if (loops.isEmpty()) {
+            out.println(Lang.get("  （无）", "  (none)"));
+        } else {
+            out.println(Lang.get(
+                "        迭代次数      循环体内指令数       %  循环体（PC）   长度",
+                "      iterations  instructions in body       %  body (PC)      length"));
+            loops.sort((x, y) -> Long.compare(y.instructions, x.instructions));
+            for (Loop loop : loops.subList(0, Math.min(top, loops.size()))) {
+                out.println(String.format(Locale.ROOT, "  %,14d  %,20d  %5.1f%%  %-13s  %d", loop.iterations, loop.instructions,
+                    100.0 * loop.instructions / total, loop.head + ".." + loop.tail, loop.tail - loop.head + 1));
+            }
+        }
+
+        out.println();
+        out.println(Lang.get("访问最多的内存单元：", "Hottest memory cells:"));
+        out.println(Lang.get(
+            "        地址            读次数            写次数",
+            "         address             reads            writes"));
+        Map<Integer, long[]> heat = heatmap(program);
+        List<Map.Entry<Integer, long[]>> cells = new ArrayList<>(heat.entrySet());
+        cells.sort((x, y) -> Long.compare(y.getValue()[0] + y.getValue()[1], x.getValue()[0] + x.getValue()[1]));
+        for (Map.Entry<Integer, long[]> cell : cells.subList(0, Math.min(top, cells.size()))) {
+            out.println(String.format(Locale.ROOT, "  %14d  %,16d  %,16d", cell.getKey(), cell.getValue()[0], cell.getValue()[1]));
+        }
+    }
+
+    /**
+     * 以 flamegraph 工具可读的折叠栈格式输出：每个被执行的指令一行，栈为包含它的循环（由外到内）加上指令本身
+     * Write the collapsed-stack format read by flamegraph tools: one line per executed instruction,
+     * whose stack is the loops containing it (outermost first) followed by the instruction itself
+     */
+    public void writeFolded(Program program, PrintStream out) {
+        List<Loop> loops = loops(program);
+        // 按起点升序、长度降序，外层循环先进入 / By start ascending and length descending, so outer loops are entered first
+        loops.sort((x, y) -> x.head != y.head ? Integer.compare(x.head, y.head) : Integer.compare(y.tail, x.tail));
+        List<Loop> active = new ArrayList<>();
+        int next = 0;
+        StringBuilder line = new StringBuilder();
+        for (int pc = 0; pc < counts.length; pc++) {
+            while (next < loops.size() && loops.get(next).head == pc) {
+                active.add(loops.get(next++));
+            }
+            if (!active.isEmpty()) {
+                final int current = pc;
+                active.removeIf(loop -> loop.tail < current);
+            }
+            if (counts[pc] == 0) {
+                continue;
+            }
+            line.setLength(0);
+            line.append("program");
+            // 部分重叠的循环不是真正的嵌套，按进入顺序排列即可 / Partially overlapping loops do not really nest; entry order is good enough
+            for (Loop loop : active) {
+                line.append(";loop ").append(loop.head).append("..").append(loop.tail);
+            }
+            line.append(";pc ").append(pc).append(' ').append(kind(program.flags[pc]));
+            line.append(' ').append(counts[pc]);
+            out.println(line);
+        }
+    }
+
+    private static String kind(int flags) {
+        if (flags == 0) {
+            return "subleq";
+        }
+        StringBuilder kind = new StringBuilder();
+        if ((flags & Program.FLAG_IN) != 0) kind.append("in");
+        if ((flags & Program.FLAG_OUT) != 0) kind.append(kind.length() > 0 ? "+out" : "out");
+        if ((flags & Program.FLAG_HALT) != 0) kind.append(kind.length() > 0 ? "+halt" : "halt");
+        return kind.toString();
+    }
+
+    /** 所有执行过的向后跳转及其循环体内执行的指令数 / Every taken backward jump and the instructions executed in its body */
+    private List<Loop> loops(Program program) {
+        long[] prefix = new long[counts.length + 1];
+        for (int pc = 0; pc < counts.length; pc++) {
+            prefix[pc + 1] = prefix[pc] + counts[pc];
+        }
+        List<Loop> loops = new ArrayList<>();
+        for (int pc = 0; pc < counts.length; pc++) {
+            int target = program.c[pc];
+            if (program.flags[pc] == 0 && jumps[pc] > 0 && target <= pc) {
+                Loop loop = new Loop(target, pc, jumps[pc]);
+                loop.instructions = prefix[pc + 1] - prefix[target];
+                loops.add(loop);
+            }
+        }
+        return loops;
+    }
+
+    /**
+     * 每个原始地址的读写次数：Subleq 读 a、b 写 b，输入写 a，输出读 b
+     * Reads and writes per original address: Subleq reads a and b and writes b, input writes a, output reads b
+     */
+    private Map<Integer, long[]> heatmap(Program program) {
+        Map<Integer, long[]> heat = new HashMap<>();
+        for (int pc = 0; pc < counts.length; pc++) {
+            long count = counts[pc];
+            if (count == 0) {
+                continue;
+            }
+            int f = program.flags[pc];
+            int a = program.originalAddress(program.a[pc]);
+            int b = program.originalAddress(program.b[pc]);
+            if (f == 0) {
+                heat.computeIfAbsent(a, address -> new long[2])[0] += count;
+                long[] cell = heat.computeIfAbsent(b, address -> new long[2]);
+                cell[0] += count;
+                cell[1] += count;
+                continue;
+            }
+            if ((f & Program.FLAG_IN) != 0) {
+                heat.computeIfAbsent(a, address -> new long[2])[1] += count;
+            }
+            if ((f & Program.FLAG_OUT) != 0) {
+                heat.computeIfAbsent(b, address -> new long[2])[0] += count;
+            }
+        }
+        return heat;
+    }
+
+    /** 计数最大的 top 个下标，按计数降序 / The top indices with the largest counts, in descending order of count */
+    private static int[] topIndices(long[] values, int top) {
+        Integer[] order = new Integer[values.length];
+        int n = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > 0) {
+                order[n++] = i;
+            }
+        }
+        Integer[] used = Arrays.copyOf(order, n);
+        Arrays.sort(used, (x, y) -> Long.compare(values[y], values[x]));
+        int[] result = new int[Math.min(top, n)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = used[i];
+        }
+        return result;
+    }
+}
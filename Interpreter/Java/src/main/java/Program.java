@@ -0,0 +1,250 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 已解码的 BS 程序（结构数组形式）
+ * A decoded BS program (structure-of-arrays form)
+ *
+ * 第 i 条指令保存为 a[i], b[i], c[i] 和 flags[i]（IN/OUT/HALT 功能位）。
+ * 数组比指令数多一个元素：下标 size() 处是结束哨兵（FLAG_END），
+ * 所有越界跳转目标在加载时都被解析到该哨兵，执行循环因此不需要边界检查。
+ * Instruction i is stored as a[i], b[i], c[i] and flags[i] (IN/OUT/HALT function bits).
+ * The arrays hold one extra element: index size() is an end sentinel (FLAG_END), and
+ * every out-of-range jump target is resolved to it at load time, so the execution
+ * loop needs no bounds check.
+ */
+public class Program {
+    /** a段功能位：输入 / a function bit: input */
+    public static final byte FLAG_IN = 1;
+    /** b段功能位：输出 / b function bit: output */
+    public static final byte FLAG_OUT = 2;
+    /** c段功能位：停机 / c function bit: halt */
+    public static final byte FLAG_HALT = 4;
+    /** 结束哨兵：PC 离开程序范围，不计为一条指令 / End sentinel: PC left the program, not counted as an instruction */
+    public static final byte FLAG_END = 8;
+
+    public final int[] a;
+    public final int[] b;
+    public final int[] c;
+    public final byte[] flags;
+    private final int size;
+    private int[] addressTable;
+
+    private Program(int[] a, int[] b, int[] c, byte[] flags, int size) {
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.flags = flags;
+        this.size = size;
+    }
+
+    /**
+     * 由长度为 size + 1 的数组构造程序：解析越界跳转并写入结束哨兵
+     * Build a program from arrays of length size + 1: resolves out-of-range jumps and writes the end sentinel
+     */
+    static Program of(int[] a, int[] b, int[] c, byte[] flags, int size) {
+        // 越界跳转 → 结束哨兵 / out-of-range jumps → end sentinel
+        for (int i = 0; i < size; i++) {
+            if (c[i] < 0 || c[i] >= size) {
+                c[i] = size;
+            }
+        }
+        c[size] = size;
+        flags[size] = FLAG_END;
+        return new Program(a, b, c, flags, size);
+    }
+
+    /**
+     * 从比特流解码整个程序
+     * Decode a whole program from a bitstream
+     */
+    public static Program decode(BitReader reader, boolean debug) {
+        Builder builder = new Builder(64);
+
+        while (reader.hasMore()) {
+            try {
+                BitReader.AddressResult aResult = reader.readAddress();
+                if (!reader.hasMore()) {
+                    if (debug) System.err.println(Lang.get(
+                        "警告：不完整的指令（只有 a=" + aResult.address + "）",
+                        "Warning: Incomplete instruction (only a=" + aResult.address + ")"
+                    ));
+                    break;
+                }
+
+                BitReader.AddressResult bResult = reader.readAddress();
+                if (!reader.hasMore()) {
+                    if (debug) System.err.println(Lang.get(
+                        "警告：不完整的指令（a=" + aResult.address + ", b=" + bResult.address + "）",
+                        "Warning: Incomplete instruction (a=" + aResult.address + ", b=" + bResult.address + ")"
+                    ));
+                    break;
+                }
+
+                BitReader.AddressResult cResult = reader.readAddress();
+
+                int flags = (aResult.hasFunction ? FLAG_IN : 0)
+                          | (bResult.hasFunction ? FLAG_OUT : 0)
+                          | (cResult.hasFunction ? FLAG_HALT : 0);
+
+                if (debug) System.err.println(Lang.get(
+                    "已加载指令 " + builder.size() + ": " + describe(aResult.address, bResult.address, cResult.address, flags),
+                    "Loaded instruction " + builder.size() + ": " + describe(aResult.address, bResult.address, cResult.address, flags)
+                ));
+                builder.add(aResult.address, bResult.address, cResult.address, flags);
+            } catch (IOException e) {
+                if (debug) System.err.println(Lang.get(
+                    "加载程序时出错：" + e.getMessage(),
+                    "Error loading program: " + e.getMessage()
+                ));
+                break;
+            }
+        }
+
+        Program program = builder.build();
+        if (debug) System.err.println(Lang.get(
+            "已加载 " + program.size() + " 条指令",
+            "Loaded " + program.size() + " instructions"
+        ));
+        return program;
+    }
+
+    /**
+     * 指令数量（不含结束哨兵）
+     * Number of instructions (excluding the end sentinel)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 独立的副本；重编号会就地修改程序，因此共享的已解码程序必须先复制再交给解释器
+     * An independent copy; renumbering modifies a program in place, so a shared decoded program
+     * has to be copied before it is handed to an interpreter
+     */
+    public Program copy() {
+        Program copy = new Program(a.clone(), b.clone(), c.clone(), flags.clone(), size);
+        copy.addressTable = addressTable;
+        return copy;
+    }
+
+    /**
+     * 把指令中出现的所有 a/b 地址重编号为紧凑下标 0..N-1
+     * Renumber every a/b address used by the program to dense indices 0..N-1
+     *
+     * Subleq 没有间接寻址，程序能访问的每个地址都字面出现在某条指令的 a/b 字段中，
+     * 因此重编号后内存可以是一个大小为 N 的 int[]。
+     * Subleq has no indirect addressing, so every address a program can touch appears
+     * literally in some a/b field, and the renumbered memory can be an int[] of size N.
+     *
+     * @return 紧凑下标到原始地址的映射 / dense index to original address table
+     */
+    public int[] renumberAddresses() {
+        if (addressTable != null) {
+            return addressTable;
+        }
+
+        // 原始地址 → 下标 + 1（0 表示尚未分配）/ original address → index + 1 (0 means unassigned)
+        IntHashMemory indexOf = new IntHashMemory(size * 2, IntHashMemory.DEFAULT_LOAD_FACTOR);
+        int[] table = new int[16];
+        int count = 0;
+
+        for (int field = 0; field < 2; field++) {
+            int[] addresses = field == 0 ? a : b;
+            for (int i = 0; i < size; i++) {
+                int address = addresses[i];
+                int index = indexOf.read(address) - 1;
+                if (index < 0) {
+                    if (count == table.length) {
+                        table = Arrays.copyOf(table, count * 2);
+                    }
+                    index = count;
+                    table[count++] = address;
+                    indexOf.write(address, index + 1);
+                }
+                addresses[i] = index;
+            }
+        }
+
+        addressTable = Arrays.copyOf(table, count);
+        return addressTable;
+    }
+
+    /**
+     * 地址是否已被重编号
+     * Whether the addresses have been renumbered
+     */
+    public boolean isRenumbered() {
+        return addressTable != null;
+    }
+
+    /**
+     * 把内部地址转换回程序中的原始地址（用于调试输出）
+     * Map an internal address back to the program's original address (for debug output)
+     */
+    public int originalAddress(int address) {
+        return addressTable == null ? address : addressTable[address];
+    }
+
+    /**
+     * 以原始地址描述第 pc 条指令
+     * Describe instruction pc using original addresses
+     */
+    public String describe(int pc) {
+        return describe(originalAddress(a[pc]), originalAddress(b[pc]), c[pc], flags[pc]);
+    }
+
+    private static String describe(int a, int b, int c, int flags) {
+        return "a=" + a + ((flags & FLAG_IN) != 0 ? "[IN]" : "") +
+               ", b=" + b + ((flags & FLAG_OUT) != 0 ? "[OUT]" : "") +
+               ", c=" + c + ((flags & FLAG_HALT) != 0 ? "[HALT]" : "");
+    }
+
+    /**
+     * 可增长的原始类型指令存储，build() 时解析跳转目标并追加结束哨兵
+     * Growable primitive instruction store; build() resolves jump targets and appends the end sentinel
+     */
+    public static class Builder {
+        private int[] a;
+        private int[] b;
+        private int[] c;
+        private byte[] flags;
+        private int size;
+
+        public Builder(int initialCapacity) {
+            int capacity = Math.max(initialCapacity, 1);
+            a = new int[capacity];
+            b = new int[capacity];
+            c = new int[capacity];
+            flags = new byte[capacity];
+        }
+
+        public void add(int a, int b, int c, int flags) {
+            if (size == this.a.length) {
+                grow();
+            }
+            this.a[size] = a;
+            this.b[size] = b;
+            this.c[size] = c;
+            this.flags[size] = (byte) flags;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Program build() {
+            return Program.of(Arrays.copyOf(a, size + 1), Arrays.copyOf(b, size + 1),
+                              Arrays.copyOf(c, size + 1), Arrays.copyOf(flags, size + 1), size);
+        }
+
+        private void grow() {
+            int capacity = a.length * 2;
+            a = Arrays.copyOf(a, capacity);
+            b = Arrays.copyOf(b, capacity);
+            c = Arrays.copyOf(c, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 已解码程序的磁盘缓存，以规范化比特流的 SHA-256 为键
+ * On-disk cache of decoded programs, keyed by the SHA-256 of the normalized bitstream
+ *
+ * 文本程序的规范形式是去掉空白后的字符，打包程序是其比特；因此只改动排版不会使缓存失效。
+ * 条目按本机字节序保存结构数组，加载时从内存映射整块复制到 int[]，不做任何解码。
+ * 命中时更新条目的修改时间，超过容量上限时删除最久未使用的条目（LRU）。
+ * 条目先写入临时文件再原子重命名，因此多个进程可以共享同一个缓存目录。
+ * The normalized form of a text program is its characters with whitespace removed, and of a
+ * packed program its bits, so reformatting a program does not invalidate its entry. Entries
+ * hold the structure of arrays in native byte order and are loaded by bulk-copying from a
+ * memory mapping into int[], with no decoding at all. A hit touches the entry's modification
+ * time, and once the cache exceeds its size bound the least recently used entries are
+ * deleted. Entries are written to a temporary file and renamed atomically, so several
+ * processes can share one cache directory.
+ *
+ * 条目布局 / Entry layout:
+ *   0  4  魔数 "BSPC"（大端）/ magic "BSPC" (big-endian)
+ *   4  1  版本 / version
+ *   5  1  字节序：0 大端，1 小端 / byte order: 0 big-endian, 1 little-endian
+ *   6  2  保留，为 0 / reserved, 0
+ *   8  4  指令数 n / instruction count n
+ *   12 4  保留，为 0 / reserved, 0
+ *   16 .. a[n+1], b[n+1], c[n+1]（int），flags[n+1]（byte）；c 已解析，含结束哨兵
+ *         a[n+1], b[n+1], c[n+1] (int), flags[n+1] (byte); c is resolved and the end sentinel included
+ */
+public class ProgramCache {
+    public static final int MAGIC = 0x42535043; // "BSPC"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+
+    /** 默认的缓存容量上限 / Default size bound of the cache */
+    public static final long DEFAULT_MAX_BYTES = 1L << 30;
+
+    /** 小于此大小的程序文件解码比读写缓存更快，不缓存 / Program files below this size decode faster than a cache round trip and are not cached */
+    private static final long MIN_PROGRAM_BYTES = 64 * 1024;
+
+    private static final String SUFFIX = ".bsc";
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public ProgramCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 默认的缓存目录：~/.cache/bs
+     * Default cache directory: ~/.cache/bs
+     */
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".cache", "bs");
+    }
+
+    /**
+     * 程序文件的缓存键（规范化比特流的 SHA-256，十六进制）；文件太小不值得缓存时返回 null
+     * Cache key of a program file (hex SHA-256 of the normalized bitstream); null when the file is too small to be worth caching
+     */
+    public String key(Path program) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (FileChannel channel = FileChannel.open(program, StandardOpenOption.READ)) {
+            if (channel.size() < MIN_PROGRAM_BYTES) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            if (PackedProgramFile.isPacked(program)) {
+                long bits = PackedProgramFile.readHeader(channel);
+                digest.update((byte) 'P');
+                digest.update(ByteBuffer.allocate(8).putLong(0, bits));
+                long left = (bits + 7) / 8;
+                long position = PackedProgramFile.HEADER_SIZE;
+                while (left > 0) {
+                    buffer.clear().limit((int) Math.min(BUFFER_SIZE, left));
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        break;
+                    }
+                    position += read;
+                    left -= read;
+                    if (left == 0 && (bits & 7) != 0) {
+                        // 末字节的填充位不属于程序 / The padding bits of the last byte are not part of the program
+                        int last = buffer.position() - 1;
+                        buffer.put(last, (byte) (buffer.get(last) & (0xFF << (8 - (bits & 7)))));
+                    }
+                    buffer.flip();
+                    digest.update(buffer);
+                }
+            } else {
+                digest.update((byte) 'T');
+                byte[] data = buffer.array();
+                int read;
+                while ((read = channel.read(buffer.clear())) >= 0) {
+                    // 就地去掉空白 / Drop whitespace in place
+                    int count = 0;
+                    for (int i = 0; i < read; i++) {
+                        byte c = data[i];
+                        // 所有空白字符都不大于 ' ' / Every whitespace character is at most ' '
+                        if (c > ' ' || !MappedBitReader.isWhitespace(c)) {
+                            data[count++] = c;
+                        }
+                    }
+                    digest.update(data, 0, count);
+                }
+            }
+        }
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 读取缓存的程序，未命中或条目无效时返回 null
+     * Load a cached program, returning null on a miss or an invalid entry
+     */
+    public Program load(String key) throws IOException {
+        Path entry = directory.resolve(key + SUFFIX);
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+
+        Program program;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // 读满文件头 / Fill the header
+            }
+            ByteOrder order = header.get(5) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+            int size = header.order(order).getInt(8);
+            if (header.hasRemaining() || header.order(ByteOrder.BIG_ENDIAN).getInt(0) != MAGIC
+                    || header.get(4) != VERSION || order != ByteOrder.nativeOrder()
+                    || size < 0 || size == Integer.MAX_VALUE || channel.size() != entrySize(size)) {
+                // 其他版本、其他字节序或写了一半的条目都当作未命中 / Other versions, byte orders or half-written entries are misses
+                return null;
+            }
+
+            int length = size + 1;
+            int[] a = new int[length];
+            int[] b = new int[length];
+            int[] c = new int[length];
+            byte[] flags = new byte[length];
+            long position = HEADER_SIZE;
+            position = readInts(channel, position, a);
+            position = readInts(channel, position, b);
+            position = readInts(channel, position, c);
+            readBytes(channel, position, flags);
+            program = Program.of(a, b, c, flags, size);
+        }
+
+        // 记录最近使用时间，用于 LRU 淘汰 / Record the time of last use for LRU eviction
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        return program;
+    }
+
+    /**
+     * 保存已解码（尚未重编号）的程序，然后把缓存淘汰到容量上限以内
+     * Store a decoded (not yet renumbered) program, then evict the cache down to its size bound
+     */
+    public void store(String key, Program program) throws IOException {
+        long size = entrySize(program.size());
+        if (size > maxBytes) {
+            return;
+        }
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder());
+                buffer.order(ByteOrder.BIG_ENDIAN).putInt(MAGIC).order(ByteOrder.nativeOrder());
+                buffer.put((byte) VERSION)
+                      .put((byte) (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 1 : 0))
+                      .putShort((short) 0)
+                      .putInt(program.size())
+                      .putInt(0);
+                int length = program.size() + 1;
+                for (int[] field : new int[][] {program.a, program.b, program.c}) {
+                    for (int i = 0; i < length; i++) {
+                        if (buffer.remaining() < 4) {
+                            drain(out, buffer);
+                        }
+                        buffer.putInt(field[i]);
+                    }
+                }
+                for (int i = 0; i < length; i++) {
+                    if (!buffer.hasRemaining()) {
+                        drain(out, buffer);
+                    }
+                    buffer.put(program.flags[i]);
+                }
+                drain(out, buffer);
+            }
+            Path entry = directory.resolve(key + SUFFIX);
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        evict();
+    }
+
+    /**
+     * 按最近使用时间删除最旧的条目，直到缓存总大小不超过上限
+     * Delete the least recently used entries until the cache fits within its size bound
+     */
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+            }
+        }
+        List<long[]> info = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            try {
+                Path entry = entries.get(i);
+                info.add(new long[] {Files.getLastModifiedTime(entry).toMillis(), Files.size(entry), i});
+            } catch (IOException e) {
+                // 已被其他进程删除 / Already deleted by another process
+            }
+        }
+        info.sort((x, y) -> Long.compare(y[0], x[0]));
+
+        long total = 0;
+        for (long[] entry : info) {
+            total += entry[1];
+            if (total > maxBytes) {
+                try {
+                    Files.deleteIfExists(entries.get((int) entry[2]));
+                } catch (IOException e) {
+                    // 可能正被其他进程使用，下次再删除 / May be in use by another process; retried next time
+                }
+            }
+        }
+    }
+
+    private static long entrySize(int size) {
+        return HEADER_SIZE + 13L * (size + 1);
+    }
+
+    private static long readInts(FileChannel channel, long position, int[] target) throws IOException {
+        int done = 0;
+        while (done < target.length) {
+            int count = (int) Math.min(target.length - done, WINDOW_SIZE / 4);
+            channel.map(FileChannel.MapMode.READ_ONLY, position, count * 4L)
+                   .order(ByteOrder.nativeOrder()).asIntBuffer().get(target, done, count);
+            done += count;
+            position += count * 4L;
+        }
+        return position;
+    }
+
+    private static void readBytes(FileChannel channel, long position, byte[] target) throws IOException {
+        int done = 0;
+        while (done < target.length) {
+            int count = (int) Math.min(target.length - done, WINDOW_SIZE);
+            channel.map(FileChannel.MapMode.READ_ONLY, position, count).get(target, done, count);
+            done += count;
+            position += count;
+        }
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
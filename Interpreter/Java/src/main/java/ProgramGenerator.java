@@ -0,0 +1,540 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 合成 BS 程序生成器：一个带标签的小型汇编器，以及一组参数化的工作负载
+ * Synthetic BS program generator: a small assembler with labels, plus a set of parameterized workloads
+ *
+ * Subleq 的内存初始全为 0，且只能相减，因此程序中所有非零常数都必须来自输入。
+ * 生成的程序（transform 除外）开头读取一个值为 1 的种子字节（ONE），再用倍增在几条指令内构造任意常数；
+ * 每个工作负载都附带它期望的输入（Sample.input）。
+ * Subleq memory starts out all zero and can only be subtracted, so every non-zero constant
+ * has to come from the input. Generated programs (except transform) start by reading a seed
+ * byte of value 1 (ONE) and build any constant from it by doubling in a few instructions;
+ * every workload comes with the input it expects (Sample.input).
+ *
+ * 工作负载规格 / Workload specs (name:param,param,...):
+ *   loops:depth,count            嵌套计数循环，执行约 count^depth 次循环体 / nested counting loops, about count^depth body runs
+ *   copy:cells,rounds            把 cells 个单元复制 rounds 遍 / copy cells cells, rounds times
+ *   wide:nibbles,cells,rounds    在 nibbles 个半字节长的地址上计数 / count on addresses nibbles nibbles long
+ *   transform:key,length         输出每个输入字节加 key（key=0 即回显）/ echo every input byte plus key (key=0 echoes)
+ *   straight:instructions        有向前跳转的大型顺序程序 / a large straight-line program with forward jumps
+ */
+public class ProgramGenerator {
+    /** 工作负载名称 / Workload names */
+    public static final String[] WORKLOADS = {"loops", "copy", "wide", "transform", "straight"};
+
+    /** 生成的程序加上它期望的输入 / A generated program plus the input it expects */
+    public static class Sample {
+        public final String spec;
+        public final ProgramGenerator program;
+        public final byte[] input;
+
+        public Sample(String spec, ProgramGenerator program, byte[] input) {
+            this.spec = spec;
+            this.program = program;
+            this.input = input;
+        }
+    }
+
+    /** 跳转标签，绑定前可被引用 / A jump label, which may be referenced before it is bound */
+    public static class Label {
+        private final int id;
+
+        private Label(int id) {
+            this.id = id;
+        }
+    }
+
+    /** 种子字节 1 所在的单元 / Cell holding the seed byte 1 */
+    public static final int ONE = 1;
+    /** 始终为 0 的单元 / Cell that is always 0 */
+    public static final int ZERO = 2;
+    /** readOne 之后为 -1 的单元 / Cell holding -1 after readOne */
+    public static final int NEGATIVE_ONE = 3;
+
+    /** 构造常数用的暂存单元 / Scratch cells for building constants */
+    private static final int POWER = 4;
+    private static final int NEGATIVE_POWER = 5;
+    private static final int FIRST_FREE_CELL = 6;
+
+    private int[] a = new int[64];
+    private int[] b = new int[64];
+    private int[] c = new int[64];
+    private byte[] flags = new byte[64];
+    private int size;
+    private int[] labels = new int[16];
+    private int labelCount;
+    private int nextCell = FIRST_FREE_CELL;
+
+    /**
+     * 分配一个未使用的低地址单元
+     * Allocate an unused low memory cell
+     */
+    public int cell() {
+        return nextCell++;
+    }
+
+    /**
+     * 下一条指令的下标
+     * Index of the next instruction
+     */
+    public int here() {
+        return size;
+    }
+
+    /**
+     * 指令数量
+     * Number of instructions
+     */
+    public int size() {
+        return size;
+    }
+
+    public Label label() {
+        if (labelCount == labels.length) {
+            labels = Arrays.copyOf(labels, labelCount * 2);
+        }
+        labels[labelCount] = -1;
+        return new Label(labelCount++);
+    }
+
+    /**
+     * 把标签绑定到下一条指令
+     * Bind a label to the next instruction
+     */
+    public void bind(Label label) {
+        labels[label.id] = size;
+    }
+
+    /**
+     * 追加一条原始指令；c 是绝对下标，flags 是 Program.FLAG_IN/OUT/HALT 的组合
+     * Append a raw instruction; c is an absolute index and flags a combination of Program.FLAG_IN/OUT/HALT
+     */
+    public void add(int a, int b, int c, int flags) {
+        if (c < 0) {
+            throw new IllegalArgumentException("Negative jump target: " + c);
+        }
+        append(a, b, c, flags);
+    }
+
+    /**
+     * mem[b] -= mem[a]，然后继续执行下一条指令
+     * mem[b] -= mem[a], then continue with the next instruction
+     */
+    public void subleq(int a, int b) {
+        append(a, b, size + 1, 0);
+    }
+
+    /**
+     * mem[b] -= mem[a]，结果 ≤ 0 时跳转到 target
+     * mem[b] -= mem[a], jumping to target when the result is ≤ 0
+     */
+    public void subleq(int a, int b, Label target) {
+        append(a, b, ~target.id, 0);
+    }
+
+    public void jump(Label target) {
+        subleq(ZERO, ZERO, target);
+    }
+
+    /** 读取一个字节到 cell（EOF 时为 0）/ Read one byte into cell (0 at EOF) */
+    public void input(int cell) {
+        append(cell, ZERO, size + 1, Program.FLAG_IN);
+    }
+
+    /** 输出 cell 的低 8 位 / Output the low 8 bits of cell */
+    public void output(int cell) {
+        append(ZERO, cell, size + 1, Program.FLAG_OUT);
+    }
+
+    public void halt() {
+        append(ZERO, ZERO, size + 1, Program.FLAG_HALT);
+    }
+
+    /**
+     * 读取种子字节到 ONE 并构造 NEGATIVE_ONE；之后才能使用 load、increment 和 decrement
+     * Read the seed byte into ONE and build NEGATIVE_ONE; load, increment and decrement require it
+     */
+    public void readOne() {
+        input(ONE);
+        subleq(ONE, NEGATIVE_ONE);
+    }
+
+    public void clear(int cell) {
+        subleq(cell, cell);
+    }
+
+    /** mem[cell] += 1 / mem[cell] += 1 */
+    public void increment(int cell) {
+        subleq(NEGATIVE_ONE, cell);
+    }
+
+    /** mem[cell] -= 1 / mem[cell] -= 1 */
+    public void decrement(int cell) {
+        subleq(ONE, cell);
+    }
+
+    /**
+     * mem[cell] = value，用倍增构造，每个二进制位约 4 条指令
+     * mem[cell] = value, built by doubling in about 4 instructions per bit
+     */
+    public void load(int cell, int value) {
+        clear(cell);
+        addConstant(cell, value);
+    }
+
+    /**
+     * mem[cell] += value（任意符号）
+     * mem[cell] += value (either sign)
+     */
+    public void addConstant(int cell, int value) {
+        if (value == 0) {
+            return;
+        }
+        long magnitude = Math.abs((long) value);
+        clear(POWER);
+        clear(NEGATIVE_POWER);
+        subleq(ONE, NEGATIVE_POWER);
+        subleq(NEGATIVE_POWER, POWER);
+        for (int bit = 0; ; bit++) {
+            // POWER = 2^bit，NEGATIVE_POWER = -2^bit / POWER = 2^bit, NEGATIVE_POWER = -2^bit
+            if ((magnitude >>> bit & 1) != 0) {
+                subleq(value > 0 ? NEGATIVE_POWER : POWER, cell);
+            }
+            if (magnitude >>> (bit + 1) == 0) {
+                break;
+            }
+            subleq(POWER, NEGATIVE_POWER);
+            clear(POWER);
+            subleq(NEGATIVE_POWER, POWER);
+        }
+    }
+
+    /**
+     * mem[target] = mem[source]，借助一个为 0 的暂存单元
+     * mem[target] = mem[source], using a scratch cell that holds 0
+     */
+    public void copy(int source, int target, int scratch) {
+        clear(target);
+        subleq(source, scratch);
+        subleq(scratch, target);
+        clear(scratch);
+    }
+
+    /**
+     * 把程序编码为比特流写出
+     * Write the program out as a bitstream
+     */
+    public void writeTo(Appendable out) throws IOException {
+        StringBuilder bits = new StringBuilder(256);
+        for (int i = 0; i < size; i++) {
+            int flag = flags[i];
+            encode(bits, a[i], (flag & Program.FLAG_IN) != 0);
+            encode(bits, b[i], (flag & Program.FLAG_OUT) != 0);
+            encode(bits, target(i), (flag & Program.FLAG_HALT) != 0);
+            if (bits.length() >= 192) {
+                out.append(bits);
+                bits.setLength(0);
+            }
+        }
+        out.append(bits);
+    }
+
+    /**
+     * 程序的比特流
+     * The program's bitstream
+     */
+    public String bits() {
+        StringBuilder bits = new StringBuilder(size * 36);
+        try {
+            writeTo(bits);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bits.toString();
+    }
+
+    /**
+     * 直接构造已解码的程序，与解码 bits() 的结果相同
+     * Build the decoded program directly; equal to decoding bits()
+     */
+    public Program toProgram() {
+        Program.Builder builder = new Program.Builder(size);
+        for (int i = 0; i < size; i++) {
+            builder.add(a[i], b[i], target(i), flags[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 编码一个自终止地址：高位半字节在前，功能位放在终止块上
+     * Encode a self-terminating address: most significant nibble first, function bit on the terminating block
+     */
+    public static void encode(StringBuilder bits, int address, boolean function) {
+        int nibbles = Math.max(1, (35 - Integer.numberOfLeadingZeros(address)) / 4);
+        for (int i = nibbles - 1; i >= 0; i--) {
+            int data = (address >>> (4 * i)) & 0xF;
+            for (int bit = 3; bit >= 0; bit--) {
+                bits.append((char) ('0' + ((data >>> bit) & 1)));
+            }
+            bits.append(i == 0 && function ? '1' : '0');
+            bits.append(i == 0 ? '0' : '1');
+        }
+    }
+
+    private int target(int i) {
+        int target = c[i];
+        if (target >= 0) {
+            return target;
+        }
+        int bound = labels[~target];
+        if (bound < 0) {
+            throw new IllegalStateException("Unbound label at instruction " + i);
+        }
+        return bound;
+    }
+
+    private void append(int a, int b, int c, int flags) {
+        if (size == this.a.length) {
+            int capacity = size * 2;
+            this.a = Arrays.copyOf(this.a, capacity);
+            this.b = Arrays.copyOf(this.b, capacity);
+            this.c = Arrays.copyOf(this.c, capacity);
+            this.flags = Arrays.copyOf(this.flags, capacity);
+        }
+        this.a[size] = a;
+        this.b[size] = b;
+        this.c[size] = c;
+        this.flags[size] = (byte) flags;
+        size++;
+    }
+
+    /**
+     * 按规格生成工作负载，例如 "loops:3,40"；省略的参数取默认值
+     * Generate a workload from a spec such as "loops:3,40"; omitted parameters take their defaults
+     *
+     * @throws IllegalArgumentException 规格无效时 / when the spec is invalid
+     */
+    public static Sample generate(String spec) {
+        int colon = spec.indexOf(':');
+        String name = colon < 0 ? spec : spec.substring(0, colon);
+        String[] parts = colon < 0 || colon == spec.length() - 1 ? new String[0] : spec.substring(colon + 1).split(",");
+        int[] params = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            if (!parts[i].matches("\\d{1,9}")) {
+                throw new IllegalArgumentException(Lang.get(
+                    "无效的参数：" + parts[i], "Invalid parameter: " + parts[i]));
+            }
+            params[i] = Integer.parseInt(parts[i]);
+        }
+        switch (name) {
+            case "loops":
+                return nestedLoops(param(params, 0, 2), param(params, 1, 100));
+            case "copy":
+                return memoryCopy(param(params, 0, 256), param(params, 1, 100));
+            case "wide":
+                return wideAddresses(param(params, 0, 8), param(params, 1, 64), param(params, 2, 1000));
+            case "transform":
+                return transform(param(params, 0, 1), param(params, 1, 1 << 16));
+            case "straight":
+                return straightLine(param(params, 0, 1000000));
+            default:
+                throw new IllegalArgumentException(Lang.get(
+                    "未知的工作负载：" + name + "（可用：" + String.join(", ", WORKLOADS) + "）",
+                    "Unknown workload: " + name + " (available: " + String.join(", ", WORKLOADS) + ")"));
+        }
+    }
+
+    /**
+     * depth 层嵌套的计数循环，每层 count 次；最内层给计数器加 1，最后输出计数器的低 8 位
+     * depth nested counting loops of count iterations each; the innermost body increments a
+     * counter, whose low 8 bits are output at the end
+     */
+    public static Sample nestedLoops(int depth, int count) {
+        check(depth >= 1 && depth <= 16, "depth", depth);
+        check(count >= 1, "count", count);
+        ProgramGenerator gen = new ProgramGenerator();
+        gen.readOne();
+        int negativeCount = gen.cell();
+        int counter = gen.cell();
+        gen.load(negativeCount, -count);
+        int[] counters = new int[depth];
+        Label[] heads = new Label[depth];
+        Label[] exits = new Label[depth];
+        for (int level = 0; level < depth; level++) {
+            counters[level] = gen.cell();
+            heads[level] = gen.label();
+            exits[level] = gen.label();
+            // counters[level] = count
+            gen.clear(counters[level]);
+            gen.subleq(negativeCount, counters[level]);
+            gen.bind(heads[level]);
+        }
+        gen.increment(counter);
+        for (int level = depth - 1; level >= 0; level--) {
+            gen.subleq(ONE, counters[level], exits[level]);
+            gen.jump(heads[level]);
+            gen.bind(exits[level]);
+        }
+        gen.output(counter);
+        gen.halt();
+        return new Sample("loops:" + depth + "," + count, gen, new byte[] {1});
+    }
+
+    /**
+     * 用 1..cells 填充源区，然后把它复制到目标区 rounds 遍；输出目标区之和与最后一个单元的低 8 位
+     * Fill a source area with 1..cells, then copy it to a target area rounds times; outputs the
+     * low 8 bits of the target area's sum and of its last cell
+     */
+    public static Sample memoryCopy(int cells, int rounds) {
+        check(cells >= 1 && cells <= 1 << 24, "cells", cells);
+        check(rounds >= 1, "rounds", rounds);
+        ProgramGenerator gen = new ProgramGenerator();
+        gen.readOne();
+        int scratch = gen.cell();
+        int negativeValue = gen.cell();
+        int round = gen.cell();
+        int negativeSum = gen.cell();
+        int sum = gen.cell();
+        int source = gen.nextCell;
+        int target = source + cells;
+        gen.nextCell = target + cells;
+
+        for (int i = 0; i < cells; i++) {
+            // source[i] = i + 1
+            gen.decrement(negativeValue);
+            gen.subleq(negativeValue, source + i);
+        }
+        gen.load(round, rounds);
+        Label loop = gen.label();
+        Label done = gen.label();
+        gen.bind(loop);
+        for (int i = 0; i < cells; i++) {
+            gen.copy(source + i, target + i, scratch);
+        }
+        gen.subleq(ONE, round, done);
+        gen.jump(loop);
+        gen.bind(done);
+        for (int i = 0; i < cells; i++) {
+            gen.subleq(target + i, negativeSum);
+        }
+        gen.subleq(negativeSum, sum);
+        gen.output(sum);
+        gen.output(target + cells - 1);
+        gen.halt();
+        return new Sample("copy:" + cells + "," + rounds, gen, new byte[] {1});
+    }
+
+    /**
+     * 在 cells 个地址上各加 rounds 次 1，每个地址都恰好编码为 nibbles 个块；输出总和的低 8 位
+     * Add 1 to each of cells addresses rounds times, every address encoded as exactly nibbles
+     * blocks; outputs the low 8 bits of the total
+     */
+    public static Sample wideAddresses(int nibbles, int cells, int rounds) {
+        check(nibbles >= 3 && nibbles <= 8, "nibbles", nibbles);
+        // 地址范围 [16^(n-1), 16^n)，不与低地址的暂存单元重叠 / Addresses in [16^(n-1), 16^n), clear of the low scratch cells
+        long low = 1L << (4 * (nibbles - 1));
+        long high = Math.min(1L << (4 * nibbles), 1L << 31);
+        check(cells >= 1 && cells <= high - low, "cells", cells);
+        check(rounds >= 1, "rounds", rounds);
+        long stride = (high - low) / cells;
+
+        ProgramGenerator gen = new ProgramGenerator();
+        gen.readOne();
+        int round = gen.cell();
+        int negativeSum = gen.cell();
+        int sum = gen.cell();
+        gen.load(round, rounds);
+        Label loop = gen.label();
+        Label done = gen.label();
+        gen.bind(loop);
+        for (int i = 0; i < cells; i++) {
+            gen.increment((int) (low + i * stride));
+        }
+        gen.subleq(ONE, round, done);
+        gen.jump(loop);
+        gen.bind(done);
+        for (int i = 0; i < cells; i++) {
+            gen.subleq((int) (low + i * stride), negativeSum);
+        }
+        gen.subleq(negativeSum, sum);
+        gen.output(sum);
+        gen.halt();
+        return new Sample("wide:" + nibbles + "," + cells + "," + rounds, gen, new byte[] {1});
+    }
+
+    /**
+     * 先读取 key，然后把每个输入字节加上 key 输出，直到 EOF 或 0 字节；输入是 key 后跟 length 个非零字节
+     * Read key, then output every input byte plus key until EOF or a 0 byte; the input is key
+     * followed by length non-zero bytes
+     */
+    public static Sample transform(int key, int length) {
+        check(key >= 0 && key <= 255, "key", key);
+        check(length >= 0, "length", length);
+        ProgramGenerator gen = new ProgramGenerator();
+        int keyCell = gen.cell();
+        int negativeKey = gen.cell();
+        int current = gen.cell();
+        gen.input(keyCell);
+        gen.subleq(keyCell, negativeKey);
+        Label loop = gen.label();
+        Label done = gen.label();
+        gen.bind(loop);
+        gen.input(current);
+        gen.subleq(ZERO, current, done);
+        gen.subleq(negativeKey, current);
+        gen.output(current);
+        gen.jump(loop);
+        gen.bind(done);
+        gen.halt();
+
+        byte[] input = new byte[length + 1];
+        input[0] = (byte) key;
+        for (int i = 1; i <= length; i++) {
+            input[i] = (byte) (1 + (i * 37) % 255);
+        }
+        return new Sample("transform:" + key + "," + length, gen, input);
+    }
+
+    /**
+     * 共 instructions 条指令的顺序程序，操作数随机取自 4096 个单元，部分指令向前跳过至多 3 条；
+     * 最后输出 4 个单元的低 8 位。同样的参数总是生成同样的程序。
+     * A straight-line program of instructions instructions over 4096 random cells, some of which
+     * skip up to 3 instructions ahead; the low 8 bits of 4 cells are output at the end. The same
+     * parameter always generates the same program.
+     */
+    public static Sample straightLine(int instructions) {
+        check(instructions >= 8, "instructions", instructions);
+        ProgramGenerator gen = new ProgramGenerator();
+        Random random = new Random(instructions);
+        int pool = gen.nextCell;
+        gen.nextCell += 4096;
+        gen.readOne();
+        int end = instructions - 4;
+        while (gen.here() < end) {
+            int a = random.nextInt(16) == 0 ? ONE : pool + random.nextInt(4096);
+            int b = pool + random.nextInt(4096);
+            int skip = random.nextInt(4) == 0 ? random.nextInt(4) : 0;
+            gen.add(a, b, Math.min(gen.here() + 1 + skip, end), 0);
+        }
+        for (int i = 0; i < 3; i++) {
+            gen.output(pool + i);
+        }
+        gen.append(ZERO, pool + 3, gen.here() + 1, Program.FLAG_OUT | Program.FLAG_HALT);
+        return new Sample("straight:" + instructions, gen, new byte[] {1});
+    }
+
+    private static int param(int[] params, int index, int defaultValue) {
+        return index < params.length ? params[index] : defaultValue;
+    }
+
+    private static void check(boolean valid, String name, int value) {
+        if (!valid) {
+            throw new IllegalArgumentException(Lang.get(
+                name + " 的值超出范围：" + value, "Value of " + name + " is out of range: " + value));
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 调度器检查：BSScheduler 中的每个任务（输入分批提供、中途挂起等待输入）都必须与直接用 BSInterpreter 运行的结果相同，
+ * 就绪任务得到的指令数必须与优先级成比例，close() 必须取消未完成任务的结果
+ * Scheduler check: every task in a BSScheduler (fed in pieces, suspending for input on the way) must give the same
+ * result as running BSInterpreter directly, ready tasks must get instructions in proportion to their priority, and
+ * close() must cancel the results of unfinished tasks
+ *
+ * 用法 / Usage: java SchedulerCheck [--lang zh|en] [tasks] [seed]
+ */
+public class SchedulerCheck {
+    /** 生成的工作负载，多数在执行中读取输入 / Generated workloads, most of which read input while running */
+    private static final String[] SPECS = {
+        "transform:7,3000", "transform:0,200", "copy:50,20", "loops:2,100", "wide:3,100,50", "straight:1000"
+    };
+
+    /** 等待所有任务完成或一个任务进入某个状态的上限（秒）/ Limit on waiting for every task to finish or for a task to reach a state, in seconds */
+    private static final long WAIT_SECONDS = 60;
+
+    /** 优先级份额允许的相对误差 / Relative error allowed in priority shares */
+    private static final double SHARE_TOLERANCE = 0.25;
+
+    public static void main(String[] args) throws Exception {
+        int arg = 0;
+        if (args.length > 1 && args[0].equals("--lang")) {
+            Lang.setLanguage(args[1]);
+            arg = 2;
+        }
+        int count = args.length > arg ? Integer.parseInt(args[arg]) : 300;
+        long seed = args.length > arg + 1 ? Long.parseLong(args[arg + 1]) : 1;
+
+        int failures = checkResults(count, new Random(seed)) + checkPriorities() + checkClose();
+        System.out.println(Lang.get(
+            "检查了 " + count + " 个任务，失败 " + failures + " 次",
+            "Checked " + count + " tasks, " + failures + " failures"
+        ));
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /** 一个任务及其期望结果 / One task and its expected result */
+    private static class Run {
+        String spec;
+        byte[] input;
+        int fed;
+        BSScheduler.Task task;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BSResult expected;
+        byte[] expectedOutput;
+    }
+
+    /**
+     * 输入分批提供的任务必须与直接运行的结果相同；第一个任务必须在没有输入时挂起，提供输入后继续
+     * Tasks fed in pieces must match direct runs; the first task must suspend while it has no
+     * input and continue once input is fed
+     */
+    private static int checkResults(int count, Random random) throws Exception {
+        int failures = 0;
+        List<Run> runs = new ArrayList<>();
+        try (BSScheduler scheduler = new BSScheduler(4, 1000)) {
+            for (int i = 0; i < count; i++) {
+                Run run = new Run();
+                run.spec = SPECS[i % SPECS.length];
+                ProgramGenerator.Sample sample = ProgramGenerator.generate(run.spec);
+                run.input = sample.input;
+                Program program = sample.program.toProgram();
+
+                BSOptions options = new BSOptions();
+                options.maxInstructions = random.nextInt(4) == 0 ? 1 + random.nextInt(20000) : BSOptions.UNLIMITED;
+                options.renumber = random.nextBoolean();
+                options.fuse = random.nextBoolean();
+                options.quiet = true;
+
+                BSOptions direct = options.copy();
+                direct.input = InputSource.of(run.input);
+                ByteArrayOutputStream expectedOutput = new ByteArrayOutputStream();
+                direct.output = OutputSink.of(expectedOutput, OutputSink.FlushPolicy.FULL);
+                run.expected = BSRunner.run(program, direct);
+                run.expectedOutput = expectedOutput.toByteArray();
+
+                options.output = OutputSink.of(run.output, OutputSink.FlushPolicy.FULL);
+                run.task = scheduler.submit(program.copy(), options, 1 + random.nextInt(8));
+                runs.add(run);
+            }
+
+            // 没有输入时挂起，不占用工作线程 / Suspended without input, occupying no worker
+            Run first = runs.get(0);
+            if (!awaitState(first.task, BSScheduler.State.BLOCKED)) {
+                failures++;
+                System.out.println(Lang.get("任务没有挂起等待输入：", "Task did not suspend for input: ") + first.spec
+                    + " (" + first.task.getState() + ")");
+            }
+
+            // 随机大小的分批输入，间或停顿让任务挂起 / Input in pieces of random size, pausing now and then so tasks suspend
+            boolean pending = true;
+            while (pending) {
+                pending = false;
+                for (Run run : runs) {
+                    if (run.fed < run.input.length) {
+                        int length = Math.min(1 + random.nextInt(256), run.input.length - run.fed);
+                        run.task.feed(run.input, run.fed, length);
+                        run.fed += length;
+                        pending |= run.fed < run.input.length;
+                    }
+                }
+                if (random.nextInt(4) == 0) {
+                    Thread.sleep(1);
+                }
+            }
+            for (Run run : runs) {
+                run.task.closeInput();
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+            for (Run run : runs) {
+                BSResult result;
+                try {
+                    result = run.task.result().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException | TimeoutException e) {
+                    failures++;
+                    System.out.println(Lang.get("任务失败：", "Task failed: ") + run.spec + ": " + e);
+                    continue;
+                }
+                if (result.stopReason != run.expected.stopReason || result.instructionCount != run.expected.instructionCount
+                        || result.halted != run.expected.halted || !Arrays.equals(run.output.toByteArray(), run.expectedOutput)) {
+                    failures++;
+                    System.out.println(Lang.get("不一致：", "Mismatch: ") + run.spec + " [" + Lang.get("优先级 ", "priority ")
+                        + run.task.getPriority() + "]");
+                    System.out.println("  " + Lang.get("期望", "expected") + ": " + run.expected + ", "
+                        + run.expectedOutput.length + Lang.get(" 字节输出", " output bytes"));
+                    System.out.println("  " + Lang.get("实际", "actual") + ":   " + result + ", "
+                        + run.output.size() + Lang.get(" 字节输出", " output bytes"));
+                }
+            }
+            if (scheduler.getTaskCount() != 0) {
+                failures++;
+                System.out.println(Lang.get("调度器中仍有任务：", "Tasks left in the scheduler: ") + scheduler.getTaskCount());
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * 在一个工作线程上同时就绪的任务，得到的指令数必须与优先级成比例
+     * Tasks ready at the same time on one worker must get instructions in proportion to their priority
+     */
+    private static int checkPriorities() throws Exception {
+        int[] priorities = {1, 2, 4};
+        BSScheduler.Task[] tasks = new BSScheduler.Task[priorities.length];
+        long[] before = new long[priorities.length];
+        long[] after = new long[priorities.length];
+        try (BSScheduler scheduler = new BSScheduler(1, 1000)) {
+            for (int i = 0; i < priorities.length; i++) {
+                tasks[i] = scheduler.submit(endlessLoop(), endlessOptions(), priorities[i]);
+            }
+            // 先让份额稳定下来，再测量一段时间内的增量 / Let the shares settle, then measure the increase over a period
+            Thread.sleep(200);
+            for (int i = 0; i < tasks.length; i++) {
+                before[i] = tasks[i].getInstructionCount();
+            }
+            Thread.sleep(500);
+            for (int i = 0; i < tasks.length; i++) {
+                after[i] = tasks[i].getInstructionCount();
+            }
+        }
+
+        int failures = 0;
+        double unit = (double) (after[0] - before[0]) / priorities[0];
+        for (int i = 0; i < tasks.length; i++) {
+            double share = (after[i] - before[i]) / unit;
+            boolean ok = unit > 0 && Math.abs(share - priorities[i]) <= priorities[i] * SHARE_TOLERANCE;
+            System.out.printf(Locale.ROOT, "%s %d: %,d %s (%.2f)  %s%n", Lang.get("优先级", "priority"), priorities[i],
+                after[i] - before[i], Lang.get("条指令", "instructions"), share, ok ? Lang.get("通过", "ok") : Lang.get("失败", "FAILED"));
+            if (!ok) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * close() 必须取消未完成任务的结果，包括挂起等待输入的任务
+     * close() must cancel the results of unfinished tasks, including tasks suspended for input
+     */
+    private static int checkClose() throws Exception {
+        BSScheduler.Task running;
+        BSScheduler.Task blocked;
+        try (BSScheduler scheduler = new BSScheduler(2, 1000)) {
+            running = scheduler.submit(endlessLoop(), endlessOptions(), 1);
+            ProgramGenerator.Sample sample = ProgramGenerator.generate("transform:1,10");
+            BSOptions options = new BSOptions();
+            options.output = OutputSink.of(new ByteArrayOutputStream(), OutputSink.FlushPolicy.FULL);
+            blocked = scheduler.submit(sample.program.toProgram(), options, 1);
+            if (!awaitState(blocked, BSScheduler.State.BLOCKED)) {
+                System.out.println(Lang.get("任务没有挂起等待输入", "Task did not suspend for input"));
+                return 1;
+            }
+        }
+        int failures = 0;
+        for (BSScheduler.Task task : new BSScheduler.Task[] {running, blocked}) {
+            boolean cancelled;
+            try {
+                task.result().getNow(null);
+                cancelled = false;
+            } catch (CancellationException e) {
+                cancelled = true;
+            }
+            if (!cancelled || task.getState() != BSScheduler.State.DONE) {
+                failures++;
+                System.out.println(Lang.get("close() 没有取消任务的结果", "close() did not cancel the task's result"));
+            }
+        }
+        if (failures == 0) {
+            System.out.println(Lang.get("close() 取消了未完成的任务：通过", "close() cancelled the unfinished tasks: ok"));
+        }
+        return failures;
+    }
+
+    /** 永不停止的程序：mem[0] -= mem[0]，跳回 0 / A program that never stops: mem[0] -= mem[0], jump back to 0 */
+    private static Program endlessLoop() {
+        return Program.decode(new StringBitReader("000000000000000"), false);
+    }
+
+    private static BSOptions endlessOptions() {
+        BSOptions options = new BSOptions();
+        options.maxInstructions = BSOptions.UNLIMITED;
+        options.output = OutputSink.of(new ByteArrayOutputStream(), OutputSink.FlushPolicy.FULL);
+        return options;
+    }
+
+    private static boolean awaitState(BSScheduler.Task task, BSScheduler.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+        while (task.getState() != state) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+
+/**
+ * 边解码边执行的程序：解码线程把指令追加到可增长的原始类型存储中，解释器同时从 PC=0 开始执行
+ * A program that is executed while it is decoded: a decoder thread appends instructions to a
+ * growable primitive store while the interpreter already runs from PC=0
+ *
+ * 指令按 2^SEGMENT_BITS 条一段存放，段一旦分配就不再移动，因此已解码的指令可以无锁读取。
+ * 解码线程每 PUBLISH_INTERVAL 条指令通过 volatile 字段 decoded 发布一次进度；
+ * 解释器只有在跳到已解码前沿之后时才在 await() 中阻塞。
+ * 与 Program 不同，c 不会被解析到结束哨兵：越界只有在解码结束后才能确定。
+ * Instructions are stored in segments of 2^SEGMENT_BITS that never move once allocated, so
+ * decoded instructions can be read without locking. The decoder thread publishes its progress
+ * through the volatile field decoded every PUBLISH_INTERVAL instructions; the interpreter only
+ * blocks in await() when it jumps past the decoded frontier. Unlike Program, c is not resolved
+ * to an end sentinel: whether a target is out of range is only known once decoding has finished.
+ */
+public class StreamingProgram {
+    /** 每段指令数的位数 / Bits of the number of instructions per segment */
+    public static final int SEGMENT_BITS = 14;
+    /** 段内下标掩码 / Index mask within a segment */
+    public static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+
+    /** 发布解码进度的间隔（指令数）/ Interval, in instructions, at which decoding progress is published */
+    private static final int PUBLISH_INTERVAL = 1024;
+
+    /**
+     * 一段指令，字段含义与 Program 相同
+     * One segment of instructions, with the same fields as Program
+     */
+    public static final class Segment {
+        public final int[] a = new int[1 << SEGMENT_BITS];
+        public final int[] b = new int[1 << SEGMENT_BITS];
+        public final int[] c = new int[1 << SEGMENT_BITS];
+        public final byte[] flags = new byte[1 << SEGMENT_BITS];
+    }
+
+    private final BitReader reader;
+    private final Thread decoder;
+    private volatile Segment[] segments = new Segment[16];
+    private volatile int decoded;
+    private volatile boolean cancelled;
+    private boolean complete;
+    private boolean stopped;
+    private Throwable failure;
+
+    /**
+     * 创建程序并立即启动解码线程
+     * Create the program and start the decoder thread right away
+     */
+    public StreamingProgram(BitReader reader) {
+        this.reader = reader;
+        this.decoder = new Thread(this::decodeAll, "bs-decoder");
+        decoder.setDaemon(true);
+        decoder.start();
+    }
+
+    /**
+     * 已发布的指令数（下标小于它的指令都可以读取）
+     * Number of published instructions (every instruction below it may be read)
+     */
+    public int decoded() {
+        return decoded;
+    }
+
+    /**
+     * 第 pc 条指令所在的段；只能在 pc < decoded() 时调用
+     * The segment holding instruction pc; only valid when pc < decoded()
+     */
+    public Segment segment(int pc) {
+        return segments[pc >>> SEGMENT_BITS];
+    }
+
+    /**
+     * 等待第 pc 条指令被解码；若程序在它之前结束则返回 false
+     * Wait until instruction pc is decoded; returns false if the program ends before it
+     */
+    public synchronized boolean await(int pc) throws IOException {
+        if (pc < 0) {
+            return false;
+        }
+        while (pc >= decoded && !complete) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(Lang.get("等待解码时被中断", "Interrupted while waiting for decoding"));
+            }
+        }
+        if (pc < decoded) {
+            return true;
+        }
+        if (stopped) {
+            throw new IllegalStateException(Lang.get(
+                "解码已在第 " + decoded + " 条指令处停止",
+                "Decoding was stopped at instruction " + decoded
+            ));
+        }
+        if (failure != null) {
+            throw new IOException(Lang.get("解码程序失败：", "Failed to decode the program: ") + failure.getMessage(), failure);
+        }
+        return false;
+    }
+
+    /**
+     * 解码是否已结束（此后 decoded() 就是程序大小）
+     * Whether decoding has finished (decoded() is then the program size)
+     */
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * 停止解码并等待解码线程退出；程序停机或执行结束后调用，之后不再读取比特来源，
+     * 跳到已解码前沿之后会抛出 IllegalStateException
+     * Stop decoding and wait for the decoder thread to exit; called when the program halts or
+     * execution ends. The bit source is not read afterwards, and jumping past the decoded
+     * frontier throws IllegalStateException
+     */
+    public void cancel() {
+        cancelled = true;
+        boolean interrupted = false;
+        while (decoder.isAlive()) {
+            try {
+                decoder.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 解码线程：与 Program.decode 规则相同（末尾不完整的指令被丢弃，解码错误视为程序结束）
+     * Decoder thread: the same rules as Program.decode (an incomplete last instruction is dropped,
+     * a decoding error ends the program)
+     */
+    private void decodeAll() {
+        int size = 0;
+        Segment segment = null;
+        boolean stop = false;
+        Throwable error = null;
+        try {
+            while (reader.hasMore()) {
+                if (cancelled) {
+                    stop = true;
+                    break;
+                }
+                BitReader.AddressResult aResult = reader.readAddress();
+                if (!reader.hasMore()) {
+                    break;
+                }
+                BitReader.AddressResult bResult = reader.readAddress();
+                if (!reader.hasMore()) {
+                    break;
+                }
+                BitReader.AddressResult cResult = reader.readAddress();
+
+                int index = size & SEGMENT_MASK;
+                if (index == 0) {
+                    segment = addSegment(size >>> SEGMENT_BITS);
+                }
+                segment.a[index] = aResult.address;
+                segment.b[index] = bResult.address;
+                segment.c[index] = cResult.address;
+                segment.flags[index] = (byte) ((aResult.hasFunction ? Program.FLAG_IN : 0)
+                                             | (bResult.hasFunction ? Program.FLAG_OUT : 0)
+                                             | (cResult.hasFunction ? Program.FLAG_HALT : 0));
+                size++;
+                if ((size & (PUBLISH_INTERVAL - 1)) == 0) {
+                    publish(size, false, false, null);
+                }
+            }
+        } catch (IOException e) {
+            // 与 Program.decode 相同：解码错误处即为程序末尾 / As in Program.decode: the program ends at a decoding error
+        } catch (RuntimeException | Error e) {
+            error = e;
+        }
+        publish(size, true, stop, error);
+    }
+
+    private Segment addSegment(int index) {
+        if (index == segments.length) {
+            // 目录通过 volatile 字段发布，读取方看到的任一目录都包含已发布的段
+            // The directory is published through a volatile field, so any directory a reader sees holds every published segment
+            segments = Arrays.copyOf(segments, index * 2);
+        }
+        Segment segment = new Segment();
+        segments[index] = segment;
+        return segment;
+    }
+
+    private synchronized void publish(int size, boolean done, boolean stop, Throwable error) {
+        decoded = size;
+        if (done) {
+            complete = true;
+            stopped = stop;
+            failure = error;
+        }
+        notifyAll();
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * 从字符串读取比特流（用于 -e 和 API）
+ * Reads a bitstream from a string (used by -e and the API)
+ */
+public class StringBitReader extends BitReader {
+    private final String bitstream;
+    private int position;
+
+    public StringBitReader(String bitstream) {
+        this.bitstream = bitstream.replaceAll("\\s+", "");
+        this.position = 0;
+    }
+
+    @Override
+    public boolean hasMore() {
+        return position < bitstream.length();
+    }
+
+    @Override
+    protected int readBit() {
+        if (position >= bitstream.length()) {
+            return -1;
+        }
+        char c = bitstream.charAt(position++);
+        if (c == '0') return 0;
+        if (c == '1') return 1;
+        return -1; // 无效字符视为 EOF / Invalid character treated as EOF
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+}
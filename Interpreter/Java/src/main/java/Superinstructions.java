@@ -0,0 +1,95 @@
+/**
+ * 超级指令：把常见的 Subleq 宏识别为融合操作
+ * Superinstructions: recognize common Subleq macros as fused operations
+ *
+ * 识别的模式（Z 为临时单元，"next" 表示 c = 下一条指令）：
+ * Recognized patterns (Z is a scratch cell, "next" means c = the following instruction):
+ * - JMP:   subleq Z Z c            → mem[Z] = 0; 跳转到 c / jump to c
+ * - CLEAR: subleq X X next         → mem[X] = 0
+ * - ADD:   subleq A Z next; subleq Z B next; subleq Z Z c
+ * - MOV:   subleq B B next; subleq A Z next; subleq Z B next; subleq Z Z c
+ *
+ * 融合操作只替换模式的第一条指令，内部指令保持不变，因此跳入模式中间的跳转
+ * 仍然执行原始指令。融合操作按顺序执行原始步骤（别名情况下结果相同），
+ * 并按原始指令数计数，getInstructionCount() 与统计信息保持不变。
+ * A fused op replaces only the first instruction of a pattern and the inner instructions stay
+ * as they are, so jumps that land inside a pattern still run the original instructions. Fused
+ * ops perform the original steps in order (so aliasing gives the same result) and count as
+ * the original number of instructions, keeping getInstructionCount() and statistics unchanged.
+ */
+public class Superinstructions {
+    public static final byte OP_NONE = 0;
+    public static final byte OP_JMP = 1;
+    public static final byte OP_CLEAR = 2;
+    public static final byte OP_ADD = 3;
+    public static final byte OP_MOV = 4;
+    /** 可加速的计数循环头，见 LoopAccelerator / Head of an accelerable counting loop, see LoopAccelerator */
+    public static final byte OP_LOOP = 5;
+
+    /** 每种操作代表的原始指令数 / Number of original instructions each op stands for */
+    private static final int[] SPAN = {1, 1, 1, 3, 4, 1};
+
+    /** 第 pc 条指令处的融合操作，OP_NONE 表示按原样执行 / Fused op at instruction pc, OP_NONE means run as is */
+    public final byte[] ops;
+
+    private Superinstructions(byte[] ops) {
+        this.ops = ops;
+    }
+
+    /**
+     * 操作代表的原始指令数
+     * Number of original instructions an op stands for
+     */
+    public static int span(int op) {
+        return SPAN[op];
+    }
+
+    /**
+     * 扫描程序，找出所有可融合的模式
+     * Scan the program for all fusable patterns
+     */
+    public static Superinstructions analyze(Program program) {
+        int size = program.size();
+        int[] a = program.a;
+        int[] b = program.b;
+        int[] c = program.c;
+        Superinstructions result = new Superinstructions(new byte[size + 1]);
+
+        for (int i = 0; i < size; i++) {
+            if (program.flags[i] != 0) {
+                continue;
+            }
+            byte op;
+            if (a[i] == b[i]) {
+                op = c[i] == i + 1 ? OP_CLEAR : OP_JMP;
+                if (op == OP_CLEAR && isAdd(program, i + 1) && b[i + 2] == b[i]) {
+                    op = OP_MOV;
+                }
+            } else if (isAdd(program, i)) {
+                op = OP_ADD;
+            } else {
+                continue;
+            }
+            result.ops[i] = op;
+        }
+        return result;
+    }
+
+    /**
+     * subleq A Z next; subleq Z B next; subleq Z Z c
+     */
+    private static boolean isAdd(Program program, int i) {
+        if (i + 2 >= program.size()) {
+            return false;
+        }
+        int[] a = program.a;
+        int[] b = program.b;
+        int[] c = program.c;
+        byte[] flags = program.flags;
+        int z = b[i];
+        return flags[i] == 0 && flags[i + 1] == 0 && flags[i + 2] == 0
+            && a[i] != z && c[i] == i + 1
+            && a[i + 1] == z && c[i + 1] == i + 2
+            && a[i + 2] == z && b[i + 2] == z;
+    }
+}
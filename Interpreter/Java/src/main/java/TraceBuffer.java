@@ -0,0 +1,139 @@
+import java.io.PrintStream;
+
+/**
+ * 执行轨迹的环形缓冲区
+ * Ring buffer of execution trace records
+ *
+ * 每一步记录 (pc, mem[a], mem[b], 结果, 类型) 到预先分配的原始数组中，
+ * 执行期间不分配内存、不格式化字符串。只有在 dump 时才把记录解码为
+ * 与调试模式相同的双语可读格式。
+ * Each step records (pc, mem[a], mem[b], result, kind) into preallocated primitive arrays,
+ * so execution allocates nothing and formats no strings. Records are decoded into the same
+ * bilingual human-readable format as debug mode only when dumped.
+ *
+ * 类型的低 3 位是指令的功能位；对于输入指令，结果为读入的字节。
+ * The low 3 bits of the kind are the instruction's function bits; for input instructions the
+ * result is the byte that was read.
+ */
+public class TraceBuffer {
+    /** Subleq 结果 <= 0，跳转到 c / Subleq result <= 0, jumped to c */
+    public static final int JUMPED = 0x10;
+    /** 输入遇到 EOF / Input hit EOF */
+    public static final int EOF = 0x20;
+
+    private final int[] pcs;
+    private final int[] valuesA;
+    private final int[] valuesB;
+    private final int[] results;
+    private final byte[] kinds;
+    private int next;
+    private long total;
+
+    /**
+     * @param capacity 保留的最近步数 / number of most recent steps kept
+     */
+    public TraceBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(Lang.get(
+                "轨迹缓冲区大小必须为正数：" + capacity,
+                "Trace buffer size must be positive: " + capacity
+            ));
+        }
+        this.pcs = new int[capacity];
+        this.valuesA = new int[capacity];
+        this.valuesB = new int[capacity];
+        this.results = new int[capacity];
+        this.kinds = new byte[capacity];
+    }
+
+    /**
+     * 记录一步执行
+     * Record one executed step
+     */
+    public void record(int pc, int valueA, int valueB, int result, int kind) {
+        int i = next;
+        pcs[i] = pc;
+        valuesA[i] = valueA;
+        valuesB[i] = valueB;
+        results[i] = result;
+        kinds[i] = (byte) kind;
+        next = i + 1 == pcs.length ? 0 : i + 1;
+        total++;
+    }
+
+    /** 记录过的总步数 / Total number of steps recorded */
+    public long total() {
+        return total;
+    }
+
+    /** 缓冲区中保留的步数 / Number of steps kept in the buffer */
+    public int size() {
+        return (int) Math.min(total, pcs.length);
+    }
+
+    /**
+     * 把最近的 last 步解码输出（last <= 0 表示全部保留的步）
+     * Decode the most recent last steps (last <= 0 means all steps kept)
+     */
+    public void dump(Program program, PrintStream out, int last) {
+        int count = last > 0 ? Math.min(last, size()) : size();
+        out.println(Lang.get(
+            "轨迹：最近 " + count + " 步（共 " + total + " 步）",
+            "Trace: last " + count + " of " + total + " steps"
+        ));
+
+        int i = Math.floorMod(next - count, pcs.length);
+        for (int n = 0; n < count; n++) {
+            dumpStep(program, out, i);
+            i = i + 1 == pcs.length ? 0 : i + 1;
+        }
+    }
+
+    private void dumpStep(Program program, PrintStream out, int i) {
+        int pc = pcs[i];
+        int kind = kinds[i];
+        int addressA = program.originalAddress(program.a[pc]);
+        int addressB = program.originalAddress(program.b[pc]);
+
+        out.println("\nPC=" + pc + ", " + Lang.get("指令", "Instr") + ": " + program.describe(pc));
+        out.println("  " + Lang.get("执行前", "Before") + ": mem[" + addressA + "]=" + valuesA[i] +
+                    ", mem[" + addressB + "]=" + valuesB[i]);
+
+        int f = kind & (Program.FLAG_IN | Program.FLAG_OUT | Program.FLAG_HALT);
+        if (f == 0) {
+            out.println("  mem[" + addressB + "] = " + valuesB[i] + " - " + valuesA[i] + " = " + results[i]);
+            if ((kind & JUMPED) != 0) {
+                out.println("  " + Lang.get("跳转到 ", "JUMP to ") + program.c[pc]);
+            } else {
+                out.println("  " + Lang.get("继续到 ", "CONTINUE to ") + (pc + 1));
+            }
+            return;
+        }
+
+        int valueB = valuesB[i];
+        if ((f & Program.FLAG_IN) != 0) {
+            int input = results[i];
+            if ((kind & EOF) != 0) out.println("  " + Lang.get(
+                "警告：遇到输入流结束（EOF），将作为0处理",
+                "Warning: EOF encountered, treating as 0"
+            ));
+            out.println("  " + Lang.get(
+                "输入：读取字节 " + input + " 到地址 " + addressA,
+                "INPUT: read byte " + input + " to address " + addressA
+            ));
+            if (program.a[pc] == program.b[pc]) {
+                valueB = input;
+            }
+        }
+        if ((f & Program.FLAG_OUT) != 0) {
+            int value = valueB & 0xFF;
+            out.println("  " + Lang.get(
+                "输出：写入字节 " + value + " ('" + (char) value + "') 从地址 " + addressB,
+                "OUTPUT: wrote byte " + value + " ('" + (char) value + "') from address " + addressB
+            ));
+        }
+        if ((f & Program.FLAG_HALT) != 0) {
+            out.println("  " + Lang.get("停机（c功能位）", "HALT (c function bit)"));
+        }
+    }
+}
@@ -3,7 +3,11 @@ import com.sun.jna.Native;
 import com.sun.jna.Platform;
 import com.sun.jna.Structure;
 
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Arrays;
 import java.util.List;
 
@@ -13,8 +17,13 @@ import java.util.List;
  *
  * 实现真正的逐字符读取，按一个键立即响应，无需回车
  * Implements true character-by-character input, responds immediately on key press, no Enter needed
+ *
+ * 标准输入的类型只检测一次：只有终端才使用原始模式逐字符读取；
+ * 管道或重定向的文件通过大缓冲区的通道批量读取，不经过 JNA。
+ * The type of stdin is detected once: only terminals use raw mode and character-at-a-time
+ * reads; pipes and redirected files are read in bulk through a large buffered channel, without JNA.
  */
-public class UnbufferedInput {
+public class UnbufferedInput implements InputSource {
 
     private static UnbufferedInput instance;
     private boolean terminalModeSet = false;
@@ -22,6 +31,12 @@ public class UnbufferedInput {
     private int originalConsoleMode = -1;
     private int consoleHandle = -1;
 
+    // 非终端输入的批量读取 / Bulk reading for non-terminal input
+    private static final int BULK_BUFFER_SIZE = 64 * 1024;
+    private final boolean terminal;
+    private ReadableByteChannel bulkChannel;
+    private ByteBuffer bulkBuffer;
+
     // Windows API
     public interface Kernel32 extends Library {
         Kernel32 INSTANCE = Native.load("kernel32", Kernel32.class);
@@ -55,6 +70,7 @@ public class UnbufferedInput {
         int tcgetattr(int fd, Termios termios);
         int tcsetattr(int fd, int optional_actions, Termios termios);
         int read(int fd, byte[] buffer, int count);
+        int isatty(int fd);
     }
 
     // Linux termios structure
@@ -88,6 +104,7 @@ public class UnbufferedInput {
     private static final int VTIME = 5;
 
     private UnbufferedInput() {
+        terminal = detectTerminal();
     }
 
     public static synchronized UnbufferedInput getInstance() {
@@ -104,7 +121,11 @@ public class UnbufferedInput {
      * @return 读取的字节值，如果到达EOF返回-1
      * @throws IOException 如果读取失败
      */
+    @Override
     public int readChar() throws IOException {
+        if (!isTerminal()) {
+            return readBulk();
+        }
         if (Platform.isWindows()) {
             return readCharWindows();
         } else if (Platform.isLinux() || Platform.isMac()) {
@@ -117,6 +138,58 @@ public class UnbufferedInput {
         }
     }
 
+    /**
+     * 下一次读取是否可能阻塞：终端总是可能阻塞，批量模式仅在缓冲区耗尽时
+     * Whether the next read may block: always for terminals, only when the buffer is drained in bulk mode
+     */
+    @Override
+    public boolean mayBlock() {
+        return isTerminal() || bulkBuffer == null || !bulkBuffer.hasRemaining();
+    }
+
+    /**
+     * 标准输入是否为交互式终端（创建单例时检测一次）
+     * Whether stdin is an interactive terminal (detected once, when the singleton is created)
+     */
+    public boolean isTerminal() {
+        return terminal;
+    }
+
+    private static boolean detectTerminal() {
+        try {
+            if (Platform.isWindows()) {
+                int handle = Kernel32.INSTANCE.GetStdHandle(STD_INPUT_HANDLE);
+                return handle != -1 && Kernel32.INSTANCE.GetConsoleMode(handle, new int[1]);
+            } else if (Platform.isLinux() || Platform.isMac()) {
+                return CLibrary.INSTANCE.isatty(STDIN_FILENO) == 1;
+            }
+        } catch (Throwable e) {
+            // JNA 不可用时退回到 JDK 的判断 / Fall back to the JDK's view when JNA is unavailable
+            return System.console() != null;
+        }
+        return false;
+    }
+
+    private int readBulk() throws IOException {
+        if (bulkBuffer == null) {
+            bulkChannel = new FileInputStream(FileDescriptor.in).getChannel();
+            bulkBuffer = ByteBuffer.allocateDirect(BULK_BUFFER_SIZE);
+            bulkBuffer.flip();
+        }
+        if (!bulkBuffer.hasRemaining()) {
+            bulkBuffer.clear();
+            int n;
+            do {
+                n = bulkChannel.read(bulkBuffer);
+            } while (n == 0);
+            bulkBuffer.flip();
+            if (n < 0) {
+                return -1; // EOF
+            }
+        }
+        return bulkBuffer.get() & 0xFF;
+    }
+
     private int readCharWindows() throws IOException {
         try {
             if (consoleHandle == -1) {
@@ -0,0 +1,113 @@
+import java.io.IOException;
+
+/**
+ * 能按 64 位字读取比特的 BitReader：地址和地址计数按字解码，语义与逐位解码完全相同
+ * A BitReader that can read bits as 64-bit words: addresses and address counts are decoded by
+ * words, with exactly the same semantics as bit-by-bit decoding
+ *
+ * 子类提供字协议：wordBitsAvailable()、peekWord() 和 skipBits()。PackedBitReader 是唯一的实现。
+ * Subclasses supply the word protocol: wordBitsAvailable(), peekWord() and skipBits().
+ * PackedBitReader is the only implementation.
+ */
+public abstract class WordBitReader extends BitReader {
+    /**
+     * 一个 64 位字中前 10 个块的链接位（从最高位起第 6i+5 位）
+     * Link bits of the first 10 blocks in a 64-bit word (bit 6i+5 counting from the most significant bit)
+     */
+    private static final long LINK_MASK;
+
+    /**
+     * 以两个相邻 6 位块（12 位）为下标的表，给出它们拼接后的 8 个数据位
+     * Table indexed by two adjacent 6-bit blocks (12 bits), giving their 8 concatenated data bits
+     */
+    private static final byte[] DATA_PAIRS = new byte[1 << 12];
+
+    static {
+        long mask = 0;
+        for (int i = 0; i < 10; i++) {
+            mask |= 1L << (63 - (6 * i + 5));
+        }
+        LINK_MASK = mask;
+        for (int pair = 0; pair < DATA_PAIRS.length; pair++) {
+            DATA_PAIRS[pair] = (byte) ((((pair >>> 8) & 0xF) << 4) | ((pair >>> 2) & 0xF));
+        }
+    }
+
+    /**
+     * 从当前位置起可按字读取的比特数（最多 64）；0 表示已到流末尾
+     * Number of bits available for word reads from the current position (at most 64); 0 at the end of the stream
+     */
+    protected abstract int wordBitsAvailable();
+
+    /**
+     * 从当前位置起的 64 位，首位在最高位；超出 wordBitsAvailable() 的位未定义
+     * The 64 bits from the current position, first bit most significant; bits beyond wordBitsAvailable() are undefined
+     */
+    protected abstract long peekWord();
+
+    /**
+     * 跳过已按字解码的比特
+     * Skip bits that were decoded as a word
+     */
+    protected abstract void skipBits(int count);
+
+    /**
+     * 整个地址都在当前 64 位字中时一次解码：用位运算找到第一个 l=0 的块，再按两块一组查表拼接数据位。
+     * 只有终止块的 l=0，因此功能位就是终止块的 s 位（s=1且l=1 的块不计）。
+     * 其余情况（地址跨字、超过 10 个块、接近流末尾）逐位解码。
+     * When the whole address lies in the current 64-bit word it is decoded at once: bit tricks
+     * find the first block with l=0 and a table joins the data bits two blocks at a time. Only
+     * the terminating block has l=0, so the function flag is that block's s bit (blocks with s=1
+     * and l=1 do not count). Every other case (address spans words, more than 10 blocks, near
+     * the end of the stream) is decoded bit by bit.
+     */
+    @Override
+    public AddressResult readAddress() throws IOException {
+        int available = wordBitsAvailable();
+        if (available > 0) {
+            long word = peekWord();
+            long terminators = ~word & LINK_MASK;
+            int end = Long.numberOfLeadingZeros(terminators) + 1;
+            if (terminators != 0 && end <= available) {
+                int blocks = end / 6;
+                int address = 0;
+                long rest = word;
+                for (int i = 1; i < blocks; i += 2) {
+                    address = (address << 8) | (DATA_PAIRS[(int) (rest >>> 52)] & 0xFF);
+                    rest <<= 12;
+                }
+                if ((blocks & 1) != 0) {
+                    address = (address << 4) | (int) (rest >>> 60);
+                }
+                boolean hasFunction = ((word >>> (65 - end)) & 1) != 0;
+                skipBits(end);
+                return new AddressResult(address, hasFunction);
+            }
+        }
+        return readAddressBits();
+    }
+
+    /**
+     * 不解码地址，只用位计数统计 l=0 的块：每个字处理 10 个块
+     * No address is decoded; blocks with l=0 are counted with a population count, 10 blocks per word
+     */
+    @Override
+    public long countAddresses() throws IOException {
+        long count = 0;
+        boolean open = false;
+        int available;
+        while ((available = wordBitsAvailable()) >= 6) {
+            int blocks = Math.min(10, available / 6);
+            int shift = 64 - 6 * blocks;
+            long terminators = ~peekWord() & LINK_MASK & (-1L << shift);
+            count += Long.bitCount(terminators);
+            open = (terminators & (1L << shift)) == 0;
+            skipBits(6 * blocks);
+        }
+        // 未终止的地址或末尾不完整的段构成最后一个地址 / An unterminated address or a partial last segment forms one last address
+        if (open || hasMore()) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,45 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 多通道执行的向量内核（jdk.incubator.vector）
+ * Vector kernel for lockstep lanes (jdk.incubator.vector)
+ *
+ * 只有这个源码集用 --add-modules jdk.incubator.vector 编译，主代码不依赖孵化模块。只有运行时加上同样的参数才能加载；
+ * LockstepEngine 按名称加载它，失败时退回标量循环。
+ * Only this source set is compiled with --add-modules jdk.incubator.vector, so the main code does
+ * not depend on the incubator module. It only loads when the JVM runs with the same flag;
+ * LockstepEngine loads it by name and falls back to scalar loops when that fails.
+ */
+final class LaneVectors implements LaneKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    LaneVectors() {
+    }
+
+    @Override
+    public int length() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public int subtract(int[] memory, int a, int b, int count) {
+        int leq = 0;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(count); i < bound; i += SPECIES.length()) {
+            IntVector va = IntVector.fromArray(SPECIES, memory, a + i);
+            IntVector result = IntVector.fromArray(SPECIES, memory, b + i).sub(va);
+            result.intoArray(memory, b + i);
+            leq += result.compare(VectorOperators.LE, 0).trueCount();
+        }
+        for (; i < count; i++) {
+            int result = memory[b + i] - memory[a + i];
+            memory[b + i] = result;
+            if (result <= 0) {
+                leq++;
+            }
+        }
+        return leq;
+    }
+}